@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the admission control of the interactions. The concurrency limit adapts between
+ * its bounds: it grows by one after a limit's worth of interactions completed within the latency
+ * target, and it is multiplied by the backoff ratio when one fails or exceeds the target.
+ *
+ * @param enabled whether the interactions go through the admission control.
+ * @param initialLimit concurrent interactions allowed at startup.
+ * @param minLimit lower bound of the adaptive limit.
+ * @param maxLimit upper bound of the adaptive limit.
+ * @param backoffRatio factor applied to the limit on failures or slow interactions.
+ * @param latencyTarget interactions taking longer than this reduce the limit.
+ * @param maxQueueSize maximum amount of interactions waiting for admission.
+ * @param queueTimeout maximum time an interaction waits for admission.
+ * @param retryAfter value of the Retry-After header of the rejected interactions.
+ * @param priorityHeader request header carrying the priority: high, normal or low. High priority
+ *     interactions are admitted first, low priority ones are rejected once the queue is half full.
+ * @param priorityKeyHeader request header carrying the key that grants the high priority.
+ * @param highPriorityKey the key that grants the high priority, when empty no request gets it.
+ */
+@ConfigurationProperties(prefix = "agent.admission")
+public record AdmissionProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("16") int initialLimit,
+    @DefaultValue("2") int minLimit,
+    @DefaultValue("64") int maxLimit,
+    @DefaultValue("0.9") double backoffRatio,
+    @DefaultValue("90s") Duration latencyTarget,
+    @DefaultValue("100") int maxQueueSize,
+    @DefaultValue("15s") Duration queueTimeout,
+    @DefaultValue("5s") Duration retryAfter,
+    @DefaultValue("X-Priority") String priorityHeader,
+    @DefaultValue("X-Priority-Key") String priorityKeyHeader,
+    @DefaultValue("") String highPriorityKey) {}
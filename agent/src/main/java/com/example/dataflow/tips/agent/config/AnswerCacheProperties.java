@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the cache of generated answers. Answers are keyed by the normalized question and
+ * the fingerprint of the job it refers to, so a change on the job state, lag or throughput
+ * regenerates the answer; the TTLs bound how stale an answer can be while the job looks the same.
+ *
+ * @param enabled whether answers are cached.
+ * @param maximumSize maximum amount of answers kept.
+ * @param activeJobTtl how long an answer about a running job is reused.
+ * @param terminalJobTtl how long an answer about a job in a terminal state is reused.
+ * @param fingerprintTimeout maximum time to wait for the job fingerprint, the cache is bypassed
+ *     when exceeded.
+ * @param toolsUrl base URL of the tools server, which serves the job fingerprints.
+ */
+@ConfigurationProperties(prefix = "agent.answers")
+public record AnswerCacheProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("500") long maximumSize,
+    @DefaultValue("10m") Duration activeJobTtl,
+    @DefaultValue("1d") Duration terminalJobTtl,
+    @DefaultValue("3s") Duration fingerprintTimeout,
+    @DefaultValue("http://localhost:8081") String toolsUrl) {}
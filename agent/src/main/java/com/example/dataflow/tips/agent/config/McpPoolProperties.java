@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Sizing and health check settings for the shared pool of MCP clients.
+ *
+ * @param clientsPerConnection amount of initialized clients kept for each configured connection.
+ * @param maxConcurrentLeases maximum amount of generations that can hold clients at the same time.
+ * @param acquireTimeout how long a generation waits for a lease before failing.
+ * @param healthCheckInterval period between keep-alive pings on every pooled client.
+ * @param healthCheckTimeout maximum time for a ping or an initialization handshake to complete.
+ * @param shutdownTimeout maximum time to wait for the clients to close gracefully.
+ */
+@ConfigurationProperties(prefix = "agent.mcp.pool")
+public record McpPoolProperties(
+    @DefaultValue("2") int clientsPerConnection,
+    @DefaultValue("64") int maxConcurrentLeases,
+    @DefaultValue("10s") Duration acquireTimeout,
+    @DefaultValue("30s") Duration healthCheckInterval,
+    @DefaultValue("5s") Duration healthCheckTimeout,
+    @DefaultValue("10s") Duration shutdownTimeout) {}
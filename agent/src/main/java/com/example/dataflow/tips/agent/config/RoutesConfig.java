@@ -28,6 +28,7 @@ public class RoutesConfig {
 
   @Bean
   public RouterFunction<?> interactionHandler(AgentResource handler) {
-    return RouterFunctions.route(RequestPredicates.POST("/interact"), handler::interaction);
+    return RouterFunctions.route(RequestPredicates.POST("/interact"), handler::interaction)
+        .andRoute(RequestPredicates.POST("/interact/stream"), handler::streamInteraction);
   }
 }
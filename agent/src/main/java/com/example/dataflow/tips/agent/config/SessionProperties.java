@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the conversation sessions store.
+ *
+ * @param maxSessions maximum amount of sessions kept, the least recently used are evicted.
+ * @param ttl how long a session is kept after its last interaction.
+ * @param maxSessionBytes maximum size of a session's history, the oldest turns are dropped first.
+ * @param maxToolResultChars maximum length of a tool result kept in the history.
+ * @param journal the optional disk journal that keeps the sessions across restarts.
+ */
+@ConfigurationProperties(prefix = "agent.sessions")
+public record SessionProperties(
+    @DefaultValue("1000") int maxSessions,
+    @DefaultValue("30m") Duration ttl,
+    @DefaultValue("262144") int maxSessionBytes,
+    @DefaultValue("8000") int maxToolResultChars,
+    @DefaultValue Journal journal) {
+
+  /**
+   * Settings for the sessions disk journal.
+   *
+   * @param enabled whether the sessions are written to disk.
+   * @param path location of the journal file.
+   * @param capacityBytes size of the memory mapped journal, once full it is compacted to the live
+   *     sessions.
+   */
+  public record Journal(
+      @DefaultValue("false") boolean enabled,
+      @DefaultValue("sessions.journal") String path,
+      @DefaultValue("67108864") int capacityBytes) {}
+}
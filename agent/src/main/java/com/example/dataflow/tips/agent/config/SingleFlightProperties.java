@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the coalescing of identical in-flight generations.
+ *
+ * @param maxReplayedChunks maximum amount of generated chunks kept to replay to late joiners, a
+ *     generation stops accepting joiners once half of them were produced.
+ */
+@ConfigurationProperties(prefix = "agent.flights")
+public record SingleFlightProperties(@DefaultValue("2048") int maxReplayedChunks) {}
@@ -15,15 +15,20 @@
  */
 package com.example.dataflow.tips.agent.config;
 
+import com.example.dataflow.tips.agent.services.AgentRuntimeHints;
+import com.example.dataflow.tips.agent.services.McpClientPool;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.modelcontextprotocol.client.McpAsyncClient;
 import io.modelcontextprotocol.client.McpClient;
 import io.modelcontextprotocol.client.transport.WebFluxSseClientTransport;
 import io.modelcontextprotocol.spec.McpSchema;
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import org.springframework.ai.chat.prompt.SystemPromptTemplate;
 import org.springframework.ai.mcp.client.autoconfigure.NamedClientMcpTransport;
 import org.springframework.ai.mcp.client.autoconfigure.properties.McpClientCommonProperties;
@@ -32,13 +37,23 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Scope;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.core.io.Resource;
 import org.springframework.web.reactive.function.client.WebClient;
 
 /** */
 @Configuration
-@EnableConfigurationProperties({McpClientCommonProperties.class, McpSseClientProperties.class})
+@EnableConfigurationProperties({
+  McpClientCommonProperties.class,
+  McpSseClientProperties.class,
+  McpPoolProperties.class,
+  SessionProperties.class,
+  TokenBudgetProperties.class,
+  AnswerCacheProperties.class,
+  AdmissionProperties.class,
+  SingleFlightProperties.class
+})
+@ImportRuntimeHints(AgentRuntimeHints.class)
 public class SpringAiConfig {
 
   @Value("classpath:system-prompt.txt")
@@ -50,38 +65,51 @@ public class SpringAiConfig {
         systemPromptResource.getContentAsString(Charset.defaultCharset()));
   }
 
-  @Bean
-  @Scope("prototype")
-  public List<McpAsyncClient> mcpAsyncClientList(
+  @Bean(destroyMethod = "close")
+  public McpClientPool mcpClientPool(
       McpSseClientProperties mcpSseProperties,
       McpClientCommonProperties mcpCommonProperties,
+      McpPoolProperties poolProperties,
+      WebClient.Builder webClientBuilder,
+      ObjectMapper objectMapper,
+      MeterRegistry meterRegistry) {
+    return new McpClientPool(
+        mcpSseProperties.getConnections().entrySet().stream()
+            .collect(
+                Collectors.toMap(
+                    Map.Entry::getKey,
+                    entry ->
+                        (Supplier<McpAsyncClient>)
+                            () ->
+                                mcpAsyncClient(
+                                    entry.getKey(),
+                                    entry.getValue(),
+                                    mcpCommonProperties,
+                                    webClientBuilder,
+                                    objectMapper))),
+        poolProperties,
+        meterRegistry);
+  }
+
+  static McpAsyncClient mcpAsyncClient(
+      String name,
+      McpSseClientProperties.SseParameters connection,
+      McpClientCommonProperties mcpCommonProperties,
       WebClient.Builder webClientBuilder,
       ObjectMapper objectMapper) {
-    return mcpSseProperties.getConnections().entrySet().stream()
-        .map(
-            entry ->
-                new NamedClientMcpTransport(
-                    entry.getKey(),
-                    WebFluxSseClientTransport.builder(
-                            webClientBuilder.clone().baseUrl(entry.getValue().url()))
-                        .sseEndpoint(
-                            Optional.ofNullable(entry.getValue().sseEndpoint()).orElse("/sse"))
-                        .objectMapper(objectMapper)
-                        .build()))
-        .map(
-            transport ->
-                McpClient.async(transport.transport())
-                    .clientInfo(
-                        new McpSchema.Implementation(
-                            mcpCommonProperties.getName() + " - " + transport.name(),
-                            mcpCommonProperties.getVersion()))
-                    .requestTimeout(mcpCommonProperties.getRequestTimeout())
-                    .build())
-        .map(
-            client -> {
-              client.initialize().block();
-              return client;
-            })
-        .toList();
+    var transport =
+        new NamedClientMcpTransport(
+            name,
+            WebFluxSseClientTransport.builder(webClientBuilder.clone().baseUrl(connection.url()))
+                .sseEndpoint(Optional.ofNullable(connection.sseEndpoint()).orElse("/sse"))
+                .objectMapper(objectMapper)
+                .build());
+    return McpClient.async(transport.transport())
+        .clientInfo(
+            new McpSchema.Implementation(
+                mcpCommonProperties.getName() + " - " + transport.name(),
+                mcpCommonProperties.getVersion()))
+        .requestTimeout(mcpCommonProperties.getRequestTimeout())
+        .build();
   }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Token budgets applied to the prompts sent to the model. Tokens are estimated from the text
+ * length, which is enough to keep the prompts away from the context window limits.
+ *
+ * @param charsPerToken average amount of characters per token used for the estimations.
+ * @param maxContextTokens maximum size of the whole context: system prompt, history, question and
+ *     tool results.
+ * @param maxHistoryTokens maximum size of the conversation history, the oldest messages are
+ *     dropped first.
+ * @param maxToolResultTokens maximum size of a single tool result.
+ * @param maxToolResultsTokens maximum size of all the tool results of a single interaction.
+ * @param maxListItems amount of items kept from long lists in tool results, numeric metrics keep
+ *     the ones with the largest values.
+ */
+@ConfigurationProperties(prefix = "agent.budget")
+public record TokenBudgetProperties(
+    @DefaultValue("4") int charsPerToken,
+    @DefaultValue("200000") int maxContextTokens,
+    @DefaultValue("30000") int maxHistoryTokens,
+    @DefaultValue("8000") int maxToolResultTokens,
+    @DefaultValue("60000") int maxToolResultsTokens,
+    @DefaultValue("50") int maxListItems) {}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.config;
+
+import io.opentelemetry.exporter.logging.otlp.OtlpJsonLoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Span exporters in addition to the OTLP one, which is enabled by setting the {@code
+ * management.otlp.tracing.endpoint} property. With the {@code trace-file} profile the spans are
+ * written as OTLP JSON lines to the file configured in the logging setup.
+ */
+@Configuration
+public class TracingConfig {
+
+  @Bean
+  @Profile("trace-file")
+  public SpanExporter fileSpanExporter() {
+    return OtlpJsonLoggingSpanExporter.create();
+  }
+}
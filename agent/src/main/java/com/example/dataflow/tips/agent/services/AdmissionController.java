@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import com.example.dataflow.tips.agent.config.AdmissionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Bounds the amount of concurrent interactions. Interactions over the limit wait in a bounded,
+ * priority ordered queue up to a deadline, and are rejected with a 429 status and a Retry-After
+ * header when the queue is full or the deadline passes. The limit adapts to the observed latency
+ * and failures, additively increasing while the interactions are healthy and multiplicatively
+ * decreasing otherwise. Requests may lower their own priority, but the high priority is only
+ * granted to those carrying the configured key.
+ */
+@Component
+public class AdmissionController {
+
+  private final AdmissionProperties properties;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final PriorityQueue<Waiter> queue =
+      new PriorityQueue<>(
+          Comparator.comparing(Waiter::priority).thenComparingLong(Waiter::sequence));
+  private final AtomicLong sequence = new AtomicLong();
+  private double limit;
+  private int inFlight = 0;
+  private final Counter admitted;
+  private final Counter queueFull;
+  private final Counter queueTimeout;
+  private final Counter limitDecreases;
+  private final Counter untrustedPriorities;
+
+  public AdmissionController(AdmissionProperties properties, MeterRegistry registry) {
+    this.properties = properties;
+    this.limit = properties.initialLimit();
+    this.admitted = registry.counter("agent.admission.admitted");
+    this.queueFull = registry.counter("agent.admission.rejected", "reason", "queue_full");
+    this.queueTimeout = registry.counter("agent.admission.rejected", "reason", "timeout");
+    this.limitDecreases = registry.counter("agent.admission.limit.decreases");
+    this.untrustedPriorities = registry.counter("agent.admission.priority.untrusted");
+    Gauge.builder("agent.admission.limit", this, controller -> controller.locked(() -> limit))
+        .register(registry);
+    Gauge.builder(
+            "agent.admission.inflight", this, controller -> controller.locked(() -> inFlight))
+        .register(registry);
+    Gauge.builder(
+            "agent.admission.queued", this, controller -> controller.locked(() -> queue.size()))
+        .register(registry);
+  }
+
+  public enum Priority {
+    HIGH,
+    NORMAL,
+    LOW;
+
+    static Priority parse(String value) {
+      return Optional.ofNullable(value)
+          .map(priority -> priority.trim().toUpperCase(Locale.ROOT))
+          .filter(priority -> priority.equals(HIGH.name()) || priority.equals(LOW.name()))
+          .map(Priority::valueOf)
+          .orElse(NORMAL);
+    }
+  }
+
+  /** Signals an interaction was not admitted. */
+  public static class RejectedException extends RuntimeException {
+    RejectedException(String message) {
+      super(message);
+    }
+  }
+
+  record Waiter(
+      Priority priority, long sequence, MonoSink<Permit> sink, AtomicReference<Permit> granted) {}
+
+  /** Admission of a single interaction, must be released once the interaction completes. */
+  public final class Permit {
+    private final long start = System.nanoTime();
+    private final AtomicBoolean released = new AtomicBoolean();
+    private volatile boolean failed = false;
+
+    /** Marks the interaction as failed, which reduces the limit when released. */
+    public void failed() {
+      failed = true;
+    }
+
+    /** Releases the admission, the first call is the only one taking effect. */
+    public void release() {
+      if (released.compareAndSet(false, true) && properties.enabled()) {
+        AdmissionController.this.release(
+            failed || System.nanoTime() - start > properties.latencyTarget().toNanos());
+      }
+    }
+  }
+
+  /**
+   * A permit for the interactions served without being admitted, like the cached answers, which
+   * does not count against the limit. Releasing it has no effect.
+   */
+  public Permit unadmitted() {
+    var permit = new Permit();
+    permit.released.set(true);
+    return permit;
+  }
+
+  /**
+   * Runs the handler once the request is admitted, responding with a 429 status when it is not.
+   * The handler is responsible of releasing the permit once the interaction completes.
+   *
+   * @param request the interaction request.
+   * @param handler the interaction handler.
+   * @return the handler response or the rejection.
+   */
+  public Mono<ServerResponse> admit(
+      ServerRequest request, Function<Permit, Mono<ServerResponse>> handler) {
+    if (!properties.enabled()) {
+      return handler.apply(new Permit());
+    }
+    var priority =
+        priority(
+            request.headers().firstHeader(properties.priorityHeader()),
+            request.headers().firstHeader(properties.priorityKeyHeader()));
+    return acquire(priority)
+        .flatMap(handler)
+        .onErrorResume(
+            RejectedException.class,
+            ex ->
+                ServerResponse.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(
+                        HttpHeaders.RETRY_AFTER,
+                        String.valueOf(Math.max(1, properties.retryAfter().toSeconds())))
+                    .bodyValue(ex.getMessage()));
+  }
+
+  /**
+   * The priority of a request, a requested high priority is downgraded to normal unless the request
+   * carries the configured key.
+   *
+   * @param requested the requested priority.
+   * @param key the priority key provided by the request.
+   * @return the granted priority.
+   */
+  Priority priority(String requested, String key) {
+    var priority = Priority.parse(requested);
+    if (priority == Priority.HIGH && !trusted(key)) {
+      untrustedPriorities.increment();
+      return Priority.NORMAL;
+    }
+    return priority;
+  }
+
+  boolean trusted(String key) {
+    var expected = properties.highPriorityKey();
+    return expected != null
+        && !expected.isEmpty()
+        && key != null
+        && MessageDigest.isEqual(
+            expected.getBytes(StandardCharsets.UTF_8), key.getBytes(StandardCharsets.UTF_8));
+  }
+
+  Mono<Permit> acquire(Priority priority) {
+    return Mono.<Permit>create(
+            sink -> {
+              Permit permit = null;
+              RejectedException rejection = null;
+              lock.lock();
+              try {
+                if (inFlight < limit && queue.isEmpty()) {
+                  inFlight++;
+                  admitted.increment();
+                  permit = new Permit();
+                } else if (shed(priority)) {
+                  queueFull.increment();
+                  rejection = new RejectedException("Too many interactions in progress.");
+                } else {
+                  var queued =
+                      new Waiter(
+                          priority, sequence.incrementAndGet(), sink, new AtomicReference<>());
+                  queue.add(queued);
+                  sink.onCancel(() -> dequeue(queued));
+                }
+              } finally {
+                lock.unlock();
+              }
+              // completing the sink runs the subscriber, which must not hold the lock
+              if (permit != null) {
+                sink.success(permit);
+              } else if (rejection != null) {
+                sink.error(rejection);
+              }
+            })
+        .timeout(
+            properties.queueTimeout(),
+            Mono.fromSupplier(
+                () -> {
+                  queueTimeout.increment();
+                  throw new RejectedException("Timed out while waiting for admission.");
+                }));
+  }
+
+  /** Whether the queue has no room for the priority, the low priority gets half of it. */
+  boolean shed(Priority priority) {
+    return priority == Priority.LOW
+        ? queue.size() >= properties.maxQueueSize() / 2
+        : queue.size() >= properties.maxQueueSize();
+  }
+
+  void dequeue(Waiter waiter) {
+    Permit dropped;
+    lock.lock();
+    try {
+      dropped = queue.remove(waiter) ? null : waiter.granted().get();
+    } finally {
+      lock.unlock();
+    }
+    // the waiter was cancelled while being admitted, its permit will never be used
+    if (dropped != null) {
+      dropped.release();
+    }
+  }
+
+  void release(boolean congested) {
+    var admittedWaiters = new ArrayList<Waiter>();
+    lock.lock();
+    try {
+      inFlight--;
+      if (congested) {
+        limit = Math.max(properties.minLimit(), limit * properties.backoffRatio());
+        limitDecreases.increment();
+      } else {
+        limit = Math.min(properties.maxLimit(), limit + 1 / limit);
+      }
+      while (inFlight < limit && !queue.isEmpty()) {
+        inFlight++;
+        admitted.increment();
+        var waiter = queue.poll();
+        waiter.granted().set(new Permit());
+        admittedWaiters.add(waiter);
+      }
+    } finally {
+      lock.unlock();
+    }
+    // the admitted interactions run on the releasing thread, outside of the lock
+    admittedWaiters.forEach(waiter -> waiter.sink().success(waiter.granted().get()));
+  }
+
+  <T> T locked(Supplier<T> value) {
+    lock.lock();
+    try {
+      return value.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * An event emitted while streaming an interaction, either a chunk of the generated answer or a
+ * progress report of the tools invoked by the model.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AgentEvent(
+    Type type,
+    String content,
+    String tool,
+    Long durationMillis,
+    TokenAccounting.Snapshot usage) {
+
+  public enum Type {
+    START,
+    TOKEN,
+    TOOL_START,
+    TOOL_END,
+    TOOL_ERROR,
+    ERROR,
+    DONE
+  }
+
+  public static AgentEvent start() {
+    return start(null);
+  }
+
+  public static AgentEvent start(String sessionId) {
+    return new AgentEvent(Type.START, sessionId, null, null, null);
+  }
+
+  public static AgentEvent token(String content) {
+    return new AgentEvent(Type.TOKEN, content, null, null, null);
+  }
+
+  public static AgentEvent toolStart(String tool) {
+    return new AgentEvent(Type.TOOL_START, null, tool, null, null);
+  }
+
+  public static AgentEvent toolEnd(String tool, long durationMillis) {
+    return new AgentEvent(Type.TOOL_END, null, tool, durationMillis, null);
+  }
+
+  public static AgentEvent toolError(String tool, String message, long durationMillis) {
+    return new AgentEvent(Type.TOOL_ERROR, message, tool, durationMillis, null);
+  }
+
+  public static AgentEvent error(String message) {
+    return new AgentEvent(Type.ERROR, message, null, null, null);
+  }
+
+  public static AgentEvent done() {
+    return done(null);
+  }
+
+  public static AgentEvent done(TokenAccounting.Snapshot usage) {
+    return new AgentEvent(Type.DONE, null, null, null, usage);
+  }
+
+  public String eventName() {
+    return type.name().toLowerCase();
+  }
+}
@@ -15,13 +15,23 @@
  */
 package com.example.dataflow.tips.agent.services;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import org.springframework.ai.chat.messages.Message;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /** */
@@ -29,34 +39,192 @@ import reactor.core.publisher.Mono;
 public class AgentResource {
 
   private final AgentService agent;
+  private final AnswerCache answers;
+  private final SessionStore sessions;
+  private final SingleFlight flights;
+  private final AdmissionController admission;
+  private final InteractionTracing tracing;
 
-  public AgentResource(AgentService agent) {
+  public AgentResource(
+      AgentService agent,
+      AnswerCache answers,
+      SessionStore sessions,
+      SingleFlight flights,
+      AdmissionController admission,
+      InteractionTracing tracing) {
     this.agent = agent;
+    this.answers = answers;
+    this.sessions = sessions;
+    this.flights = flights;
+    this.admission = admission;
+    this.tracing = tracing;
   }
 
+  /**
+   * Answers the question in the context of the request's session, a new session is started when
+   * the request does not carry one. The session identifier and the token accounting are returned
+   * with the answer. Identical questions without history asked at the same time share a single
+   * generation. Requests go through the admission control, being rejected when saturated, unless
+   * their answer is cached or they join a generation already in flight.
+   */
   public Mono<ServerResponse> interaction(ServerRequest request) {
     return request
         .bodyToMono(Request.class)
         .flatMap(
-            body ->
-                agent
-                    .generate(body.q(), List.of())
-                    .collectList()
-                    .flatMap(
-                        response ->
-                            ServerResponse.ok()
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .bodyValue(
-                                    new Response(
-                                        body.q(), response.stream().collect(Collectors.joining()))))
-                    .onErrorResume(
-                        ex ->
-                            ServerResponse.status(HttpStatusCode.valueOf(500))
-                                .bodyValue(new Response(body.q(), ex.getMessage()))))
+            body -> {
+              var sessionId = sessionId(body);
+              var history = sessions.history(sessionId);
+              return answers
+                  .lookup(body.q(), history)
+                  .flatMap(lookup -> interaction(request, body, sessionId, history, lookup));
+            })
         .switchIfEmpty(ServerResponse.badRequest().build());
   }
 
-  record Request(String q) {}
+  /**
+   * Serves the interaction from the cache, from a generation in flight or from a new generation.
+   * Only the latter is admitted: the cached answers do not generate anything, and the joiners of a
+   * generation in flight are covered by the admission of the request that started it, they do not
+   * take a permit of their own.
+   */
+  Mono<ServerResponse> interaction(
+      ServerRequest request,
+      Request body,
+      String sessionId,
+      List<Message> history,
+      AnswerCache.Lookup lookup) {
+    BiFunction<Consumer<SessionStore.ToolInvocation>, TokenAccounting, Flux<String>> generation =
+        (recorder, accounting) -> agent.generate(body.q(), history, lookup, recorder, accounting);
+    if (lookup.hit()) {
+      return interaction(body, sessionId, flights.alone(generation), admission.unadmitted());
+    }
+    if (!history.isEmpty()) {
+      return admission.admit(
+          request, permit -> interaction(body, sessionId, flights.alone(generation), permit));
+    }
+    var key = AnswerCache.normalize(body.q());
+    return flights
+        .joinInFlight(key)
+        .map(flight -> interaction(body, sessionId, flight, admission.unadmitted()))
+        .orElseGet(
+            () ->
+                admission.admit(
+                    request,
+                    permit ->
+                        interaction(body, sessionId, flights.join(key, generation), permit)));
+  }
+
+  Mono<ServerResponse> interaction(
+      Request body,
+      String sessionId,
+      SingleFlight.Flight flight,
+      AdmissionController.Permit permit) {
+    return tracing
+        .observe("interact", sessionId, flight.content(), content -> true)
+        .collect(Collectors.joining())
+        .doOnError(ex -> permit.failed())
+        .doOnNext(answer -> sessions.append(sessionId, body.q(), answer, flight.tools()))
+        .flatMap(
+            answer ->
+                ServerResponse.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(
+                        new Response(body.q(), answer, sessionId, flight.accounting().snapshot())))
+        .onErrorResume(
+            ex ->
+                ServerResponse.status(HttpStatusCode.valueOf(500))
+                    .bodyValue(
+                        new Response(
+                            body.q(),
+                            ex.getMessage(),
+                            sessionId,
+                            flight.accounting().snapshot())))
+        .doFinally(signal -> permit.release());
+  }
+
+  /**
+   * Streams the interaction as it is generated. Clients accepting {@code application/x-ndjson}
+   * receive one JSON event per line, otherwise events are sent as Server-Sent Events. Closing the
+   * connection cancels the ongoing generation. The first event carries the session identifier,
+   * and the interaction is added to the session once the generation completes. The admission is
+   * held until the stream ends, cached answers are streamed without being admitted.
+   */
+  public Mono<ServerResponse> streamInteraction(ServerRequest request) {
+    var ndjson = request.headers().accept().contains(MediaType.APPLICATION_NDJSON);
+    return request
+        .bodyToMono(Request.class)
+        .flatMap(
+            body -> {
+              var sessionId = sessionId(body);
+              var history = sessions.history(sessionId);
+              return answers
+                  .lookup(body.q(), history)
+                  .flatMap(
+                      lookup ->
+                          lookup.hit()
+                              ? streamInteraction(
+                                  body, sessionId, history, lookup, admission.unadmitted(), ndjson)
+                              : admission.admit(
+                                  request,
+                                  permit ->
+                                      streamInteraction(
+                                          body, sessionId, history, lookup, permit, ndjson)));
+            })
+        .switchIfEmpty(ServerResponse.badRequest().build());
+  }
+
+  Mono<ServerResponse> streamInteraction(
+      Request body,
+      String sessionId,
+      List<Message> history,
+      AnswerCache.Lookup lookup,
+      AdmissionController.Permit permit,
+      boolean ndjson) {
+    var tools = new CopyOnWriteArrayList<SessionStore.ToolInvocation>();
+    var answer = new StringBuilder();
+    var events =
+        agent
+            .generateEvents(
+                body.q(),
+                history,
+                lookup,
+                AgentEvent.start(sessionId),
+                tools::add,
+                new TokenAccounting())
+            .doOnNext(
+                event -> {
+                  switch (event.type()) {
+                    case TOKEN -> answer.append(event.content());
+                    case DONE -> sessions.append(sessionId, body.q(), answer.toString(), tools);
+                    case ERROR -> permit.failed();
+                    default -> {}
+                  }
+                })
+            .doFinally(signal -> permit.release());
+    events =
+        tracing.observe(
+            "stream", sessionId, events, event -> event.type() == AgentEvent.Type.TOKEN);
+    if (ndjson) {
+      return ServerResponse.ok()
+          .contentType(MediaType.APPLICATION_NDJSON)
+          .body(events, AgentEvent.class);
+    }
+    return ServerResponse.ok()
+        .contentType(MediaType.TEXT_EVENT_STREAM)
+        .body(
+            BodyInserters.fromServerSentEvents(
+                events.map(
+                    event -> ServerSentEvent.builder(event).event(event.eventName()).build())));
+  }
+
+  static String sessionId(Request request) {
+    return Optional.ofNullable(request.sessionId())
+        .filter(id -> !id.isBlank())
+        .orElseGet(() -> UUID.randomUUID().toString());
+  }
+
+  record Request(String q, String sessionId) {}
 
-  record Response(String q, String a) {}
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  record Response(String q, String a, String sessionId, TokenAccounting.Snapshot usage) {}
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import io.modelcontextprotocol.spec.McpSchema;
+import java.lang.reflect.Modifier;
+import java.util.stream.Stream;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.ReflectionHints;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Hints of the native image of the agent: the records serialized by Jackson, the interaction
+ * requests, responses and events, the session journal entries, the job fingerprints and the MCP
+ * schema types exchanged with the tools server. Lives next to the records as some of them are
+ * package private.
+ */
+public class AgentRuntimeHints implements RuntimeHintsRegistrar {
+  private final BindingReflectionHintsRegistrar bindings = new BindingReflectionHintsRegistrar();
+
+  @Override
+  public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+    var reflection = hints.reflection();
+    bindings.registerReflectionHints(
+        reflection,
+        AgentResource.Request.class,
+        AgentResource.Response.class,
+        AgentEvent.class,
+        AnswerCache.Fingerprint.class,
+        TokenAccounting.Snapshot.class,
+        SessionJournal.Entry.class,
+        SessionStore.ToolInvocation.class);
+
+    registerNested(reflection, McpSchema.class);
+
+    hints.resources().registerPattern("system-prompt.txt");
+  }
+
+  /** Registers the types nested in the provided one for their Jackson (de)serialization. */
+  void registerNested(ReflectionHints reflection, Class<?> type) {
+    Stream.of(type.getDeclaredClasses())
+        .filter(nested -> Modifier.isPublic(nested.getModifiers()))
+        .forEach(
+            nested -> {
+              bindings.registerReflectionHints(reflection, nested);
+              registerNested(reflection, nested);
+            });
+  }
+}
@@ -15,21 +15,25 @@
  */
 package com.example.dataflow.tips.agent.services;
 
-import io.modelcontextprotocol.client.McpAsyncClient;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Stream;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.SystemPromptTemplate;
 import org.springframework.ai.mcp.AsyncMcpToolCallbackProvider;
-import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.ai.tool.ToolCallback;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
+import reactor.core.publisher.Sinks;
 
 /**
  * Handles interactions with the Claude LLM. This class is responsible for managing the lifecycle of
@@ -38,65 +42,266 @@ import reactor.core.scheduler.Schedulers;
  */
 @Service
 public class AgentService {
+  private static final Sinks.EmitFailureHandler EMIT_FAILURE_HANDLER =
+      Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100));
 
   private final ChatClient.Builder chatClientBuilder;
-  private final ObjectProvider<List<McpAsyncClient>> mcpClientListProvider;
+  private final McpClientPool mcpClientPool;
   private final SystemPromptTemplate systemPrompt;
+  private final TokenBudget tokenBudget;
+  private final AnswerCache answerCache;
+  private final GenerationMetrics generationMetrics;
+  private final InteractionTracing tracing;
 
   public AgentService(
       ChatClient.Builder chatClientBuilder,
-      ObjectProvider<List<McpAsyncClient>> mcpClientListProvider,
-      SystemPromptTemplate systemPrompt) {
+      McpClientPool mcpClientPool,
+      SystemPromptTemplate systemPrompt,
+      TokenBudget tokenBudget,
+      AnswerCache answerCache,
+      GenerationMetrics generationMetrics,
+      InteractionTracing tracing) {
     this.chatClientBuilder = chatClientBuilder;
-    this.mcpClientListProvider = mcpClientListProvider;
+    this.mcpClientPool = mcpClientPool;
     this.systemPrompt = systemPrompt;
+    this.tokenBudget = tokenBudget;
+    this.answerCache = answerCache;
+    this.generationMetrics = generationMetrics;
+    this.tracing = tracing;
   }
 
-  Mono<List<McpAsyncClient>> prepareClients() {
-    return Mono.fromCallable(mcpClientListProvider::getObject)
-        .subscribeOn(Schedulers.boundedElastic());
+  /**
+   * Generates a response from the Claude LLM based on the given message and message history.
+   *
+   * <p>Leases already initialized MCP clients from the shared pool for this specific generation
+   * request, returning them to the pool afterwards.
+   *
+   * @param message The current user message to send to the AI.
+   * @param history A list of previous messages in the conversation history.
+   * @return A Flux<String> that streams the AI-generated response content.
+   */
+  public Flux<String> generate(String message, List<Message> history) {
+    return generate(message, history, invocation -> {}, new TokenAccounting());
   }
 
-  Mono<Boolean> cleanup(List<McpAsyncClient> clients) {
-    return Mono.fromCallable(
-        () -> {
-          clients.stream().map(client -> client.closeGracefully()).toList();
-          return true;
-        });
+  /**
+   * Generates a response from the Claude LLM, reporting the tools invoked by the model to the
+   * provided recorder. The history and the tool results are fitted into the token budgets.
+   *
+   * @param message The current user message to send to the AI.
+   * @param history A list of previous messages in the conversation history.
+   * @param recorder Receives the tool invocations made while generating the response.
+   * @param accounting Receives the token accounting of the generation.
+   * @return A Flux<String> that streams the AI-generated response content.
+   */
+  public Flux<String> generate(
+      String message,
+      List<Message> history,
+      Consumer<SessionStore.ToolInvocation> recorder,
+      TokenAccounting accounting) {
+    return answerCache
+        .lookup(message, history)
+        .flatMapMany(lookup -> generate(message, history, lookup, recorder, accounting));
   }
 
   /**
-   * Generates a response from the Claude LLM based on the given message and message history.
-   *
-   * <p>Manages the lifecycle of MCP clients for this specific generation request, ensuring they are
-   * initialized before use and cleaned up afterwards.
+   * Generates a response from the Claude LLM for an already looked up question. Cached answers are
+   * returned without leasing any MCP client, missed ones are cached once generated.
    *
    * @param message The current user message to send to the AI.
    * @param history A list of previous messages in the conversation history.
+   * @param lookup The answer cache lookup of the message.
+   * @param recorder Receives the tool invocations made while generating the response.
+   * @param accounting Receives the token accounting of the generation.
    * @return A Flux<String> that streams the AI-generated response content.
    */
-  public Flux<String> generate(String message, List<Message> history) {
-    return Flux.usingWhen(
-        // McpClients Initialization (resourceAsync)
-        prepareClients(),
-        // MacpClients usage for Chat client as tools (resourceClosure)
-        mcpAsyncClients ->
-            this.chatClientBuilder
-                .clone()
-                .defaultToolCallbacks(new AsyncMcpToolCallbackProvider(mcpAsyncClients))
-                .build()
-                .prompt(
-                    new Prompt(
-                        Stream.of(
-                                List.<Message>of(new UserMessage(message)),
-                                history,
-                                List.of(systemPrompt.createMessage()))
-                            .flatMap(List::stream)
-                            .toList()))
-                .toolContext(Map.of())
-                .stream()
-                .content(),
-        // McpClients cleanup (asyncCleanup)
-        mcpAsyncClients -> cleanup(mcpAsyncClients));
+  Flux<String> generate(
+      String message,
+      List<Message> history,
+      AnswerCache.Lookup lookup,
+      Consumer<SessionStore.ToolInvocation> recorder,
+      TokenAccounting accounting) {
+    if (lookup.hit()) {
+      return Flux.just(lookup.text());
+    }
+    return generationMetrics.record(
+        "interact",
+        Flux.usingWhen(
+            // McpClients lease from the pool (resourceAsync)
+            mcpClientPool.acquire(),
+            // McpClients usage for Chat client as tools (resourceClosure)
+            lease ->
+                content(
+                    lease,
+                    message,
+                    history,
+                    lookup,
+                    callback -> new RecordingToolCallback(callback, recorder),
+                    accounting),
+            // McpClients return to the pool (asyncCleanup)
+            McpClientPool.Lease::release),
+        content -> true,
+        accounting);
+  }
+
+  /**
+   * Generates a response as a stream of events, interleaving the generated content with progress
+   * reports of the tool invocations made by the model.
+   *
+   * <p>The stream starts with a {@link AgentEvent.Type#START} event, so callers receive the first
+   * bytes before the model produces any content, and ends with a {@link AgentEvent.Type#DONE} or
+   * {@link AgentEvent.Type#ERROR} event. Cancelling the subscription cancels the model generation
+   * and returns the leased MCP clients to the pool.
+   *
+   * @param message The current user message to send to the AI.
+   * @param history A list of previous messages in the conversation history.
+   * @return A Flux<AgentEvent> with the generation events.
+   */
+  public Flux<AgentEvent> generateEvents(String message, List<Message> history) {
+    return generateEvents(
+        message, history, AgentEvent.start(), invocation -> {}, new TokenAccounting());
+  }
+
+  /**
+   * Generates a response as a stream of events, see {@link #generateEvents(String, List)},
+   * reporting the tools invoked by the model to the provided recorder. The final {@link
+   * AgentEvent.Type#DONE} event carries the token accounting of the generation.
+   *
+   * @param message The current user message to send to the AI.
+   * @param history A list of previous messages in the conversation history.
+   * @param start The first event of the stream.
+   * @param recorder Receives the tool invocations made while generating the response.
+   * @param accounting Receives the token accounting of the generation.
+   * @return A Flux<AgentEvent> with the generation events.
+   */
+  public Flux<AgentEvent> generateEvents(
+      String message,
+      List<Message> history,
+      AgentEvent start,
+      Consumer<SessionStore.ToolInvocation> recorder,
+      TokenAccounting accounting) {
+    return answerCache
+        .lookup(message, history)
+        .flatMapMany(
+            lookup -> generateEvents(message, history, lookup, start, recorder, accounting));
+  }
+
+  /**
+   * Generates a response as a stream of events for an already looked up question, see {@link
+   * #generateEvents(String, List, AgentEvent, Consumer, TokenAccounting)}. A cached answer is
+   * streamed as a single token event without leasing any MCP client.
+   *
+   * @param message The current user message to send to the AI.
+   * @param history A list of previous messages in the conversation history.
+   * @param lookup The answer cache lookup of the message.
+   * @param start The first event of the stream.
+   * @param recorder Receives the tool invocations made while generating the response.
+   * @param accounting Receives the token accounting of the generation.
+   * @return A Flux<AgentEvent> with the generation events.
+   */
+  Flux<AgentEvent> generateEvents(
+      String message,
+      List<Message> history,
+      AnswerCache.Lookup lookup,
+      AgentEvent start,
+      Consumer<SessionStore.ToolInvocation> recorder,
+      TokenAccounting accounting) {
+    if (lookup.hit()) {
+      return Flux.just(
+          start,
+          AgentEvent.token(lookup.text()),
+          AgentEvent.done(accounting.snapshot()));
+    }
+    var events =
+        Flux.usingWhen(
+            mcpClientPool.acquire(),
+            lease -> {
+              var progress = Sinks.many().unicast().<AgentEvent>onBackpressureBuffer();
+              Consumer<AgentEvent> listener =
+                  event -> progress.emitNext(event, EMIT_FAILURE_HANDLER);
+              return Flux.merge(
+                  progress.asFlux(),
+                  content(
+                          lease,
+                          message,
+                          history,
+                          lookup,
+                          callback ->
+                              new ProgressToolCallback(
+                                  new RecordingToolCallback(callback, recorder), listener),
+                          accounting)
+                      .map(AgentEvent::token)
+                      .doFinally(signal -> progress.emitComplete(EMIT_FAILURE_HANDLER)));
+            },
+            McpClientPool.Lease::release);
+    events =
+        generationMetrics.record(
+            "stream", events, event -> event.type() == AgentEvent.Type.TOKEN, accounting);
+    return Flux.concat(
+            Flux.just(start),
+            events,
+            Mono.fromSupplier(() -> AgentEvent.done(accounting.snapshot())))
+        .onErrorResume(ex -> Flux.just(AgentEvent.error(ex.getMessage())));
+  }
+
+  Flux<String> content(
+      McpClientPool.Lease lease,
+      String message,
+      List<Message> history,
+      AnswerCache.Lookup lookup,
+      Function<ToolCallback, ToolCallback> toolDecorator,
+      TokenAccounting accounting) {
+    var system = systemPrompt.createMessage();
+    var fittedHistory = tokenBudget.fitHistory(system, history, message, accounting);
+    var generation =
+        this.chatClientBuilder
+            .clone()
+            .defaultToolCallbacks(
+                Stream.of(new AsyncMcpToolCallbackProvider(lease.clients()).getToolCallbacks())
+                    .map(tracing::traced)
+                    .<ToolCallback>map(
+                        callback -> new BudgetToolCallback(callback, tokenBudget, accounting))
+                    .map(toolDecorator)
+                    .toList())
+            .build()
+            // chronological order: the instructions, the earlier turns and then the question
+            // being answered, so the model answers it rather than the last turn of the history
+            .prompt(
+                new Prompt(
+                    Stream.of(
+                            List.<Message>of(system),
+                            fittedHistory,
+                            List.of(new UserMessage(message)))
+                        .flatMap(List::stream)
+                        .toList()))
+            .toolContext(Map.of())
+            .stream()
+            .chatResponse()
+            .publish(
+                responses ->
+                    Flux.merge(
+                        responses.<String>handle(
+                            (response, sink) -> {
+                              if (response.getResult() != null
+                                  && response.getResult().getOutput() != null
+                                  && StringUtils.hasLength(
+                                      response.getResult().getOutput().getText())) {
+                                sink.next(response.getResult().getOutput().getText());
+                              }
+                            }),
+                        // the streamed responses report partial usages, only the last one is kept
+                        responses
+                            .<Usage>handle(
+                                (response, sink) -> {
+                                  if (response.getMetadata() != null
+                                      && TokenAccounting.reported(
+                                          response.getMetadata().getUsage())) {
+                                    sink.next(response.getMetadata().getUsage());
+                                  }
+                                })
+                            .takeLast(1)
+                            .doOnNext(accounting::modelUsage)
+                            .thenMany(Flux.<String>empty())));
+    return answerCache.store(lookup, generation);
   }
 }
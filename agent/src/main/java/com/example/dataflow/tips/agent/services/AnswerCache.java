@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import com.example.dataflow.tips.agent.config.AnswerCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Caches the generated answers for questions about a particular job. The key combines the
+ * normalized question with the job fingerprint computed by the tools server, its state and the
+ * order of magnitude of its lag and throughput, so answers are reused only while the job looks the
+ * same. Questions not naming a project, region and job, or whose fingerprint is not available in
+ * time, bypass the cache. The lookup happens before the interaction is admitted, and the
+ * fingerprint is fetched from a plain HTTP route of the tools server, so a cached answer neither
+ * waits for admission nor takes an MCP client lease.
+ */
+@Service
+public class AnswerCache {
+  private static final Logger LOG = LoggerFactory.getLogger(AnswerCache.class);
+  static final String FINGERPRINT_PATH = "/jobs/{projectId}/{regionId}/{jobId}/fingerprint";
+  static final Pattern JOB_ID =
+      Pattern.compile("\\b(\\d{4}-\\d{2}-\\d{2}_\\d{2}_\\d{2}_\\d{2}-\\d+)\\b");
+  static final Pattern PROJECT_ID =
+      Pattern.compile("\\bproject(?:\\s+id)?\\s*[:=]?\\s*([a-z][a-z0-9-]{4,28}[a-z0-9])\\b");
+  static final Pattern REGION_ID =
+      Pattern.compile(
+          "\\b((?:us|europe|asia|australia|northamerica|southamerica|me|africa)"
+              + "-[a-z]+\\d{1,2})\\b");
+
+  private final AnswerCacheProperties properties;
+  private final WebClient tools;
+  private final Cache<String, Answer> answers;
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter bypasses;
+  private final Timer savedLatency;
+
+  public AnswerCache(
+      AnswerCacheProperties properties,
+      WebClient.Builder webClientBuilder,
+      MeterRegistry registry) {
+    this.properties = properties;
+    this.tools = webClientBuilder.clone().baseUrl(properties.toolsUrl()).build();
+    this.answers =
+        Caffeine.newBuilder()
+            .maximumSize(properties.maximumSize())
+            .expireAfter(new StateAwareExpiry(properties))
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(registry, answers, "agent.answers");
+    this.hits = registry.counter("agent.answers.lookups", "result", "hit");
+    this.misses = registry.counter("agent.answers.lookups", "result", "miss");
+    this.bypasses = registry.counter("agent.answers.lookups", "result", "bypass");
+    this.savedLatency = registry.timer("agent.answers.saved.latency");
+    Gauge.builder(
+            "agent.answers.hit.ratio",
+            this,
+            cache -> {
+              var lookups = cache.hits.count() + cache.misses.count();
+              return lookups == 0 ? 0 : cache.hits.count() / lookups;
+            })
+        .register(registry);
+  }
+
+  /**
+   * A generated answer.
+   *
+   * @param text the answer.
+   * @param terminal whether the job was in a terminal state when the answer was generated.
+   * @param generationTime how long took to generate the answer.
+   */
+  record Answer(String text, boolean terminal, Duration generationTime) {}
+
+  record JobReference(String projectId, String regionId, String jobId) {}
+
+  record Fingerprint(String fingerprint, boolean terminal) {}
+
+  /**
+   * The outcome of looking up a question.
+   *
+   * @param key the cache key, null when the question bypasses the cache.
+   * @param terminal whether the job the question refers to is in a terminal state.
+   * @param answer the cached answer, null when not cached.
+   */
+  record Lookup(String key, boolean terminal, Answer answer) {
+    static final Lookup BYPASS = new Lookup(null, false, null);
+
+    /** Whether the question has a cached answer, which is returned without any generation. */
+    boolean hit() {
+      return answer != null;
+    }
+
+    String text() {
+      return answer.text();
+    }
+  }
+
+  /**
+   * Looks up the answer to the question, computing the fingerprint of the job it refers to.
+   *
+   * @param question the user question.
+   * @param history the conversation history, answers depending on it are not cached.
+   * @return a Mono with the lookup, never failing: errors and timeouts bypass the cache.
+   */
+  Mono<Lookup> lookup(String question, List<Message> history) {
+    // answers given within a conversation depend on its history, only the first question is cached
+    var job =
+        properties.enabled() && history.isEmpty()
+            ? jobReference(question)
+            : Optional.<JobReference>empty();
+    if (job.isEmpty()) {
+      bypasses.increment();
+      return Mono.just(Lookup.BYPASS);
+    }
+    return fingerprint(job.get())
+        .map(
+            fingerprint -> {
+              var key = normalize(question) + "#" + fingerprint.fingerprint();
+              var cached = answers.getIfPresent(key);
+              if (cached != null) {
+                hits.increment();
+                savedLatency.record(cached.generationTime());
+              } else {
+                misses.increment();
+              }
+              return new Lookup(key, fingerprint.terminal(), cached);
+            })
+        .switchIfEmpty(
+            Mono.fromSupplier(
+                () -> {
+                  bypasses.increment();
+                  return Lookup.BYPASS;
+                }));
+  }
+
+  /**
+   * Caches the answer of a missed lookup once its generation completes.
+   *
+   * @param lookup the missed lookup.
+   * @param generation the answer generation.
+   * @return the generation.
+   */
+  Flux<String> store(Lookup lookup, Flux<String> generation) {
+    if (lookup.key() == null) {
+      return generation;
+    }
+    return Flux.defer(
+        () -> {
+          var start = System.nanoTime();
+          var answer = new StringBuilder();
+          return generation
+              .doOnNext(answer::append)
+              .doOnComplete(
+                  () ->
+                      answers.put(
+                          lookup.key(),
+                          new Answer(
+                              answer.toString(),
+                              lookup.terminal(),
+                              Duration.ofNanos(System.nanoTime() - start))));
+        });
+  }
+
+  Mono<Fingerprint> fingerprint(JobReference job) {
+    return tools
+        .get()
+        .uri(FINGERPRINT_PATH, job.projectId(), job.regionId(), job.jobId())
+        .retrieve()
+        .bodyToMono(Fingerprint.class)
+        .filter(fingerprint -> fingerprint.fingerprint() != null)
+        .timeout(properties.fingerprintTimeout(), Mono.empty())
+        .doOnError(ex -> LOG.warn("Error while retrieving the fingerprint for {}.", job, ex))
+        .onErrorResume(ex -> Mono.empty());
+  }
+
+  static Optional<JobReference> jobReference(String question) {
+    var text = question.toLowerCase(Locale.ROOT);
+    var job = JOB_ID.matcher(text);
+    var project = PROJECT_ID.matcher(text);
+    var region = REGION_ID.matcher(text);
+    if (job.find() && project.find() && region.find()) {
+      return Optional.of(new JobReference(project.group(1), region.group(1), job.group(1)));
+    }
+    return Optional.empty();
+  }
+
+  static String normalize(String question) {
+    return question
+        .toLowerCase(Locale.ROOT)
+        .replaceAll("[\\p{Punct}&&[^_-]]+", " ")
+        .replaceAll("\\s+", " ")
+        .strip();
+  }
+
+  static class StateAwareExpiry implements Expiry<String, Answer> {
+    private final long activeJobTtlNanos;
+    private final long terminalJobTtlNanos;
+
+    StateAwareExpiry(AnswerCacheProperties properties) {
+      this.activeJobTtlNanos = properties.activeJobTtl().toNanos();
+      this.terminalJobTtlNanos = properties.terminalJobTtl().toNanos();
+    }
+
+    long ttl(Answer answer) {
+      return answer.terminal() ? terminalJobTtlNanos : activeJobTtlNanos;
+    }
+
+    @Override
+    public long expireAfterCreate(String key, Answer answer, long currentTime) {
+      return ttl(answer);
+    }
+
+    @Override
+    public long expireAfterUpdate(
+        String key, Answer answer, long currentTime, long currentDuration) {
+      return ttl(answer);
+    }
+
+    @Override
+    public long expireAfterRead(
+        String key, Answer answer, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
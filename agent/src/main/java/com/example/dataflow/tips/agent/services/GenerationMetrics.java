@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Records the agent generations: time to the first generated content, total duration by outcome,
+ * amount of tool calls and the token counts of every interaction.
+ */
+@Component
+public class GenerationMetrics {
+  static final String FIRST_TOKEN = "agent.generation.first.token";
+  static final String DURATION = "agent.generation.duration";
+  static final String TOOL_CALLS = "agent.generation.tool.calls";
+  static final String TOKENS = "agent.generation.tokens";
+
+  private final MeterRegistry registry;
+
+  public GenerationMetrics(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * Instruments the generation.
+   *
+   * @param mode the kind of generation, used as tag.
+   * @param generation the generation stream.
+   * @param isContent tells apart the generated content from other elements of the stream.
+   * @param accounting the generation token accounting, recorded once it terminates.
+   * @return the instrumented generation.
+   */
+  public <T> Flux<T> record(
+      String mode, Flux<T> generation, Predicate<T> isContent, TokenAccounting accounting) {
+    return Flux.defer(
+        () -> {
+          var sample = Timer.start(registry);
+          var start = System.nanoTime();
+          var firstContent = new AtomicBoolean();
+          return generation
+              .doOnNext(
+                  element -> {
+                    if (isContent.test(element) && firstContent.compareAndSet(false, true)) {
+                      timer(FIRST_TOKEN, mode, null)
+                          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                  })
+              .doFinally(
+                  signal -> {
+                    sample.stop(timer(DURATION, mode, outcome(signal)));
+                    var usage = accounting.snapshot();
+                    summary(TOOL_CALLS, mode, null).record(usage.toolCalls());
+                    tokens(mode, "system").record(usage.systemTokens());
+                    tokens(mode, "history").record(usage.historyTokens());
+                    tokens(mode, "question").record(usage.questionTokens());
+                    tokens(mode, "tool_results").record(usage.toolResultTokens());
+                    if (usage.promptTokens() != null) {
+                      tokens(mode, "prompt").record(usage.promptTokens());
+                    }
+                    if (usage.completionTokens() != null) {
+                      tokens(mode, "completion").record(usage.completionTokens());
+                    }
+                  });
+        });
+  }
+
+  static String outcome(SignalType signal) {
+    return switch (signal) {
+      case ON_COMPLETE -> "success";
+      case ON_ERROR -> "error";
+      default -> "cancelled";
+    };
+  }
+
+  Timer timer(String name, String mode, String outcome) {
+    var builder =
+        Timer.builder(name)
+            .tag("mode", mode)
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .publishPercentileHistogram();
+    return (outcome == null ? builder : builder.tag("outcome", outcome)).register(registry);
+  }
+
+  DistributionSummary summary(String name, String mode, String type) {
+    var builder =
+        DistributionSummary.builder(name).tag("mode", mode).publishPercentiles(0.5, 0.95, 0.99);
+    return (type == null ? builder : builder.tag("type", type)).register(registry);
+  }
+
+  DistributionSummary tokens(String mode, String type) {
+    return summary(TOKENS, mode, type);
+  }
+}
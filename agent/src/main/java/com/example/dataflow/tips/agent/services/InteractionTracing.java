@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.ObservationView;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * Traces the interactions. Every interaction is observed as a span, parent of the model
+ * generation spans created by Spring AI and of a span per MCP tool call, whose HTTP requests carry
+ * the trace context to the tools server. Once an interaction completes its latency breakdown, time
+ * to the first content, time spent on tools and the rest spent on the model and transport, is
+ * logged.
+ */
+@Component
+public class InteractionTracing {
+  private static final Logger LOG = LoggerFactory.getLogger(InteractionTracing.class);
+  static final String INTERACTION = "agent.interaction";
+  static final String TOOL_CALL = "agent.mcp.tool";
+
+  private final ObservationRegistry registry;
+
+  public InteractionTracing(ObservationRegistry registry) {
+    this.registry = registry;
+  }
+
+  /** Latency breakdown of an interaction, accumulated by its child spans. */
+  static class Breakdown {
+    private final long start = System.nanoTime();
+    private final AtomicLong firstContent = new AtomicLong(-1);
+    private final Map<String, AtomicLong> tools = new ConcurrentHashMap<>();
+
+    void content() {
+      firstContent.compareAndSet(-1, System.nanoTime() - start);
+    }
+
+    void tool(String name, long nanos) {
+      tools.computeIfAbsent(name, key -> new AtomicLong()).addAndGet(nanos);
+    }
+
+    String summary() {
+      var total = System.nanoTime() - start;
+      var toolsTotal = tools.values().stream().mapToLong(AtomicLong::get).sum();
+      return "total=%dms, firstContent=%s, tools=%dms %s, modelAndTransport=%dms"
+          .formatted(
+              millis(total),
+              firstContent.get() < 0 ? "none" : millis(firstContent.get()) + "ms",
+              millis(toolsTotal),
+              tools.entrySet().stream()
+                  .map(entry -> entry.getKey() + "=" + millis(entry.getValue().get()) + "ms")
+                  .collect(Collectors.joining(", ", "{", "}")),
+              millis(Math.max(0, total - toolsTotal)));
+    }
+
+    static long millis(long nanos) {
+      return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+  }
+
+  /**
+   * Observes the interaction, the observation is made current for everything executed on its
+   * behalf.
+   *
+   * @param mode the kind of interaction.
+   * @param sessionId the interaction's session.
+   * @param interaction the interaction stream.
+   * @param isContent tells apart the generated content from other elements of the stream.
+   * @return the observed interaction.
+   */
+  public <T> Flux<T> observe(
+      String mode, String sessionId, Flux<T> interaction, Predicate<T> isContent) {
+    return Flux.defer(
+        () -> {
+          var breakdown = new Breakdown();
+          var observation =
+              Observation.createNotStarted(INTERACTION, registry)
+                  .lowCardinalityKeyValue("mode", mode)
+                  .highCardinalityKeyValue("session.id", sessionId);
+          observation.getContext().put(Breakdown.class, breakdown);
+          observation.start();
+          return interaction
+              .doOnNext(
+                  element -> {
+                    if (isContent.test(element)) {
+                      breakdown.content();
+                    }
+                  })
+              .doOnError(observation::error)
+              .doFinally(
+                  signal -> {
+                    observation.stop();
+                    LOG.info(
+                        "Interaction for session {} ({}) latency breakdown: {}.",
+                        sessionId,
+                        signal,
+                        breakdown.summary());
+                  })
+              .contextWrite(
+                  context -> context.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+  }
+
+  /** Decorates the tool callback so every call is traced as a child of the current span. */
+  public ToolCallback traced(ToolCallback callback) {
+    return new TracingToolCallback(callback, this);
+  }
+
+  String call(String tool, Supplier<String> call) {
+    var parent = registry.getCurrentObservation();
+    var observation =
+        Observation.createNotStarted(TOOL_CALL, registry)
+            .parentObservation(parent)
+            .lowCardinalityKeyValue("tool", tool);
+    var start = System.nanoTime();
+    try {
+      return observation.observe(call);
+    } finally {
+      breakdown(parent).ifPresent(breakdown -> breakdown.tool(tool, System.nanoTime() - start));
+    }
+  }
+
+  /** Finds the breakdown of the interaction, walking up the observation hierarchy. */
+  static Optional<Breakdown> breakdown(ObservationView view) {
+    var current = view;
+    while (current != null) {
+      var context = current.getContextView();
+      Breakdown breakdown = context.get(Breakdown.class);
+      if (breakdown != null) {
+        return Optional.of(breakdown);
+      }
+      current = context.getParentObservation();
+    }
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import com.example.dataflow.tips.agent.config.McpPoolProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.modelcontextprotocol.client.McpAsyncClient;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Keeps a set of long-lived, initialized MCP clients for every configured connection and leases
+ * them to the generation requests. The amount of concurrent leases is bounded, the pooled clients
+ * are periodically pinged and replaced when they stop responding, and all of them are closed
+ * gracefully on shutdown.
+ */
+public class McpClientPool implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(McpClientPool.class);
+
+  private final List<PooledConnection> connections;
+  private final McpPoolProperties properties;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Deque<Waiter> waiters = new ArrayDeque<>();
+  private int availableLeases;
+  private final AtomicInteger activeLeases = new AtomicInteger();
+  private final Counter leaseCounter;
+  private final Counter waitCounter;
+  private final Counter reconnectCounter;
+  private final Counter leaseTimeoutCounter;
+  private final Disposable healthCheck;
+
+  public McpClientPool(
+      Map<String, Supplier<McpAsyncClient>> clientFactories,
+      McpPoolProperties properties,
+      MeterRegistry registry) {
+    this.properties = properties;
+    this.availableLeases = properties.maxConcurrentLeases();
+    this.connections =
+        clientFactories.entrySet().stream()
+            .map(entry -> new PooledConnection(entry.getKey(), entry.getValue()))
+            .toList();
+    this.leaseCounter = registry.counter("agent.mcp.pool.leases");
+    this.waitCounter = registry.counter("agent.mcp.pool.waits");
+    this.reconnectCounter = registry.counter("agent.mcp.pool.reconnects");
+    this.leaseTimeoutCounter = registry.counter("agent.mcp.pool.lease.timeouts");
+    Gauge.builder("agent.mcp.pool.leases.active", activeLeases, AtomicInteger::get)
+        .register(registry);
+    Gauge.builder("agent.mcp.pool.leases.available", this, McpClientPool::availableLeases)
+        .register(registry);
+    // warm up the connections without blocking the startup, failed ones are retried by the
+    // health check or by the first lease that needs them
+    this.healthCheck =
+        Flux.interval(Duration.ZERO, properties.healthCheckInterval())
+            .onBackpressureDrop()
+            .concatMap(tick -> checkAll())
+            .subscribe();
+  }
+
+  /**
+   * Leases one initialized client per configured connection. The returned lease must be released
+   * once the clients are not needed anymore.
+   *
+   * @return a Mono with the lease, or an error if no lease was available in the configured time.
+   */
+  public Mono<Lease> acquire() {
+    return acquirePermit()
+        .flatMap(
+            permit ->
+                Flux.fromIterable(connections)
+                    .concatMap(PooledConnection::next)
+                    .collectList()
+                    .map(clients -> new Lease(clients, permit))
+                    .doOnError(error -> permit.release())
+                    .doOnCancel(permit::release));
+  }
+
+  /**
+   * Grants a lease permit, waiting without holding a thread in a first come first served queue
+   * when none is available. Waiters leaving the queue, on timeout or cancellation, never keep a
+   * permit.
+   */
+  Mono<Permit> acquirePermit() {
+    return Mono.<Permit>create(
+            sink -> {
+              var granted = false;
+              lock.lock();
+              try {
+                if (availableLeases > 0 && waiters.isEmpty()) {
+                  availableLeases--;
+                  granted = true;
+                } else {
+                  var waiter = new Waiter(sink, new AtomicReference<>());
+                  waiters.add(waiter);
+                  sink.onCancel(() -> dequeue(waiter));
+                }
+              } finally {
+                lock.unlock();
+              }
+              if (granted) {
+                sink.success(grant());
+              } else {
+                waitCounter.increment();
+              }
+            })
+        .timeout(
+            properties.acquireTimeout(),
+            Mono.fromSupplier(
+                () -> {
+                  leaseTimeoutCounter.increment();
+                  throw new IllegalStateException(
+                      String.format(
+                          "No MCP clients available after waiting %s, %d leases in use.",
+                          properties.acquireTimeout(), activeLeases.get()));
+                }));
+  }
+
+  Permit grant() {
+    leaseCounter.increment();
+    activeLeases.incrementAndGet();
+    return new Permit();
+  }
+
+  void dequeue(Waiter waiter) {
+    Permit dropped;
+    lock.lock();
+    try {
+      dropped = waiters.remove(waiter) ? null : waiter.granted().get();
+    } finally {
+      lock.unlock();
+    }
+    // the waiter was cancelled while being granted a permit, it will never be used
+    if (dropped != null) {
+      dropped.release();
+    }
+  }
+
+  /** Hands the released permit to the next waiter, completed outside of the lock. */
+  void releasePermit() {
+    Waiter next;
+    lock.lock();
+    try {
+      next = waiters.poll();
+      if (next == null) {
+        availableLeases++;
+        return;
+      }
+      next.granted().set(grant());
+    } finally {
+      lock.unlock();
+    }
+    next.sink().success(next.granted().get());
+  }
+
+  int availableLeases() {
+    lock.lock();
+    try {
+      return availableLeases;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  Mono<Void> checkAll() {
+    return Flux.fromIterable(connections)
+        .flatMapIterable(PooledConnection::clients)
+        .flatMap(PooledClient::check)
+        .then();
+  }
+
+  @Override
+  public void close() {
+    healthCheck.dispose();
+    Flux.fromIterable(connections)
+        .flatMapIterable(PooledConnection::clients)
+        .flatMap(PooledClient::shutdown)
+        .then()
+        .block(properties.shutdownTimeout());
+  }
+
+  /** A set of clients, one per configured connection, leased to a single generation. */
+  public static class Lease {
+    private final List<McpAsyncClient> clients;
+    private final Permit permit;
+
+    Lease(List<McpAsyncClient> clients, Permit permit) {
+      this.clients = clients;
+      this.permit = permit;
+    }
+
+    public List<McpAsyncClient> clients() {
+      return clients;
+    }
+
+    /** Returns the clients to the pool, they are kept open for the next generation. */
+    public Mono<Void> release() {
+      return Mono.fromRunnable(permit::release);
+    }
+  }
+
+  record Waiter(MonoSink<Permit> sink, AtomicReference<Permit> granted) {}
+
+  class Permit {
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    void release() {
+      if (released.compareAndSet(false, true)) {
+        activeLeases.decrementAndGet();
+        releasePermit();
+      }
+    }
+  }
+
+  class PooledConnection {
+    private final String name;
+    private final List<PooledClient> clients;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    PooledConnection(String name, Supplier<McpAsyncClient> factory) {
+      this.name = name;
+      this.clients =
+          IntStream.range(0, Math.max(1, properties.clientsPerConnection()))
+              .mapToObj(index -> new PooledClient(name + "-" + index, factory))
+              .toList();
+    }
+
+    List<PooledClient> clients() {
+      return clients;
+    }
+
+    /** Round robins over the pooled clients, MCP clients multiplex concurrent requests. */
+    Mono<McpAsyncClient> next() {
+      var start = Math.floorMod(nextIndex.getAndIncrement(), clients.size());
+      return Flux.range(0, clients.size())
+          .map(offset -> clients.get((start + offset) % clients.size()))
+          .concatMap(client -> client.connection().onErrorResume(error -> Mono.empty()), 1)
+          .next()
+          .switchIfEmpty(
+              Mono.error(
+                  () ->
+                      new IllegalStateException(
+                          "No MCP client could be connected for connection " + name)));
+    }
+  }
+
+  class PooledClient {
+    private final String name;
+    private final Supplier<McpAsyncClient> factory;
+    private final AtomicReference<Mono<McpAsyncClient>> connection = new AtomicReference<>();
+    private final AtomicReference<McpAsyncClient> active = new AtomicReference<>();
+
+    PooledClient(String name, Supplier<McpAsyncClient> factory) {
+      this.name = name;
+      this.factory = factory;
+      this.connection.set(connect());
+    }
+
+    Mono<McpAsyncClient> connection() {
+      return connection.get();
+    }
+
+    /**
+     * Creates a cached connection, successful handshakes are kept until replaced while failed ones
+     * are retried by the next subscriber.
+     */
+    Mono<McpAsyncClient> connect() {
+      return Mono.defer(
+              () -> {
+                var client = factory.get();
+                return client
+                    .initialize()
+                    .timeout(properties.healthCheckTimeout())
+                    .thenReturn(client)
+                    .doOnSuccess(
+                        ignored -> {
+                          active.set(client);
+                          LOG.info("MCP client {} initialized.", name);
+                        })
+                    .onErrorResume(
+                        error -> {
+                          LOG.warn("MCP client {} failed to initialize.", name, error);
+                          return closeQuietly(client).then(Mono.error(error));
+                        });
+              })
+          .cache(
+              client -> Duration.ofMillis(Long.MAX_VALUE),
+              error -> Duration.ZERO,
+              () -> Duration.ZERO);
+    }
+
+    Mono<Void> check() {
+      var current = connection.get();
+      return current
+          .flatMap(client -> client.ping().timeout(properties.healthCheckTimeout()).then())
+          .onErrorResume(
+              error -> {
+                if (connection.compareAndSet(current, connect())) {
+                  LOG.warn("MCP client {} failed health check, reconnecting.", name, error);
+                  reconnectCounter.increment();
+                  return Mono.justOrEmpty(active.getAndSet(null))
+                      .flatMap(this::closeQuietly)
+                      .then(connection.get().then());
+                }
+                return Mono.empty();
+              })
+          .onErrorResume(error -> Mono.empty());
+    }
+
+    Mono<Void> shutdown() {
+      return Mono.justOrEmpty(active.getAndSet(null)).flatMap(this::closeQuietly);
+    }
+
+    Mono<Void> closeQuietly(McpAsyncClient client) {
+      return client
+          .closeGracefully()
+          .timeout(properties.shutdownTimeout())
+          .onErrorResume(
+              error -> {
+                client.close();
+                return Mono.empty();
+              });
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import java.util.function.Consumer;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/** Decorates a tool callback reporting when the model starts and finishes invoking it. */
+class ProgressToolCallback implements ToolCallback {
+
+  private final ToolCallback delegate;
+  private final Consumer<AgentEvent> listener;
+
+  ProgressToolCallback(ToolCallback delegate, Consumer<AgentEvent> listener) {
+    this.delegate = delegate;
+    this.listener = listener;
+  }
+
+  @Override
+  public ToolDefinition getToolDefinition() {
+    return delegate.getToolDefinition();
+  }
+
+  @Override
+  public ToolMetadata getToolMetadata() {
+    return delegate.getToolMetadata();
+  }
+
+  @Override
+  public String call(String toolInput) {
+    return call(toolInput, null);
+  }
+
+  @Override
+  public String call(String toolInput, ToolContext toolContext) {
+    var name = delegate.getToolDefinition().name();
+    var start = System.currentTimeMillis();
+    listener.accept(AgentEvent.toolStart(name));
+    try {
+      var result =
+          toolContext == null ? delegate.call(toolInput) : delegate.call(toolInput, toolContext);
+      listener.accept(AgentEvent.toolEnd(name, System.currentTimeMillis() - start));
+      return result;
+    } catch (RuntimeException ex) {
+      listener.accept(
+          AgentEvent.toolError(name, ex.getMessage(), System.currentTimeMillis() - start));
+      throw ex;
+    }
+  }
+}
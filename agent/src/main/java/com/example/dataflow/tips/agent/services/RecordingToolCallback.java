@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import java.util.function.Consumer;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/** Decorates a tool callback recording its successful invocations with their input and result. */
+class RecordingToolCallback implements ToolCallback {
+
+  private final ToolCallback delegate;
+  private final Consumer<SessionStore.ToolInvocation> recorder;
+
+  RecordingToolCallback(ToolCallback delegate, Consumer<SessionStore.ToolInvocation> recorder) {
+    this.delegate = delegate;
+    this.recorder = recorder;
+  }
+
+  @Override
+  public ToolDefinition getToolDefinition() {
+    return delegate.getToolDefinition();
+  }
+
+  @Override
+  public ToolMetadata getToolMetadata() {
+    return delegate.getToolMetadata();
+  }
+
+  @Override
+  public String call(String toolInput) {
+    return call(toolInput, null);
+  }
+
+  @Override
+  public String call(String toolInput, ToolContext toolContext) {
+    var result =
+        toolContext == null ? delegate.call(toolInput) : delegate.call(toolInput, toolContext);
+    recorder.accept(
+        new SessionStore.ToolInvocation(delegate.getToolDefinition().name(), toolInput, result));
+    return result;
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append only journal of the session turns, stored as length prefixed JSON records in a memory
+ * mapped file. A zero length marks the end of the written records. When the file is full it is
+ * rewritten with the newest turns of the sessions still alive, filling up to half of its capacity
+ * so the following appends do not compact it again right away.
+ */
+class SessionJournal implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(SessionJournal.class);
+
+  private final Path path;
+  private final int capacity;
+  private final ObjectMapper mapper;
+  private final ReentrantLock lock = new ReentrantLock();
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+
+  SessionJournal(Path path, int capacity, ObjectMapper mapper) throws IOException {
+    this.path = path;
+    this.capacity = capacity;
+    this.mapper = mapper;
+    this.channel = open(path);
+    this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+
+  record Entry(String sessionId, long timestamp, SessionStore.Role role, String text) {}
+
+  FileChannel open(Path file) throws IOException {
+    return FileChannel.open(
+        file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Reads all the written entries, leaving the journal positioned after the last readable one so a
+   * torn tail is overwritten by the next append.
+   */
+  void replay(Consumer<Entry> consumer) {
+    lock.lock();
+    try {
+      buffer.position(0);
+      while (buffer.remaining() > Integer.BYTES) {
+        buffer.mark();
+        var length = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+          buffer.reset();
+          break;
+        }
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        Entry entry;
+        try {
+          entry = mapper.readValue(bytes, Entry.class);
+        } catch (IOException ex) {
+          // a record torn by an interrupted write, the following appends overwrite it
+          LOG.warn("Session journal truncated at an unreadable entry.", ex);
+          buffer.reset();
+          break;
+        }
+        consumer.accept(entry);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Appends the entries, compacting the journal to the provided live entries when full.
+   *
+   * @param entries the entries to append.
+   * @param liveEntries supplies the entries of the live sessions oldest first, including the ones
+   *     being appended, used when compacting.
+   */
+  void append(List<Entry> entries, Supplier<List<Entry>> liveEntries) {
+    lock.lock();
+    try {
+      for (var entry : entries) {
+        var bytes = mapper.writeValueAsBytes(entry);
+        if (bytes.length + 2 * Integer.BYTES > compactedCapacity()) {
+          LOG.warn("Session entry larger than the journal capacity, skipping it.");
+          continue;
+        }
+        if (buffer.remaining() < bytes.length + 2 * Integer.BYTES) {
+          // the live entries already hold this entry and the remaining ones
+          compact(liveEntries.get());
+          return;
+        }
+        write(bytes);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Error while appending to the session journal.", ex);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int compactedCapacity() {
+    return capacity / 2;
+  }
+
+  void write(byte[] bytes) {
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
+    // keeps the end marker after the last record
+    buffer.putInt(buffer.position(), 0);
+  }
+
+  void compact(List<Entry> liveEntries) throws IOException {
+    var compacted = path.resolveSibling(path.getFileName() + ".compact");
+    Files.deleteIfExists(compacted);
+    var newChannel = open(compacted);
+    var newBuffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    var previousChannel = channel;
+    channel = newChannel;
+    buffer = newBuffer;
+    // keeps the newest entries when the live ones do not fit
+    var kept = new ArrayDeque<byte[]>();
+    var size = Integer.BYTES;
+    for (var index = liveEntries.size() - 1; index >= 0; index--) {
+      var bytes = mapper.writeValueAsBytes(liveEntries.get(index));
+      if (size + bytes.length + Integer.BYTES > compactedCapacity()) {
+        break;
+      }
+      kept.addFirst(bytes);
+      size += bytes.length + Integer.BYTES;
+    }
+    kept.forEach(this::write);
+    buffer.force();
+    previousChannel.close();
+    Files.move(
+        compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    var dropped = liveEntries.size() - kept.size();
+    if (dropped > 0) {
+      // the sessions still hold these turns in memory, they are only lost on restart
+      LOG.warn(
+          "Session journal compacted to {} of {} live entries, {} bytes, the {} oldest entries do"
+              + " not fit and will not survive a restart. Consider a larger capacity.",
+          kept.size(),
+          liveEntries.size(),
+          buffer.position(),
+          dropped);
+    } else {
+      LOG.info(
+          "Session journal compacted to {} live entries, {} bytes.",
+          kept.size(),
+          buffer.position());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      buffer.force();
+      channel.close();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import com.example.dataflow.tips.agent.config.SessionProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the conversation history of the multi-turn sessions. Sessions are evicted when the least
+ * recently used or once idle for longer than the configured TTL, and every session history is
+ * capped in size dropping its oldest turns first. Tool results are kept truncated so follow up
+ * questions can refer to them without invoking the tools again. Optionally the turns are written to
+ * a memory mapped journal, replayed on startup, so the sessions survive restarts.
+ */
+@Service
+public class SessionStore implements DisposableBean {
+  private static final Logger LOG = LoggerFactory.getLogger(SessionStore.class);
+
+  private final SessionProperties properties;
+  private final Cache<String, Session> sessions;
+  private final SessionJournal journal;
+
+  public SessionStore(
+      SessionProperties properties, ObjectMapper objectMapper, MeterRegistry registry)
+      throws IOException {
+    this.properties = properties;
+    this.sessions =
+        Caffeine.newBuilder()
+            .maximumSize(properties.maxSessions())
+            .expireAfterAccess(properties.ttl())
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(registry, sessions, "agent.sessions");
+    Gauge.builder(
+            "agent.sessions.bytes",
+            sessions,
+            cache -> cache.asMap().values().stream().mapToLong(Session::bytes).sum())
+        .register(registry);
+    this.journal =
+        properties.journal().enabled()
+            ? new SessionJournal(
+                Path.of(properties.journal().path()),
+                properties.journal().capacityBytes(),
+                objectMapper)
+            : null;
+    if (journal != null) {
+      replay();
+    }
+  }
+
+  /** The author of a turn in the conversation. */
+  public enum Role {
+    USER,
+    ASSISTANT,
+    TOOL
+  }
+
+  /** A tool invoked by the model while generating an answer, with its input and result. */
+  public record ToolInvocation(String tool, String input, String result) {}
+
+  record Turn(Role role, String text, long timestamp) {
+
+    int bytes() {
+      return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    Message message() {
+      return switch (role) {
+        case USER -> new UserMessage(text);
+        case ASSISTANT, TOOL -> new AssistantMessage(text);
+      };
+    }
+  }
+
+  static class Session {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Turn> turns = new ArrayDeque<>();
+    private long bytes = 0;
+
+    void add(Turn turn, int maxBytes) {
+      lock.lock();
+      try {
+        turns.addLast(turn);
+        bytes += turn.bytes();
+        while (bytes > maxBytes && turns.size() > 1) {
+          bytes -= turns.removeFirst().bytes();
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    List<Turn> turns() {
+      lock.lock();
+      try {
+        return List.copyOf(turns);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    long bytes() {
+      lock.lock();
+      try {
+        return bytes;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Returns the history of the session as chat messages, oldest first.
+   *
+   * @param sessionId the session identifier.
+   * @return the session messages, empty when the session does not exist or has expired.
+   */
+  public List<Message> history(String sessionId) {
+    return Optional.ofNullable(sessions.getIfPresent(sessionId))
+        .map(session -> session.turns().stream().map(Turn::message).toList())
+        .orElse(List.of());
+  }
+
+  /**
+   * Appends an interaction to the session, creating the session when needed.
+   *
+   * @param sessionId the session identifier.
+   * @param question the user question.
+   * @param answer the generated answer.
+   * @param tools the tools invoked while generating the answer.
+   */
+  public void append(
+      String sessionId, String question, String answer, List<ToolInvocation> tools) {
+    var now = System.currentTimeMillis();
+    var turns = new ArrayList<Turn>();
+    turns.add(new Turn(Role.USER, question, now));
+    tools.stream().map(tool -> new Turn(Role.TOOL, toolTurn(tool), now)).forEach(turns::add);
+    turns.add(new Turn(Role.ASSISTANT, answer, now));
+    var session = sessions.get(sessionId, id -> new Session());
+    turns.forEach(turn -> session.add(turn, properties.maxSessionBytes()));
+    if (journal != null) {
+      try {
+        journal.append(
+            turns.stream()
+                .map(
+                    turn ->
+                        new SessionJournal.Entry(
+                            sessionId, turn.timestamp(), turn.role(), turn.text()))
+                .toList(),
+            this::liveEntries);
+      } catch (RuntimeException ex) {
+        LOG.warn("Error while journaling the session {} turns.", sessionId, ex);
+      }
+    }
+  }
+
+  String toolTurn(ToolInvocation invocation) {
+    var result = Optional.ofNullable(invocation.result()).orElse("");
+    if (result.length() > properties.maxToolResultChars()) {
+      result = result.substring(0, properties.maxToolResultChars()) + "... [truncated]";
+    }
+    return "Tool '%s' invoked with %s returned: %s"
+        .formatted(invocation.tool(), invocation.input(), result);
+  }
+
+  List<SessionJournal.Entry> liveEntries() {
+    return sessions.asMap().entrySet().stream()
+        .flatMap(
+            entry ->
+                entry.getValue().turns().stream()
+                    .map(
+                        turn ->
+                            new SessionJournal.Entry(
+                                entry.getKey(), turn.timestamp(), turn.role(), turn.text())))
+        .sorted(Comparator.comparingLong(SessionJournal.Entry::timestamp))
+        .toList();
+  }
+
+  void replay() {
+    var oldest = System.currentTimeMillis() - properties.ttl().toMillis();
+    journal.replay(
+        entry -> {
+          if (entry.timestamp() >= oldest) {
+            sessions
+                .get(entry.sessionId(), id -> new Session())
+                .add(
+                    new Turn(entry.role(), entry.text(), entry.timestamp()),
+                    properties.maxSessionBytes());
+          }
+        });
+    LOG.info("Restored {} sessions from the journal.", sessions.estimatedSize());
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    if (journal != null) {
+      journal.close();
+    }
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import com.example.dataflow.tips.agent.config.SingleFlightProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+/**
+ * Coalesces identical in-flight generations, so concurrent requests asking the same question share
+ * a single model generation and MCP clients lease. The shared generation replays the content
+ * already produced to late joiners before following the live tail, and it is cancelled only once
+ * every caller left. Completed generations are forgotten, later requests start a new one.
+ *
+ * <p>Joining and leaving happen under a lock, so a generation is started exactly once and a caller
+ * never joins a generation that was cancelled or completed. The replayed prefix is bounded: a
+ * generation stops accepting joiners once half of the chunks it can replay were produced, and a
+ * joiner that still finds the start of the answer evicted fails rather than returning part of it.
+ */
+@Component
+public class SingleFlight {
+
+  private final SingleFlightProperties properties;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+  private final Counter started;
+  private final Counter coalesced;
+
+  public SingleFlight(SingleFlightProperties properties, MeterRegistry registry) {
+    this.properties = properties;
+    this.started = registry.counter("agent.interactions.flights", "result", "started");
+    this.coalesced = registry.counter("agent.interactions.flights", "result", "coalesced");
+    Gauge.builder("agent.interactions.flights.active", flights, Map::size).register(registry);
+  }
+
+  /** A generation, possibly shared, with the tool invocations and token accounting it produced. */
+  public final class Flight {
+    private final String key;
+    private final List<SessionStore.ToolInvocation> tools = new CopyOnWriteArrayList<>();
+    private final TokenAccounting accounting = new TokenAccounting();
+    private final AtomicLong produced = new AtomicLong();
+    private final AtomicReference<Disposable> connection = new AtomicReference<>();
+    private final Flux<String> content;
+    // guarded by the lock
+    private int members;
+    private boolean closed;
+
+    Flight(
+        String key,
+        BiFunction<Consumer<SessionStore.ToolInvocation>, TokenAccounting, Flux<String>>
+            generation) {
+      this.key = key;
+      var generated = Flux.defer(() -> generation.apply(tools::add, accounting));
+      if (key == null) {
+        this.content = generated;
+        return;
+      }
+      // connected once by the first subscriber, never reconnected, and cancelled when the last
+      // member leaves
+      var shared =
+          generated
+              .doOnNext(chunk -> produced.incrementAndGet())
+              .index()
+              .doFinally(signal -> close())
+              .replay(properties.maxReplayedChunks())
+              .autoConnect(1, connection::set);
+      this.content =
+          Flux.defer(
+                  () -> {
+                    var expected = new AtomicLong();
+                    return shared.<String>handle(
+                        (chunk, sink) -> {
+                          if (chunk.getT1() != expected.getAndIncrement()) {
+                            sink.error(
+                                new IllegalStateException(
+                                    "The shared generation moved past the replayed content."));
+                            return;
+                          }
+                          sink.next(chunk.getT2());
+                        });
+                  })
+              .doFinally(signal -> leave());
+    }
+
+    public Flux<String> content() {
+      return content;
+    }
+
+    public List<SessionStore.ToolInvocation> tools() {
+      return tools;
+    }
+
+    public TokenAccounting accounting() {
+      return accounting;
+    }
+
+    /** Adds a member, unless the generation stopped accepting them. Called under the lock. */
+    boolean enter() {
+      if (closed || produced.get() >= properties.maxReplayedChunks() / 2) {
+        return false;
+      }
+      members++;
+      return true;
+    }
+
+    /** Removes a member, the generation is cancelled once the last one left. */
+    void leave() {
+      Disposable cancelled = null;
+      lock.lock();
+      try {
+        if (--members == 0) {
+          forget();
+          cancelled = connection.get();
+        }
+      } finally {
+        lock.unlock();
+      }
+      if (cancelled != null) {
+        cancelled.dispose();
+      }
+    }
+
+    /** Stops accepting members once the generation terminated. */
+    void close() {
+      lock.lock();
+      try {
+        forget();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void forget() {
+      closed = true;
+      flights.remove(key, this);
+    }
+  }
+
+  /**
+   * Joins the in-flight generation for the key, or starts a new one when there is none or when it
+   * does not accept more members. The caller must subscribe to the flight's content, leaving it
+   * once the subscription terminates.
+   *
+   * @param key identifies identical generations.
+   * @param generation creates the generation, receiving the tools recorder and token accounting.
+   * @return the shared generation.
+   */
+  public Flight join(
+      String key,
+      BiFunction<Consumer<SessionStore.ToolInvocation>, TokenAccounting, Flux<String>>
+          generation) {
+    lock.lock();
+    try {
+      var flight = flights.get(key);
+      if (flight != null && flight.enter()) {
+        coalesced.increment();
+        return flight;
+      }
+      flight = new Flight(key, generation);
+      flight.members++;
+      flights.put(key, flight);
+      started.increment();
+      return flight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Joins the in-flight generation for the key, if there is one accepting members.
+   *
+   * @param key identifies identical generations.
+   * @return the joined generation, empty when a new one has to be started.
+   */
+  public Optional<Flight> joinInFlight(String key) {
+    lock.lock();
+    try {
+      var flight = flights.get(key);
+      if (flight != null && flight.enter()) {
+        coalesced.increment();
+        return Optional.of(flight);
+      }
+      return Optional.empty();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Creates a generation that is not shared with other requests. */
+  public Flight alone(
+      BiFunction<Consumer<SessionStore.ToolInvocation>, TokenAccounting, Flux<String>>
+          generation) {
+    return new Flight(null, generation);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.springframework.ai.chat.metadata.Usage;
+
+/**
+ * Keeps the token accounting of a single interaction: the estimated size of every part of the
+ * prompt, how much was trimmed to fit the budgets and the usage reported by the model.
+ */
+public class TokenAccounting {
+  private final AtomicInteger systemTokens = new AtomicInteger();
+  private final AtomicInteger historyTokens = new AtomicInteger();
+  private final AtomicInteger droppedHistoryMessages = new AtomicInteger();
+  private final AtomicInteger questionTokens = new AtomicInteger();
+  private final AtomicInteger toolResultTokens = new AtomicInteger();
+  private final AtomicInteger toolResultOriginalTokens = new AtomicInteger();
+  private final AtomicInteger trimmedToolResults = new AtomicInteger();
+  private final AtomicInteger toolCalls = new AtomicInteger();
+  private final AtomicReference<Usage> modelUsage = new AtomicReference<>();
+
+  /**
+   * Token accounting of an interaction.
+   *
+   * @param systemTokens estimated tokens of the system prompt.
+   * @param historyTokens estimated tokens of the history included in the prompt.
+   * @param droppedHistoryMessages history messages left out to fit the budget.
+   * @param questionTokens estimated tokens of the question.
+   * @param toolResultTokens estimated tokens of the tool results sent to the model.
+   * @param toolResultOriginalTokens estimated tokens of the tool results before trimming them.
+   * @param trimmedToolResults amount of tool results trimmed to fit the budgets.
+   * @param toolCalls amount of tool invocations made by the model.
+   * @param promptTokens prompt tokens reported by the model for the last turn, when available.
+   * @param completionTokens completion tokens reported by the model for the last turn, when
+   *     available.
+   */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record Snapshot(
+      int systemTokens,
+      int historyTokens,
+      int droppedHistoryMessages,
+      int questionTokens,
+      int toolResultTokens,
+      int toolResultOriginalTokens,
+      int trimmedToolResults,
+      int toolCalls,
+      Integer promptTokens,
+      Integer completionTokens) {}
+
+  void prompt(int system, int history, int droppedHistory, int question) {
+    systemTokens.set(system);
+    historyTokens.set(history);
+    droppedHistoryMessages.set(droppedHistory);
+    questionTokens.set(question);
+  }
+
+  /** Estimated tokens of the tool results already sent to the model. */
+  int toolResultsUsed() {
+    return toolResultTokens.get();
+  }
+
+  void toolCall() {
+    toolCalls.incrementAndGet();
+  }
+
+  void toolResult(int originalTokens, int tokens) {
+    toolResultOriginalTokens.addAndGet(originalTokens);
+    toolResultTokens.addAndGet(tokens);
+    if (tokens < originalTokens) {
+      trimmedToolResults.incrementAndGet();
+    }
+  }
+
+  /** Keeps the usage reported by the model once its response completed. */
+  void modelUsage(Usage usage) {
+    modelUsage.set(usage);
+  }
+
+  /** Whether the usage carries the model counts, the streamed chunks mostly report none. */
+  static boolean reported(Usage usage) {
+    return usage != null && usage.getPromptTokens() != null && usage.getPromptTokens() > 0;
+  }
+
+  public Snapshot snapshot() {
+    var usage = modelUsage.get();
+    return new Snapshot(
+        systemTokens.get(),
+        historyTokens.get(),
+        droppedHistoryMessages.get(),
+        questionTokens.get(),
+        toolResultTokens.get(),
+        toolResultOriginalTokens.get(),
+        trimmedToolResults.get(),
+        toolCalls.get(),
+        usage != null ? usage.getPromptTokens() : null,
+        usage != null ? usage.getCompletionTokens() : null);
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import com.example.dataflow.tips.agent.config.TokenBudgetProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.StreamSupport;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.stereotype.Component;
+
+/**
+ * Estimates the size in tokens of the prompt parts and fits them into the configured budgets. The
+ * history keeps its most recent messages, and tool results are trimmed structurally before being
+ * cut: display data is dropped first, then long lists keep their first items (or the largest ones
+ * when they are metrics), and only then the text is truncated.
+ */
+@Component
+public class TokenBudget {
+  private static final Set<String> DISPLAY_DATA_FIELDS = Set.of("displayData", "display_data");
+  private static final String TRUNCATED = "... [truncated]";
+
+  private final TokenBudgetProperties properties;
+  private final ObjectMapper objectMapper;
+
+  public TokenBudget(TokenBudgetProperties properties, ObjectMapper objectMapper) {
+    this.properties = properties;
+    this.objectMapper = objectMapper;
+  }
+
+  public int estimate(String text) {
+    return text == null
+        ? 0
+        : (text.length() + properties.charsPerToken() - 1) / properties.charsPerToken();
+  }
+
+  /**
+   * Keeps the most recent history messages that fit the history budget and the room left in the
+   * context by the rest of the prompt.
+   *
+   * @param system the system prompt message.
+   * @param history the conversation history, oldest first.
+   * @param question the user question.
+   * @param accounting receives the prompt token accounting.
+   * @return the history messages to include in the prompt, oldest first.
+   */
+  public List<Message> fitHistory(
+      Message system, List<Message> history, String question, TokenAccounting accounting) {
+    var systemTokens = estimate(system.getText());
+    var questionTokens = estimate(question);
+    var available =
+        Math.min(
+            properties.maxHistoryTokens(),
+            properties.maxContextTokens()
+                - systemTokens
+                - questionTokens
+                - properties.maxToolResultsTokens());
+    var kept = new ArrayList<Message>();
+    var used = 0;
+    for (var i = history.size() - 1; i >= 0; i--) {
+      var tokens = estimate(history.get(i).getText());
+      if (used + tokens > available) {
+        break;
+      }
+      used += tokens;
+      kept.addFirst(history.get(i));
+    }
+    accounting.prompt(systemTokens, used, history.size() - kept.size(), questionTokens);
+    return kept;
+  }
+
+  /**
+   * Fits a tool result into the per result budget and the room left in the interaction tool
+   * results budget.
+   *
+   * @param result the tool result.
+   * @param accounting the interaction token accounting, updated with the result size.
+   * @return the result, trimmed when needed.
+   */
+  public String fitToolResult(String result, TokenAccounting accounting) {
+    var originalTokens = estimate(result);
+    var budget =
+        Math.max(
+            0,
+            Math.min(
+                properties.maxToolResultTokens(),
+                properties.maxToolResultsTokens() - accounting.toolResultsUsed()));
+    var fitted = originalTokens <= budget ? result : trim(result, budget);
+    accounting.toolResult(originalTokens, estimate(fitted));
+    return fitted;
+  }
+
+  String trim(String result, int budget) {
+    if (budget == 0) {
+      return "Tool result omitted, the interaction exhausted its tool results budget.";
+    }
+    var trimmed = result;
+    try {
+      var json = objectMapper.readTree(result);
+      json = transform(json, this::dropDisplayData);
+      trimmed = objectMapper.writeValueAsString(json);
+      if (estimate(trimmed) > budget) {
+        json = transform(json, this::limitLists);
+        trimmed = objectMapper.writeValueAsString(json);
+      }
+    } catch (JsonProcessingException ex) {
+      // not JSON, the text is truncated below
+    }
+    var maxChars = budget * properties.charsPerToken();
+    return trimmed.length() <= maxChars
+        ? trimmed
+        : trimmed.substring(0, Math.max(0, maxChars - TRUNCATED.length())) + TRUNCATED;
+  }
+
+  /**
+   * Applies the transformation to the node and to the JSON documents embedded as text, as the MCP
+   * tool results wrap the tool JSON output into text contents.
+   */
+  JsonNode transform(JsonNode node, UnaryOperator<JsonNode> transformation) {
+    if (node.isTextual()) {
+      var text = node.asText().strip();
+      if (text.startsWith("{") || text.startsWith("[")) {
+        try {
+          return new TextNode(
+              objectMapper.writeValueAsString(
+                  transform(objectMapper.readTree(text), transformation)));
+        } catch (JsonProcessingException ex) {
+          return node;
+        }
+      }
+      return node;
+    }
+    var transformed = transformation.apply(node);
+    if (transformed instanceof ObjectNode object) {
+      object
+          .properties()
+          .forEach(entry -> entry.setValue(transform(entry.getValue(), transformation)));
+    } else if (transformed instanceof ArrayNode array) {
+      for (var i = 0; i < array.size(); i++) {
+        array.set(i, transform(array.get(i), transformation));
+      }
+    }
+    return transformed;
+  }
+
+  JsonNode dropDisplayData(JsonNode node) {
+    if (node instanceof ObjectNode object) {
+      object.remove(DISPLAY_DATA_FIELDS);
+    }
+    return node;
+  }
+
+  JsonNode limitLists(JsonNode node) {
+    if (!(node instanceof ArrayNode array) || array.size() <= properties.maxListItems()) {
+      return node;
+    }
+    var items = StreamSupport.stream(array.spliterator(), false);
+    if (StreamSupport.stream(array.spliterator(), false).allMatch(TokenBudget::hasScalar)) {
+      items = items.sorted(Comparator.comparingDouble(TokenBudget::scalar).reversed());
+    }
+    var limited = objectMapper.createArrayNode();
+    items.limit(properties.maxListItems()).forEach(limited::add);
+    limited.add(
+        "... %d more items omitted".formatted(array.size() - properties.maxListItems()));
+    return limited;
+  }
+
+  static boolean hasScalar(JsonNode node) {
+    return node.has("scalar") && node.get("scalar").isNumber();
+  }
+
+  static double scalar(JsonNode node) {
+    return Math.abs(node.get("scalar").asDouble());
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/** Decorates a tool callback tracing its calls as spans of the ongoing interaction. */
+class TracingToolCallback implements ToolCallback {
+
+  private final ToolCallback delegate;
+  private final InteractionTracing tracing;
+
+  TracingToolCallback(ToolCallback delegate, InteractionTracing tracing) {
+    this.delegate = delegate;
+    this.tracing = tracing;
+  }
+
+  @Override
+  public ToolDefinition getToolDefinition() {
+    return delegate.getToolDefinition();
+  }
+
+  @Override
+  public ToolMetadata getToolMetadata() {
+    return delegate.getToolMetadata();
+  }
+
+  @Override
+  public String call(String toolInput) {
+    return call(toolInput, null);
+  }
+
+  @Override
+  public String call(String toolInput, ToolContext toolContext) {
+    return tracing.call(
+        delegate.getToolDefinition().name(),
+        () ->
+            toolContext == null
+                ? delegate.call(toolInput)
+                : delegate.call(toolInput, toolContext));
+  }
+}
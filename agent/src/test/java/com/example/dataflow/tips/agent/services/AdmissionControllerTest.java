@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.dataflow.tips.agent.config.AdmissionProperties;
+import com.example.dataflow.tips.agent.services.AdmissionController.Permit;
+import com.example.dataflow.tips.agent.services.AdmissionController.Priority;
+import com.example.dataflow.tips.agent.services.AdmissionController.RejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class AdmissionControllerTest {
+  static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  AdmissionController controller(
+      int initialLimit, int minLimit, int maxLimit, int maxQueueSize, Duration queueTimeout) {
+    return new AdmissionController(
+        new AdmissionProperties(
+            true,
+            initialLimit,
+            minLimit,
+            maxLimit,
+            0.5,
+            Duration.ofMinutes(1),
+            maxQueueSize,
+            queueTimeout,
+            Duration.ofSeconds(5),
+            "X-Priority",
+            "X-Priority-Key",
+            "secret"),
+        registry);
+  }
+
+  double gauge(String name) {
+    return registry.get(name).gauge().value();
+  }
+
+  /** Subscribes to the admission, collecting the granted permit or the rejection. */
+  static class Admission {
+    final AtomicReference<Permit> permit = new AtomicReference<>();
+    final AtomicReference<Throwable> rejection = new AtomicReference<>();
+  }
+
+  static Admission admission(AdmissionController controller, Priority priority) {
+    var admission = new Admission();
+    controller.acquire(priority).subscribe(admission.permit::set, admission.rejection::set);
+    return admission;
+  }
+
+  @Test
+  void queuesTheInteractionsOverTheLimit() {
+    var controller = controller(1, 1, 4, 10, TIMEOUT);
+    var first = controller.acquire(Priority.NORMAL).block(TIMEOUT);
+
+    var second = admission(controller, Priority.NORMAL);
+    assertThat(second.permit.get()).isNull();
+    assertThat(gauge("agent.admission.queued")).isEqualTo(1);
+
+    first.release();
+    assertThat(second.permit.get()).isNotNull();
+    assertThat(gauge("agent.admission.queued")).isZero();
+    assertThat(gauge("agent.admission.inflight")).isEqualTo(1);
+  }
+
+  @Test
+  void increasesTheLimitAdditivelyWhileHealthy() {
+    var controller = controller(4, 2, 5, 10, TIMEOUT);
+
+    controller.acquire(Priority.NORMAL).block(TIMEOUT).release();
+    assertThat(gauge("agent.admission.limit")).isEqualTo(4.25);
+
+    for (var interaction = 0; interaction < 10; interaction++) {
+      controller.acquire(Priority.NORMAL).block(TIMEOUT).release();
+    }
+    assertThat(gauge("agent.admission.limit")).isEqualTo(5);
+  }
+
+  @Test
+  void decreasesTheLimitMultiplicativelyOnFailures() {
+    var controller = controller(8, 3, 10, 10, TIMEOUT);
+
+    var failed = controller.acquire(Priority.NORMAL).block(TIMEOUT);
+    failed.failed();
+    failed.release();
+    assertThat(gauge("agent.admission.limit")).isEqualTo(4);
+
+    failed = controller.acquire(Priority.NORMAL).block(TIMEOUT);
+    failed.failed();
+    failed.release();
+    assertThat(gauge("agent.admission.limit")).isEqualTo(3);
+    assertThat(registry.counter("agent.admission.limit.decreases").count()).isEqualTo(2);
+  }
+
+  @Test
+  void shedsTheLowPriorityOnceHalfOfTheQueueIsUsed() {
+    var controller = controller(1, 1, 4, 4, TIMEOUT);
+    controller.acquire(Priority.NORMAL).block(TIMEOUT);
+    admission(controller, Priority.NORMAL);
+    admission(controller, Priority.NORMAL);
+
+    var low = admission(controller, Priority.LOW);
+    var normal = admission(controller, Priority.NORMAL);
+
+    assertThat(low.rejection.get()).isInstanceOf(RejectedException.class);
+    assertThat(normal.rejection.get()).isNull();
+    assertThat(gauge("agent.admission.queued")).isEqualTo(3);
+  }
+
+  @Test
+  void admitsTheHigherPrioritiesFirst() {
+    var controller = controller(1, 1, 1, 10, TIMEOUT);
+    var first = controller.acquire(Priority.NORMAL).block(TIMEOUT);
+    var low = admission(controller, Priority.LOW);
+    var normal = admission(controller, Priority.NORMAL);
+    var high = admission(controller, Priority.HIGH);
+
+    first.release();
+
+    assertThat(high.permit.get()).isNotNull();
+    assertThat(normal.permit.get()).isNull();
+    assertThat(low.permit.get()).isNull();
+  }
+
+  @Test
+  void rejectsTheInteractionsWaitingPastTheQueueTimeout() {
+    var controller = controller(1, 1, 4, 10, Duration.ofMillis(50));
+    controller.acquire(Priority.NORMAL).block(TIMEOUT);
+
+    assertThatThrownBy(() -> controller.acquire(Priority.NORMAL).block(TIMEOUT))
+        .isInstanceOf(RejectedException.class)
+        .hasMessage("Timed out while waiting for admission.");
+    assertThat(gauge("agent.admission.queued")).isZero();
+  }
+
+  @Test
+  void forgetsTheCancelledWaiters() {
+    var controller = controller(1, 1, 4, 10, TIMEOUT);
+    var first = controller.acquire(Priority.NORMAL).block(TIMEOUT);
+    var cancelled = controller.acquire(Priority.NORMAL).subscribe();
+
+    cancelled.dispose();
+    assertThat(gauge("agent.admission.queued")).isZero();
+
+    first.release();
+    assertThat(gauge("agent.admission.inflight")).isZero();
+  }
+
+  @Test
+  void releasesThePermitOfTheWaitersCancelledWhileAdmitted() {
+    var controller = controller(1, 1, 4, 10, TIMEOUT);
+    var granted = controller.acquire(Priority.NORMAL).block(TIMEOUT);
+    // polled from the queue and granted, but cancelled before receiving the permit
+    var waiter =
+        new AdmissionController.Waiter(Priority.NORMAL, 1, null, new AtomicReference<>(granted));
+
+    controller.dequeue(waiter);
+
+    assertThat(gauge("agent.admission.inflight")).isZero();
+  }
+
+  @Test
+  void grantsTheHighPriorityOnlyWithTheKey() {
+    var controller = controller(1, 1, 4, 10, TIMEOUT);
+    var priorities = new ArrayList<Priority>();
+
+    priorities.add(controller.priority("high", null));
+    priorities.add(controller.priority("high", "guess"));
+    priorities.add(controller.priority("high", "secret"));
+    priorities.add(controller.priority("low", null));
+    priorities.add(controller.priority(null, "secret"));
+
+    assertThat(priorities)
+        .isEqualTo(
+            List.of(
+                Priority.NORMAL, Priority.NORMAL, Priority.HIGH, Priority.LOW, Priority.NORMAL));
+    assertThat(registry.counter("agent.admission.priority.untrusted").count()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.dataflow.tips.agent.services.SessionJournal.Entry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SessionJournalTest {
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @TempDir Path directory;
+
+  @Test
+  void replaysTheAppendedEntriesAfterReopening() throws IOException {
+    var path = directory.resolve("sessions.journal");
+    var entries = interaction("session-1", 1);
+    try (var journal = new SessionJournal(path, 4096, mapper)) {
+      journal.append(entries, () -> entries);
+    }
+
+    try (var journal = new SessionJournal(path, 4096, mapper)) {
+      assertThat(replay(journal)).containsExactlyElementsOf(entries);
+    }
+  }
+
+  @Test
+  void appendsAfterTheReplayedEntries() throws IOException {
+    var path = directory.resolve("sessions.journal");
+    var first = interaction("session-1", 1);
+    var second = interaction("session-1", 2);
+    try (var journal = new SessionJournal(path, 4096, mapper)) {
+      journal.append(first, () -> first);
+    }
+
+    try (var journal = new SessionJournal(path, 4096, mapper)) {
+      replay(journal);
+      journal.append(second, () -> concat(first, second));
+      assertThat(replay(journal)).containsExactlyElementsOf(concat(first, second));
+    }
+  }
+
+  @Test
+  void compactionDoesNotDuplicateTheEntriesBeingAppended() throws IOException {
+    var live = new ArrayList<Entry>();
+    try (var journal = new SessionJournal(directory.resolve("sessions.journal"), 2048, mapper)) {
+      for (var turn = 0; turn < 20; turn++) {
+        // as the session store, the live entries hold the turns before they are journaled
+        var entries = interaction("session-" + turn % 3, turn);
+        live.addAll(entries);
+        journal.append(entries, () -> List.copyOf(live));
+      }
+
+      var replayed = replay(journal);
+      assertThat(replayed).doesNotHaveDuplicates();
+      assertThat(replayed).endsWith(live.get(live.size() - 1));
+    }
+  }
+
+  @Test
+  void compactionKeepsTheNewestEntriesWhenTheLiveOnesDoNotFit() throws IOException {
+    var live = new ArrayList<Entry>();
+    try (var journal = new SessionJournal(directory.resolve("sessions.journal"), 2048, mapper)) {
+      for (var turn = 0; turn < 20; turn++) {
+        var entries = interaction("session-1", turn);
+        live.addAll(entries);
+        journal.append(entries, () -> List.copyOf(live));
+      }
+
+      var replayed = replay(journal);
+      assertThat(replayed).isNotEmpty().hasSizeLessThan(live.size());
+      assertThat(live.subList(live.size() - replayed.size(), live.size()))
+          .containsExactlyElementsOf(replayed);
+    }
+  }
+
+  @Test
+  void replayStopsAtATruncatedTail() throws IOException {
+    var path = directory.resolve("sessions.journal");
+    var entries = interaction("session-1", 1);
+    try (var journal = new SessionJournal(path, 4096, mapper)) {
+      journal.append(entries, () -> entries);
+    }
+    // a record whose write was interrupted after its length
+    var end = 0;
+    for (var entry : entries) {
+      end += Integer.BYTES + mapper.writeValueAsBytes(entry).length;
+    }
+    try (var channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      var torn = ByteBuffer.allocate(Integer.BYTES + 2).putInt(1000).put(new byte[] {'{', '"'});
+      channel.write(torn.flip(), end);
+    }
+
+    var next = interaction("session-1", 2);
+    try (var journal = new SessionJournal(path, 4096, mapper)) {
+      assertThat(replay(journal)).containsExactlyElementsOf(entries);
+      journal.append(next, () -> concat(entries, next));
+      assertThat(replay(journal)).containsExactlyElementsOf(concat(entries, next));
+    }
+  }
+
+  static List<Entry> interaction(String sessionId, int turn) {
+    return List.of(
+        new Entry(sessionId, turn, SessionStore.Role.USER, "question " + turn),
+        new Entry(sessionId, turn, SessionStore.Role.TOOL, "tool result " + turn),
+        new Entry(sessionId, turn, SessionStore.Role.ASSISTANT, "answer " + turn));
+  }
+
+  static List<Entry> concat(List<Entry> first, List<Entry> second) {
+    var entries = new ArrayList<>(first);
+    entries.addAll(second);
+    return entries;
+  }
+
+  static List<Entry> replay(SessionJournal journal) {
+    var entries = new ArrayList<Entry>();
+    journal.replay(entries::add);
+    return entries;
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.dataflow.tips.agent.config.SingleFlightProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class SingleFlightTest {
+  static final String KEY = "why is my job slow";
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final AtomicInteger generations = new AtomicInteger();
+
+  SingleFlight flights(int maxReplayedChunks) {
+    return new SingleFlight(new SingleFlightProperties(maxReplayedChunks), registry);
+  }
+
+  BiFunction<Consumer<SessionStore.ToolInvocation>, TokenAccounting, Flux<String>> generation(
+      Flux<String> content) {
+    return (recorder, accounting) ->
+        Flux.defer(
+            () -> {
+              generations.incrementAndGet();
+              return content;
+            });
+  }
+
+  static String answer(SingleFlight.Flight flight) {
+    return flight.content().collect(Collectors.joining()).block(Duration.ofSeconds(5));
+  }
+
+  double flights(String result) {
+    return registry.counter("agent.interactions.flights", "result", result).count();
+  }
+
+  @Test
+  void servesConcurrentCallersFromASingleGeneration() throws Exception {
+    var callers = 16;
+    var flights = flights(2048);
+    var joined = new CountDownLatch(callers);
+    var release = new CompletableFuture<Void>();
+    var generation =
+        generation(Mono.fromFuture(release).thenMany(Flux.just("the ", "job ", "is ", "fine")));
+    var executor = Executors.newFixedThreadPool(callers);
+    try {
+      var answers = new ArrayList<Future<String>>();
+      for (var caller = 0; caller < callers; caller++) {
+        answers.add(
+            executor.submit(
+                () -> {
+                  var flight = flights.join(KEY, generation);
+                  joined.countDown();
+                  return answer(flight);
+                }));
+      }
+      assertThat(joined.await(5, TimeUnit.SECONDS)).isTrue();
+      release.complete(null);
+
+      for (var answer : answers) {
+        assertThat(answer.get(5, TimeUnit.SECONDS)).isEqualTo("the job is fine");
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThat(generations).hasValue(1);
+    assertThat(flights("started")).isEqualTo(1);
+    assertThat(flights("coalesced")).isEqualTo(callers - 1);
+  }
+
+  @Test
+  void replaysTheCompletedGenerationToTheMembersSubscribingLate() {
+    var flights = flights(2048);
+    var generation = generation(Flux.just("the ", "job ", "is ", "fine"));
+    var first = flights.join(KEY, generation);
+    var second = flights.join(KEY, generation);
+
+    assertThat(answer(first)).isEqualTo("the job is fine");
+    assertThat(answer(second)).isEqualTo("the job is fine");
+    assertThat(generations).hasValue(1);
+  }
+
+  @Test
+  void startsANewGenerationOnceTheSharedOneCompleted() {
+    var flights = flights(2048);
+    var generation = generation(Flux.just("done"));
+
+    assertThat(answer(flights.join(KEY, generation))).isEqualTo("done");
+    assertThat(flights.joinInFlight(KEY)).isEmpty();
+    assertThat(answer(flights.join(KEY, generation))).isEqualTo("done");
+    assertThat(generations).hasValue(2);
+  }
+
+  @Test
+  void cancelsTheGenerationOnceEveryMemberLeft() {
+    var flights = flights(2048);
+    var cancelled = new AtomicBoolean();
+    var generation = generation(Flux.<String>never().doOnCancel(() -> cancelled.set(true)));
+    var first = flights.join(KEY, generation).content().subscribe();
+    var second = flights.joinInFlight(KEY).orElseThrow().content().subscribe();
+
+    first.dispose();
+    assertThat(cancelled).isFalse();
+
+    second.dispose();
+    assertThat(cancelled).isTrue();
+    assertThat(flights.joinInFlight(KEY)).isEmpty();
+    assertThat(generations).hasValue(1);
+  }
+
+  @Test
+  void stopsAcceptingMembersOnceHalfOfTheReplayIsProduced() {
+    var flights = flights(4);
+    var chunks = Sinks.many().unicast().<String>onBackpressureBuffer();
+    var generation = generation(chunks.asFlux());
+    var first = flights.join(KEY, generation);
+    first.content().subscribe();
+
+    chunks.tryEmitNext("the ");
+    assertThat(flights.joinInFlight(KEY)).containsSame(first);
+    chunks.tryEmitNext("job ");
+
+    assertThat(flights.joinInFlight(KEY)).isEmpty();
+    assertThat(flights.join(KEY, generation(Flux.just("again")))).isNotSameAs(first);
+  }
+
+  @Test
+  void failsTheMembersThatMissedTheReplayedStart() {
+    var flights = flights(4);
+    var generation = generation(Flux.just("a", "b", "c", "d", "e", "f"));
+    var first = flights.join(KEY, generation);
+    var late = flights.join(KEY, generation);
+
+    assertThat(answer(first)).isEqualTo("abcdef");
+    assertThatThrownBy(() -> answer(late))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("moved past the replayed content");
+  }
+}
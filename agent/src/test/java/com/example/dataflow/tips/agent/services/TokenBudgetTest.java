@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.agent.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.dataflow.tips.agent.config.TokenBudgetProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+class TokenBudgetTest {
+  static final SystemMessage SYSTEM = new SystemMessage("You help.");
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final TokenAccounting accounting = new TokenAccounting();
+
+  TokenBudget budget(
+      int maxContextTokens,
+      int maxHistoryTokens,
+      int maxToolResultTokens,
+      int maxToolResultsTokens,
+      int maxListItems) {
+    return new TokenBudget(
+        new TokenBudgetProperties(
+            4,
+            maxContextTokens,
+            maxHistoryTokens,
+            maxToolResultTokens,
+            maxToolResultsTokens,
+            maxListItems),
+        mapper);
+  }
+
+  /** Turns of 16 characters, 4 tokens each. */
+  static List<Message> history(int turns) {
+    return IntStream.rangeClosed(1, turns)
+        .<Message>mapToObj(turn -> new UserMessage("%-16s".formatted("turn " + turn)))
+        .toList();
+  }
+
+  @Test
+  void keepsTheMostRecentHistoryWithinTheHistoryBudget() {
+    var history = history(3);
+
+    var fitted = budget(1000, 10, 100, 200, 50).fitHistory(SYSTEM, history, "why?", accounting);
+
+    assertThat(fitted).containsExactly(history.get(1), history.get(2));
+    var snapshot = accounting.snapshot();
+    assertThat(snapshot.systemTokens()).isEqualTo(3);
+    assertThat(snapshot.questionTokens()).isEqualTo(1);
+    assertThat(snapshot.historyTokens()).isEqualTo(8);
+    assertThat(snapshot.droppedHistoryMessages()).isEqualTo(1);
+  }
+
+  @Test
+  void keepsRoomInTheContextForTheToolResults() {
+    var history = history(3);
+
+    // 210 tokens of context, minus the system prompt, the question and 200 of tool results
+    var fitted = budget(210, 1000, 100, 200, 50).fitHistory(SYSTEM, history, "why?", accounting);
+
+    assertThat(fitted).containsExactly(history.get(2));
+    assertThat(accounting.snapshot().droppedHistoryMessages()).isEqualTo(2);
+  }
+
+  @Test
+  void keepsTheResultsWithinTheBudget() {
+    var result = "{\"state\":\"RUNNING\"}";
+
+    assertThat(budget(1000, 10, 100, 200, 50).fitToolResult(result, accounting))
+        .isEqualTo(result);
+    var snapshot = accounting.snapshot();
+    assertThat(snapshot.toolResultTokens()).isEqualTo(5);
+    assertThat(snapshot.toolResultOriginalTokens()).isEqualTo(5);
+    assertThat(snapshot.trimmedToolResults()).isZero();
+  }
+
+  @Test
+  void dropsTheDisplayDataFirst() throws Exception {
+    var result =
+        mapper.writeValueAsString(
+            Map.of(
+                "name",
+                "read",
+                "displayData",
+                List.of(Map.of("key", "a very long display value, useless for the model"))));
+
+    var fitted = budget(1000, 10, 10, 200, 50).fitToolResult(result, accounting);
+
+    assertThat(fitted).isEqualTo("{\"name\":\"read\"}");
+    assertThat(accounting.snapshot().trimmedToolResults()).isEqualTo(1);
+  }
+
+  @Test
+  void dropsTheDisplayDataOfTheJsonEmbeddedInText() throws Exception {
+    var tool =
+        mapper.writeValueAsString(
+            Map.of(
+                "name",
+                "read",
+                "displayData",
+                List.of(Map.of("key", "a very long display value, useless for the model"))));
+    var result = mapper.writeValueAsString(List.of(Map.of("type", "text", "text", tool)));
+
+    var fitted = budget(1000, 10, 20, 200, 50).fitToolResult(result, accounting);
+
+    assertThat(mapper.readTree(fitted).get(0).get("text").asText())
+        .isEqualTo("{\"name\":\"read\"}");
+  }
+
+  @Test
+  void keepsTheLargestMetricsOfTheLongLists() throws Exception {
+    var metrics =
+        List.of(
+            Map.of("name", "a", "scalar", 1),
+            Map.of("name", "b", "scalar", -50),
+            Map.of("name", "c", "scalar", 7),
+            Map.of("name", "d", "scalar", 20),
+            Map.of("name", "e", "scalar", 3));
+
+    var fitted =
+        budget(1000, 10, 25, 200, 2)
+            .fitToolResult(mapper.writeValueAsString(metrics), accounting);
+
+    assertThat(mapper.readTree(fitted))
+        .isEqualTo(
+            mapper.valueToTree(
+                List.of(
+                    Map.of("name", "b", "scalar", -50),
+                    Map.of("name", "d", "scalar", 20),
+                    "... 3 more items omitted")));
+  }
+
+  @Test
+  void truncatesTheTextLeft() {
+    var fitted = budget(1000, 10, 10, 200, 50).fitToolResult("x".repeat(100), accounting);
+
+    assertThat(fitted).hasSize(40).endsWith("... [truncated]");
+    var snapshot = accounting.snapshot();
+    assertThat(snapshot.toolResultOriginalTokens()).isEqualTo(25);
+    assertThat(snapshot.toolResultTokens()).isEqualTo(10);
+  }
+
+  @Test
+  void omitsTheResultsOnceTheInteractionBudgetIsExhausted() {
+    var budget = budget(1000, 10, 10, 10, 50);
+
+    assertThat(budget.fitToolResult("x".repeat(40), accounting)).isEqualTo("x".repeat(40));
+    assertThat(budget.fitToolResult("y".repeat(40), accounting))
+        .startsWith("Tool result omitted");
+  }
+}
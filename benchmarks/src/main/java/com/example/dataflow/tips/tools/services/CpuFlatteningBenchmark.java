@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import com.google.monitoring.v3.TimeSeries;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Flattening of the CPU utilization time series done by the "Job Workers CPU metrics" tool,
+ * compared with the summary computed by the "Job Workers CPU Analysis" tool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CpuFlatteningBenchmark {
+
+  @Param({"1", "10", "100", "1000"})
+  int workers;
+
+  @Param({"1", "60"})
+  int points;
+
+  private List<TimeSeries> series;
+
+  @Setup
+  public void setup() {
+    series = Fixtures.cpuTimeSeries(workers, points);
+  }
+
+  @Benchmark
+  public List<PipelineMetricsService.WorkerCpuUtilization> flatten() {
+    return series.stream().flatMap(PipelineMetricsService::toWorkerCpuUtilization).toList();
+  }
+
+  @Benchmark
+  public CpuAnalysis.Summary analysis() {
+    return CpuAnalysis.of(series, false).summary(10, 90, 3);
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import com.google.api.Metric;
+import com.google.dataflow.v1beta3.DisplayData;
+import com.google.dataflow.v1beta3.Job;
+import com.google.dataflow.v1beta3.JobMetrics;
+import com.google.dataflow.v1beta3.JobState;
+import com.google.dataflow.v1beta3.KindType;
+import com.google.dataflow.v1beta3.MetricStructuredName;
+import com.google.dataflow.v1beta3.MetricUpdate;
+import com.google.dataflow.v1beta3.PipelineDescription;
+import com.google.dataflow.v1beta3.TransformSummary;
+import com.google.monitoring.v3.Point;
+import com.google.monitoring.v3.TimeInterval;
+import com.google.monitoring.v3.TimeSeries;
+import com.google.monitoring.v3.TypedValue;
+import com.google.protobuf.Value;
+import com.google.protobuf.util.Timestamps;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/** Synthetic, deterministic protobuf fixtures shaped like the Dataflow and Monitoring responses. */
+final class Fixtures {
+  private static final long SEED = 42;
+  private static final long START_MILLIS = 1_735_689_600_000L;
+  private static final List<KindType> KINDS =
+      List.of(
+          KindType.PAR_DO_KIND,
+          KindType.GROUP_BY_KEY_KIND,
+          KindType.FLATTEN_KIND,
+          KindType.READ_KIND,
+          KindType.WRITE_KIND);
+
+  private Fixtures() {}
+
+  /**
+   * A job with a linear chain of transforms, each one with display data, and the same amount of
+   * pipeline level display data entries.
+   */
+  static Job job(int transforms, int displayDataPerTransform) {
+    var random = new Random(SEED);
+    var description = PipelineDescription.newBuilder();
+    for (var i = 0; i < transforms; i++) {
+      var transform =
+          TransformSummary.newBuilder()
+              .setKind(KINDS.get(random.nextInt(KINDS.size())))
+              .setId("s" + i)
+              .setName("Stage%d/ParDo(Transform%d)".formatted(i / 10, i))
+              .addOutputCollectionName("Transform%d.out".formatted(i));
+      if (i > 0) {
+        transform.addInputCollectionName("Transform%d.out".formatted(i - 1));
+      }
+      for (var j = 0; j < displayDataPerTransform; j++) {
+        transform.addDisplayData(displayData(random, "Transform%d".formatted(i), j));
+      }
+      description.addOriginalPipelineTransform(transform);
+      description.addDisplayData(displayData(random, "Pipeline", i));
+    }
+    return Job.newBuilder()
+        .setId("2025-01-01_00_00_00-1234567890")
+        .setName("benchmark-job")
+        .setProjectId("benchmark-project")
+        .setLocation("us-central1")
+        .setCurrentState(JobState.JOB_STATE_RUNNING)
+        .setStartTime(Timestamps.fromMillis(START_MILLIS))
+        .setPipelineDescription(description)
+        .build();
+  }
+
+  static DisplayData displayData(Random random, String namespace, int index) {
+    return DisplayData.newBuilder()
+        .setKey("key" + index)
+        .setNamespace("org.apache.beam.sdk." + namespace)
+        .setStrValue("value-" + Long.toHexString(random.nextLong()))
+        .setLabel("Label " + index)
+        .build();
+  }
+
+  /** Job metrics with the usual per step counters, committed and tentative. */
+  static JobMetrics jobMetrics(int steps) {
+    var random = new Random(SEED);
+    var metrics = JobMetrics.newBuilder().setMetricTime(Timestamps.fromMillis(START_MILLIS));
+    for (var step = 0; step < steps; step++) {
+      for (var name : List.of("ElementCount", "MeanByteCount")) {
+        for (var tentative : List.of("true", "false")) {
+          metrics.addMetrics(metricUpdate(name, step, tentative, random.nextInt(1_000_000)));
+        }
+      }
+    }
+    return metrics.build();
+  }
+
+  static MetricUpdate metricUpdate(String name, int step, String tentative, double value) {
+    var collection = "Transform%d.out".formatted(step);
+    return MetricUpdate.newBuilder()
+        .setName(
+            MetricStructuredName.newBuilder()
+                .setOrigin("dataflow/v1b3")
+                .setName(name)
+                .putContext("original_name", collection)
+                .putContext("output_user_name", collection)
+                .putContext("tentative", tentative))
+        .setKind("Sum")
+        .setScalar(Value.newBuilder().setNumberValue(value))
+        .setUpdateTime(Timestamps.fromMillis(START_MILLIS))
+        .build();
+  }
+
+  /** CPU utilization time series, one per worker with the requested amount of points. */
+  static List<TimeSeries> cpuTimeSeries(int workers, int points) {
+    var random = new Random(SEED);
+    return IntStream.range(0, workers)
+        .mapToObj(
+            worker -> {
+              var series =
+                  TimeSeries.newBuilder()
+                      .setMetric(
+                          Metric.newBuilder()
+                              .setType("compute.googleapis.com/instance/cpu/utilization")
+                              .putLabels("instance_name", "benchmark-job-harness-" + worker));
+              for (var point = 0; point < points; point++) {
+                series.addPoints(
+                    Point.newBuilder()
+                        .setInterval(
+                            TimeInterval.newBuilder()
+                                .setStartTime(Timestamps.fromMillis(START_MILLIS + point * 60_000L))
+                                .setEndTime(
+                                    Timestamps.fromMillis(START_MILLIS + (point + 1) * 60_000L)))
+                        .setValue(TypedValue.newBuilder().setDoubleValue(random.nextDouble())));
+              }
+              return series.build();
+            })
+        .toList();
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import com.google.dataflow.v1beta3.JobMetrics;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JSON printing of the job metrics done by the "Job metrics" tool, compared with the typed parsing
+ * done by the "Job Metrics Query" tool. Every step carries four metric updates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsJsonBenchmark {
+
+  @Param({"10", "1000", "10000", "50000"})
+  int steps;
+
+  private JobMetrics metrics;
+  private MetricsQuery.Filter filter;
+
+  @Setup
+  public void setup() {
+    metrics = Fixtures.jobMetrics(steps);
+    filter = MetricsQuery.Filter.of(List.of(), List.of(), false);
+  }
+
+  @Benchmark
+  public String toJson() throws InvalidProtocolBufferException {
+    return PipelineMetricsService.toJson(metrics);
+  }
+
+  @Benchmark
+  public List<MetricsQuery.StageMetric> parse() {
+    return MetricsQuery.parse(metrics.getMetricsList(), filter);
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import com.google.dataflow.v1beta3.Job;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Conversion of the job's transforms and display data into the "Job Details" tool result. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopologyConversionBenchmark {
+
+  @Param({"10", "1000", "10000", "50000"})
+  int transforms;
+
+  @Param({"4"})
+  int displayDataPerTransform;
+
+  private PipelineTopologyService service;
+  private Job job;
+
+  @Setup
+  public void setup() {
+    // the conversions do not use the service collaborators
+    service = new PipelineTopologyService(null, null, null, null);
+    job = Fixtures.job(transforms, displayDataPerTransform);
+  }
+
+  @Benchmark
+  public List<PipelineTopologyService.Transform> toTransform() {
+    return service.toTransform(job.getPipelineDescription().getOriginalPipelineTransformList());
+  }
+
+  @Benchmark
+  public List<Map<String, String>> toDisplayData() {
+    return service.toDisplayData(job.getPipelineDescription().getDisplayDataList());
+  }
+
+  @Benchmark
+  public JobTopology.Summary topologySummary() {
+    return JobTopology.of(job).summary(true, false);
+  }
+}
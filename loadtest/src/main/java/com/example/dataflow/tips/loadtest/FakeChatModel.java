@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.ToolCallback;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Chat model following a deterministic script instead of calling an LLM. On every interaction it
+ * requests the scripted tools, executing them as the real models do, and then streams an answer of
+ * the scripted length. Tool arguments target the job mentioned by the user's question. Every model
+ * round takes the scripted think time, and the reported usage is estimated from the prompt length.
+ */
+final class FakeChatModel implements ChatModel {
+  private static final int CHARS_PER_TOKEN = 4;
+  private static final List<String> WORDS =
+      List.of(" the", " job", " is", " running", " with", " a", " growing", " backlog", ",");
+
+  private final LoadTestProperties.Model script;
+  private final ObjectMapper objectMapper;
+  private final ToolCallingManager toolCallingManager = ToolCallingManager.builder().build();
+
+  FakeChatModel(LoadTestProperties.Model script, ObjectMapper objectMapper) {
+    this.script = script;
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  public ChatOptions getDefaultOptions() {
+    return ToolCallingChatOptions.builder().build();
+  }
+
+  @Override
+  public ChatResponse call(Prompt prompt) {
+    var text = new StringBuilder();
+    var last =
+        stream(prompt)
+            .doOnNext(response -> text.append(response.getResult().getOutput().getText()))
+            .blockLast();
+    return new ChatResponse(
+        List.of(new Generation(new AssistantMessage(text.toString()))), last.getMetadata());
+  }
+
+  @Override
+  public Flux<ChatResponse> stream(Prompt prompt) {
+    var toolCalls = toolCalls(prompt);
+    if (toolCalls.isEmpty()) {
+      return answer(prompt);
+    }
+    var response =
+        new ChatResponse(
+            List.of(new Generation(new AssistantMessage("", Map.of(), toolCalls))),
+            metadata(prompt, 0));
+    return Mono.delay(script.thinkTime())
+        .then(
+            Mono.fromCallable(() -> toolCallingManager.executeToolCalls(prompt, response))
+                .subscribeOn(Schedulers.boundedElastic()))
+        .flatMapMany(
+            result -> stream(new Prompt(result.conversationHistory(), prompt.getOptions())));
+  }
+
+  /** The tool calls of the current round, none once all the scripted tools were called. */
+  List<AssistantMessage.ToolCall> toolCalls(Prompt prompt) {
+    var names = scripted(rounds(prompt.getInstructions()));
+    var target =
+        ToolArguments.Target.parse(prompt.getUserMessage().getText())
+            .orElseGet(() -> ToolArguments.Target.of(0));
+    var callbacks =
+        prompt.getOptions() instanceof ToolCallingChatOptions options
+            ? options.getToolCallbacks()
+            : List.<ToolCallback>of();
+    return names.stream()
+        .flatMap(name -> find(callbacks, name).stream())
+        .map(
+            callback ->
+                new AssistantMessage.ToolCall(
+                    UUID.randomUUID().toString(),
+                    "function",
+                    callback.getToolDefinition().name(),
+                    arguments(callback, target)))
+        .toList();
+  }
+
+  List<String> scripted(int round) {
+    if (script.parallelToolCalls()) {
+      return round == 0 ? script.tools() : List.of();
+    }
+    return round < script.tools().size() ? List.of(script.tools().get(round)) : List.of();
+  }
+
+  /** The amount of tool rounds done since the last user message. */
+  static int rounds(List<Message> messages) {
+    var rounds = 0;
+    for (var message : messages) {
+      if (message.getMessageType() == MessageType.USER) {
+        rounds = 0;
+      } else if (message.getMessageType() == MessageType.TOOL) {
+        rounds++;
+      }
+    }
+    return rounds;
+  }
+
+  /**
+   * The callback of the scripted tool, MCP tool names are prefixed with the client's name and
+   * sanitized when exposed to the model, so they are matched ignoring both.
+   */
+  static Optional<ToolCallback> find(List<ToolCallback> callbacks, String name) {
+    var normalized = normalize(name);
+    return callbacks.stream()
+        .filter(callback -> normalize(callback.getToolDefinition().name()).endsWith(normalized))
+        .findFirst();
+  }
+
+  static String normalize(String name) {
+    return name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+  }
+
+  String arguments(ToolCallback callback, ToolArguments.Target target) {
+    try {
+      Map<String, Object> schema =
+          objectMapper.readValue(
+              callback.getToolDefinition().inputSchema(), new TypeReference<>() {});
+      @SuppressWarnings("unchecked")
+      var properties =
+          (Map<String, Object>) schema.getOrDefault("properties", Map.<String, Object>of());
+      return objectMapper.writeValueAsString(ToolArguments.of(properties, target));
+    } catch (JsonProcessingException ex) {
+      throw new IllegalStateException(
+          "Invalid input schema of tool " + callback.getToolDefinition().name(), ex);
+    }
+  }
+
+  Flux<ChatResponse> answer(Prompt prompt) {
+    var tokens = script.answerTokens();
+    var noUsage = ChatResponseMetadata.builder().build();
+    return Mono.delay(script.thinkTime())
+        .thenMany(Flux.range(0, tokens).delayElements(script.tokenDelay()))
+        .map(
+            index ->
+                new ChatResponse(
+                    List.of(
+                        new Generation(new AssistantMessage(WORDS.get(index % WORDS.size())))),
+                    index == tokens - 1 ? metadata(prompt, tokens) : noUsage));
+  }
+
+  static ChatResponseMetadata metadata(Prompt prompt, int completionTokens) {
+    var promptChars =
+        prompt.getInstructions().stream()
+            .map(Message::getText)
+            .flatMap(Stream::ofNullable)
+            .mapToInt(String::length)
+            .sum();
+    return ChatResponseMetadata.builder()
+        .model("fake")
+        .usage(new DefaultUsage(promptChars / CHARS_PER_TOKEN, completionTokens))
+        .build();
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.loadtest;
+
+import com.google.dataflow.v1beta3.GetJobMetricsRequest;
+import com.google.dataflow.v1beta3.GetJobRequest;
+import com.google.dataflow.v1beta3.Job;
+import com.google.dataflow.v1beta3.JobMetrics;
+import com.google.dataflow.v1beta3.JobsV1Beta3Grpc;
+import com.google.dataflow.v1beta3.ListJobMessagesRequest;
+import com.google.dataflow.v1beta3.ListJobMessagesResponse;
+import com.google.dataflow.v1beta3.ListJobsRequest;
+import com.google.dataflow.v1beta3.ListJobsResponse;
+import com.google.dataflow.v1beta3.MessagesV1Beta3Grpc;
+import com.google.dataflow.v1beta3.MetricsV1Beta3Grpc;
+import com.google.monitoring.v3.ListTimeSeriesRequest;
+import com.google.monitoring.v3.ListTimeSeriesResponse;
+import com.google.monitoring.v3.MetricServiceGrpc;
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Stand-ins of the Dataflow Jobs, Metrics and Messages APIs and of the Monitoring API, served by a
+ * gRPC server running in the load test process on a local port. Responses are delayed by the
+ * configured latency without holding a thread, so a handful of threads serve any concurrency.
+ */
+final class FakeGcpServer implements AutoCloseable {
+
+  private final LoadTestProperties.Gcp settings;
+  private final FakeResponses responses;
+  private final ScheduledExecutorService scheduler;
+  private final Server server;
+
+  private FakeGcpServer(LoadTestProperties.Gcp settings) {
+    this.settings = settings;
+    this.responses = new FakeResponses(settings);
+    this.scheduler =
+        Executors.newScheduledThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
+            Thread.ofPlatform().name("fake-gcp-", 0).daemon().factory());
+    this.server =
+        Grpc.newServerBuilderForPort(0, InsecureServerCredentials.create())
+            .addService(new Jobs())
+            .addService(new Metrics())
+            .addService(new Messages())
+            .addService(new Monitoring())
+            .build();
+  }
+
+  static FakeGcpServer start(LoadTestProperties.Gcp settings) throws IOException {
+    var fake = new FakeGcpServer(settings);
+    fake.server.start();
+    return fake;
+  }
+
+  /** Endpoint to be used by the GCP clients, reachable in plain text. */
+  String endpoint() {
+    return "localhost:" + server.getPort();
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    server.shutdownNow();
+    scheduler.shutdownNow();
+    server.awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  <T> void respond(StreamObserver<T> observer, Supplier<T> response) {
+    scheduler.schedule(
+        () -> {
+          try {
+            observer.onNext(response.get());
+            observer.onCompleted();
+          } catch (RuntimeException ex) {
+            observer.onError(Status.INTERNAL.withCause(ex).asRuntimeException());
+          }
+        },
+        delayMicros(),
+        TimeUnit.MICROSECONDS);
+  }
+
+  long delayMicros() {
+    var jitter = settings.jitter().toNanos() / 1000;
+    return settings.latency().toNanos() / 1000
+        + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0);
+  }
+
+  class Jobs extends JobsV1Beta3Grpc.JobsV1Beta3ImplBase {
+
+    @Override
+    public void getJob(GetJobRequest request, StreamObserver<Job> observer) {
+      respond(
+          observer,
+          () -> responses.job(request.getProjectId(), request.getLocation(), request.getJobId()));
+    }
+
+    @Override
+    public void listJobs(ListJobsRequest request, StreamObserver<ListJobsResponse> observer) {
+      respond(observer, responses::jobs);
+    }
+
+    @Override
+    public void aggregatedListJobs(
+        ListJobsRequest request, StreamObserver<ListJobsResponse> observer) {
+      respond(observer, responses::jobs);
+    }
+  }
+
+  class Metrics extends MetricsV1Beta3Grpc.MetricsV1Beta3ImplBase {
+
+    @Override
+    public void getJobMetrics(GetJobMetricsRequest request, StreamObserver<JobMetrics> observer) {
+      respond(observer, responses::metrics);
+    }
+  }
+
+  class Messages extends MessagesV1Beta3Grpc.MessagesV1Beta3ImplBase {
+
+    @Override
+    public void listJobMessages(
+        ListJobMessagesRequest request, StreamObserver<ListJobMessagesResponse> observer) {
+      respond(observer, responses::messages);
+    }
+  }
+
+  class Monitoring extends MetricServiceGrpc.MetricServiceImplBase {
+
+    @Override
+    public void listTimeSeries(
+        ListTimeSeriesRequest request, StreamObserver<ListTimeSeriesResponse> observer) {
+      respond(observer, responses::cpu);
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.loadtest;
+
+import com.google.api.Metric;
+import com.google.dataflow.v1beta3.DisplayData;
+import com.google.dataflow.v1beta3.Job;
+import com.google.dataflow.v1beta3.JobMessage;
+import com.google.dataflow.v1beta3.JobMessageImportance;
+import com.google.dataflow.v1beta3.JobMetrics;
+import com.google.dataflow.v1beta3.JobState;
+import com.google.dataflow.v1beta3.KindType;
+import com.google.dataflow.v1beta3.ListJobMessagesResponse;
+import com.google.dataflow.v1beta3.ListJobsResponse;
+import com.google.dataflow.v1beta3.MetricStructuredName;
+import com.google.dataflow.v1beta3.MetricUpdate;
+import com.google.dataflow.v1beta3.PipelineDescription;
+import com.google.dataflow.v1beta3.TransformSummary;
+import com.google.monitoring.v3.ListTimeSeriesResponse;
+import com.google.monitoring.v3.Point;
+import com.google.monitoring.v3.TimeInterval;
+import com.google.monitoring.v3.TimeSeries;
+import com.google.monitoring.v3.TypedValue;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.Value;
+import com.google.protobuf.util.Durations;
+import com.google.protobuf.util.Timestamps;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Responses of the GCP APIs stand-ins, built once with the configured sizes and only stamped with
+ * the requested identifiers afterwards, so the stand-ins cost little next to the system under test.
+ * The content is random but deterministic, shaped like the responses of a running streaming job.
+ */
+final class FakeResponses {
+  static final String PROJECT_ID = "loadtest-project";
+  static final String REGION_ID = "us-central1";
+  private static final long SEED = 42;
+  private static final List<KindType> KINDS =
+      List.of(
+          KindType.PAR_DO_KIND,
+          KindType.GROUP_BY_KEY_KIND,
+          KindType.FLATTEN_KIND,
+          KindType.READ_KIND,
+          KindType.WRITE_KIND);
+  private static final List<String> LOG_TEMPLATES =
+      List.of(
+          "Error processing element %d in step Transform%d: java.io.IOException: timeout of %dms",
+          "Throttling detected for step Transform%d, backlog of %d elements growing for %ds",
+          "Worker loadtest-harness-%d restarted after %d failed attempts, last error code %d");
+
+  private final Job job;
+  private final ListJobsResponse jobs;
+  private final JobMetrics metrics;
+  private final ListJobMessagesResponse messages;
+  private final ListTimeSeriesResponse cpu;
+
+  FakeResponses(LoadTestProperties.Gcp gcp) {
+    var random = new Random(SEED);
+    var startTime = Timestamps.fromMillis(System.currentTimeMillis() - 3_600_000L);
+    this.job = job(random, gcp.transforms(), startTime);
+    this.jobs = jobs(gcp.jobs(), startTime);
+    this.metrics = metrics(random, gcp.metricSteps());
+    this.messages = messages(random, gcp.logMessages(), startTime);
+    this.cpu = cpu(random, gcp.workers(), gcp.points());
+  }
+
+  /** Identifier of the job the n-th session asks about. */
+  static String jobId(int index) {
+    return "loadtest-job-%04d".formatted(index);
+  }
+
+  Job job(String projectId, String regionId, String jobId) {
+    return job.toBuilder()
+        .setId(jobId)
+        .setName(jobId.replace("loadtest-job", "loadtest-pipeline"))
+        .setProjectId(projectId)
+        .setLocation(regionId)
+        .build();
+  }
+
+  ListJobsResponse jobs() {
+    return jobs;
+  }
+
+  JobMetrics metrics() {
+    return metrics.toBuilder().setMetricTime(now()).build();
+  }
+
+  ListJobMessagesResponse messages() {
+    return messages;
+  }
+
+  ListTimeSeriesResponse cpu() {
+    return cpu;
+  }
+
+  static Timestamp now() {
+    return Timestamps.fromMillis(System.currentTimeMillis());
+  }
+
+  static Job job(Random random, int transforms, Timestamp startTime) {
+    var description = PipelineDescription.newBuilder();
+    for (var i = 0; i < transforms; i++) {
+      var transform =
+          TransformSummary.newBuilder()
+              .setKind(KINDS.get(random.nextInt(KINDS.size())))
+              .setId("s" + i)
+              .setName("Stage%d/ParDo(Transform%d)".formatted(i / 10, i))
+              .addOutputCollectionName("Transform%d.out".formatted(i));
+      if (i > 0) {
+        transform.addInputCollectionName("Transform%d.out".formatted(i - 1));
+      }
+      transform.addDisplayData(displayData(random, "Transform%d".formatted(i), 0));
+      description.addOriginalPipelineTransform(transform);
+    }
+    description.addDisplayData(displayData(random, "Pipeline", 0));
+    return Job.newBuilder()
+        .setCurrentState(JobState.JOB_STATE_RUNNING)
+        .setCreateTime(startTime)
+        .setStartTime(startTime)
+        .setPipelineDescription(description)
+        .build();
+  }
+
+  static DisplayData displayData(Random random, String namespace, int index) {
+    return DisplayData.newBuilder()
+        .setKey("key" + index)
+        .setNamespace("org.apache.beam.sdk." + namespace)
+        .setStrValue("value-" + Long.toHexString(random.nextLong()))
+        .setLabel("Label " + index)
+        .build();
+  }
+
+  static ListJobsResponse jobs(int count, Timestamp startTime) {
+    var response = ListJobsResponse.newBuilder();
+    for (var i = 0; i < count; i++) {
+      response.addJobs(
+          Job.newBuilder()
+              .setId(jobId(i))
+              .setName("loadtest-pipeline-%04d".formatted(i))
+              .setProjectId(PROJECT_ID)
+              .setLocation(REGION_ID)
+              .setCurrentState(JobState.JOB_STATE_RUNNING)
+              .setCreateTime(startTime)
+              .setStartTime(startTime));
+    }
+    return response.build();
+  }
+
+  static JobMetrics metrics(Random random, int steps) {
+    var metrics = JobMetrics.newBuilder();
+    for (var step = 0; step < steps; step++) {
+      for (var name : List.of("ElementCount", "MeanByteCount")) {
+        for (var tentative : List.of("true", "false")) {
+          var collection = "Transform%d.out".formatted(step);
+          metrics.addMetrics(
+              MetricUpdate.newBuilder()
+                  .setName(
+                      MetricStructuredName.newBuilder()
+                          .setOrigin("dataflow/v1b3")
+                          .setName(name)
+                          .putContext("original_name", collection)
+                          .putContext("output_user_name", collection)
+                          .putContext("tentative", tentative))
+                  .setKind("Sum")
+                  .setScalar(Value.newBuilder().setNumberValue(random.nextInt(1_000_000))));
+        }
+      }
+    }
+    return metrics.build();
+  }
+
+  static ListJobMessagesResponse messages(Random random, int count, Timestamp startTime) {
+    var response = ListJobMessagesResponse.newBuilder();
+    for (var i = 0; i < count; i++) {
+      var template = LOG_TEMPLATES.get(i % LOG_TEMPLATES.size());
+      response.addJobMessages(
+          JobMessage.newBuilder()
+              .setId("message-" + i)
+              .setTime(Timestamps.add(startTime, Durations.fromSeconds(i)))
+              .setMessageImportance(JobMessageImportance.JOB_MESSAGE_ERROR)
+              .setMessageText(
+                  template.formatted(
+                      random.nextInt(100_000), random.nextInt(200), random.nextInt(60))));
+    }
+    return response.build();
+  }
+
+  static ListTimeSeriesResponse cpu(Random random, int workers, int points) {
+    var response = ListTimeSeriesResponse.newBuilder();
+    var endMillis = System.currentTimeMillis();
+    for (var worker = 0; worker < workers; worker++) {
+      var series =
+          TimeSeries.newBuilder()
+              .setMetric(
+                  Metric.newBuilder()
+                      .setType("compute.googleapis.com/instance/cpu/utilization")
+                      .putLabels("instance_name", "loadtest-harness-" + worker));
+      for (var point = points; point > 0; point--) {
+        series.addPoints(
+            Point.newBuilder()
+                .setInterval(
+                    TimeInterval.newBuilder()
+                        .setStartTime(Timestamps.fromMillis(endMillis - point * 60_000L))
+                        .setEndTime(Timestamps.fromMillis(endMillis - (point - 1) * 60_000L)))
+                .setValue(TypedValue.newBuilder().setDoubleValue(random.nextDouble())));
+      }
+      response.addTimeSeries(series);
+    }
+    return response.build();
+  }
+}
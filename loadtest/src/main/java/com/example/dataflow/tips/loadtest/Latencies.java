@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** Latencies of the requests made during a load test, grouped by operation. */
+final class Latencies {
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<String, Operation> operations = new TreeMap<>();
+
+  void record(String operation, long nanos, boolean success) {
+    lock.lock();
+    try {
+      operations.computeIfAbsent(operation, name -> new Operation()).add(nanos, success);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Summarizes the recorded latencies.
+   *
+   * @param elapsed the duration of the run, used to compute the throughput.
+   */
+  List<Summary> summaries(Duration elapsed) {
+    lock.lock();
+    try {
+      var seconds = Math.max(elapsed.toNanos(), 1) / 1e9;
+      return operations.entrySet().stream()
+          .map(entry -> entry.getValue().summary(entry.getKey(), seconds))
+          .toList();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Latencies of an operation, the percentiles are exact, nearest rank.
+   *
+   * @param operation the operation name.
+   * @param requests amount of requests, successful or not.
+   * @param errors amount of failed requests.
+   * @param throughput successful requests per second.
+   * @param p50 median latency of the successful requests, in milliseconds.
+   * @param p99 99th percentile latency of the successful requests, in milliseconds.
+   * @param max maximum latency of the successful requests, in milliseconds.
+   */
+  record Summary(
+      String operation,
+      int requests,
+      int errors,
+      double throughput,
+      double p50,
+      double p99,
+      double max) {}
+
+  static class Operation {
+    private long[] nanos = new long[1024];
+    private int size;
+    private int errors;
+
+    void add(long latency, boolean success) {
+      if (!success) {
+        errors++;
+        return;
+      }
+      if (size == nanos.length) {
+        nanos = Arrays.copyOf(nanos, size * 2);
+      }
+      nanos[size++] = latency;
+    }
+
+    Summary summary(String operation, double seconds) {
+      var sorted = Arrays.copyOf(nanos, size);
+      Arrays.sort(sorted);
+      return new Summary(
+          operation,
+          size + errors,
+          errors,
+          size / seconds,
+          percentile(sorted, 0.5),
+          percentile(sorted, 0.99),
+          percentile(sorted, 1));
+    }
+
+    static double percentile(long[] sorted, double percentile) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      var rank = (int) Math.ceil(percentile * sorted.length);
+      return sorted[Math.max(rank, 1) - 1] / 1e6;
+    }
+  }
+}
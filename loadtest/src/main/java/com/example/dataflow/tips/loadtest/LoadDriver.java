@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.loadtest;
+
+import io.modelcontextprotocol.client.McpAsyncClient;
+import io.modelcontextprotocol.client.McpClient;
+import io.modelcontextprotocol.client.transport.WebFluxSseClientTransport;
+import io.modelcontextprotocol.spec.McpSchema;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs concurrent sessions against the agent and the tools server, recording the latency of every
+ * request. Agent sessions ask their questions one after the other, so the follow ups carry the
+ * session history, and MCP sessions call the tools one after the other over their own connection.
+ */
+final class LoadDriver {
+  private static final List<String> QUESTIONS =
+      List.of(
+          "Why is the %s falling behind?",
+          "Which steps of the %s should be optimized first?",
+          "Are the workers of the %s well utilized?");
+
+  private final LoadTestProperties properties;
+  private final WebClient agent;
+  private final WebClient.Builder tools;
+  private final Latencies latencies = new Latencies();
+
+  LoadDriver(LoadTestProperties properties, String agentUrl, String toolsUrl) {
+    this.properties = properties;
+    this.agent = WebClient.create(agentUrl);
+    this.tools = WebClient.builder().baseUrl(toolsUrl);
+  }
+
+  /** Runs all the sessions until they complete or the configured timeout is reached. */
+  Latencies run() {
+    var interact = properties.interact();
+    var mcp = properties.mcp();
+    Mono.when(
+            Flux.range(0, interact.sessions())
+                .flatMap(this::conversation, Math.max(interact.sessions(), 1)),
+            Flux.range(0, mcp.sessions()).flatMap(this::mcpSession, Math.max(mcp.sessions(), 1)))
+        .timeout(properties.timeout(), Mono.empty())
+        .block();
+    return latencies;
+  }
+
+  Mono<Void> conversation(int session) {
+    var target = ToolArguments.Target.of(session % properties.gcp().jobs());
+    var sessionId = "loadtest-session-%04d".formatted(session);
+    var operation = properties.interact().stream() ? "interact/stream" : "interact";
+    return Flux.range(0, properties.interact().turns())
+        .concatMap(
+            turn ->
+                timed(
+                    turn == 0 ? operation : operation + " (follow up)",
+                    interaction(
+                        Map.of(
+                            "q",
+                            target.question(QUESTIONS.get(turn % QUESTIONS.size())),
+                            "sessionId",
+                            sessionId))))
+        .then();
+  }
+
+  Mono<?> interaction(Map<String, String> body) {
+    if (properties.interact().stream()) {
+      return agent
+          .post()
+          .uri("/interact/stream")
+          .accept(MediaType.APPLICATION_NDJSON)
+          .bodyValue(body)
+          .retrieve()
+          .bodyToFlux(Map.class)
+          .filter(event -> "ERROR".equals(event.get("type")))
+          .<Object>handle(
+              (event, sink) ->
+                  sink.error(new IllegalStateException(String.valueOf(event.get("content")))))
+          .then();
+    }
+    return agent.post().uri("/interact").bodyValue(body).retrieve().toBodilessEntity();
+  }
+
+  Mono<Void> mcpSession(int session) {
+    var target = ToolArguments.Target.of(session % properties.gcp().jobs());
+    return Mono.<Void, McpAsyncClient>usingWhen(
+        Mono.fromSupplier(this::mcpClient)
+            .flatMap(client -> client.initialize().thenReturn(client)),
+        client ->
+            client
+                .listTools()
+                .map(
+                    result ->
+                        result.tools().stream()
+                            .collect(Collectors.toMap(McpSchema.Tool::name, Function.identity())))
+                .flatMapMany(
+                    available ->
+                        Flux.range(0, properties.mcp().calls())
+                            .concatMap(call -> toolCall(client, available, call, target)))
+                .then(),
+        McpAsyncClient::closeGracefully)
+        // sessions that can not be established are reported as failed
+        .onErrorResume(
+            ex -> {
+              latencies.record("mcp session", 0, false);
+              return Mono.empty();
+            });
+  }
+
+  Mono<?> toolCall(
+      McpAsyncClient client,
+      Map<String, McpSchema.Tool> available,
+      int call,
+      ToolArguments.Target target) {
+    var tools = properties.mcp().tools();
+    var tool = available.get(tools.get(call % tools.size()));
+    if (tool == null) {
+      return Mono.empty();
+    }
+    return timed(
+        "mcp " + tool.name(),
+        client
+            .callTool(
+                new McpSchema.CallToolRequest(
+                    tool.name(), ToolArguments.of(tool.inputSchema().properties(), target)))
+            .filter(result -> Boolean.TRUE.equals(result.isError()))
+            .flatMap(
+                result -> Mono.error(new IllegalStateException(result.content().toString()))));
+  }
+
+  McpAsyncClient mcpClient() {
+    return McpClient.async(WebFluxSseClientTransport.builder(tools.clone()).build())
+        .requestTimeout(Duration.ofMinutes(2))
+        .build();
+  }
+
+  /** Records the latency of the request, failed requests are recorded as errors. */
+  Mono<?> timed(String operation, Mono<?> request) {
+    return Mono.defer(
+        () -> {
+          var start = System.nanoTime();
+          return request
+              .doOnSuccess(any -> latencies.record(operation, System.nanoTime() - start, true))
+              .doOnError(ex -> latencies.record(operation, System.nanoTime() - start, false))
+              .onErrorComplete();
+        });
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.loadtest;
+
+import com.example.dataflow.tips.agent.DataflowAgentApp;
+import com.example.dataflow.tips.tools.DataflowToolsApp;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+/**
+ * Load test of the agent and the tools server without GCP nor an LLM. Starts the stand-ins of the
+ * GCP APIs, the tools server using them, and the agent using the tools server and a scripted fake
+ * chat model, all of them in this process. Then runs the configured agent conversations and MCP
+ * sessions concurrently, reporting the throughput and latency percentiles of every operation.
+ *
+ * <p>The run is configured with {@code --loadtest.*} arguments, see {@link LoadTestProperties}, for
+ * example {@code --loadtest.interact.sessions=64 --loadtest.gcp.latency=200ms}. The applications
+ * read their settings from {@code loadtest-tools.yaml} and {@code loadtest-agent.yaml}, which can
+ * be overridden with system properties.
+ */
+public final class LoadTest {
+
+  private LoadTest() {}
+
+  public static void main(String[] args) throws Exception {
+    var properties =
+        new Binder(ConfigurationPropertySources.from(new SimpleCommandLinePropertySource(args)))
+            .bindOrCreate("loadtest", LoadTestProperties.class);
+    try (var gcp = FakeGcpServer.start(properties.gcp());
+        var tools =
+            new SpringApplicationBuilder(DataflowToolsApp.class)
+                .properties(
+                    "spring.config.name=loadtest-tools",
+                    "tools.gcp.endpoint=" + gcp.endpoint(),
+                    "tools.gcp.plaintext=true")
+                .run();
+        var agent =
+            new SpringApplicationBuilder(DataflowAgentApp.class)
+                .properties(
+                    "spring.config.name=loadtest-agent",
+                    "spring.ai.mcp.client.sse.connections.loadtest.url=" + url(tools))
+                .initializers(
+                    context ->
+                        context
+                            .getBeanFactory()
+                            .registerSingleton(
+                                "fakeChatModel",
+                                new FakeChatModel(properties.model(), new ObjectMapper())))
+                .run()) {
+      var start = System.nanoTime();
+      var latencies = new LoadDriver(properties, url(agent), url(tools)).run();
+      report(properties, latencies, Duration.ofNanos(System.nanoTime() - start));
+    }
+  }
+
+  static String url(ConfigurableApplicationContext context) {
+    return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+  }
+
+  static void report(LoadTestProperties properties, Latencies latencies, Duration elapsed) {
+    System.out.printf(
+        "%nLoad test: %d conversations of %d questions, %d MCP sessions of %d calls, in %.1fs%n",
+        properties.interact().sessions(),
+        properties.interact().turns(),
+        properties.mcp().sessions(),
+        properties.mcp().calls(),
+        elapsed.toMillis() / 1000.0);
+    System.out.printf(
+        "%-40s %9s %7s %10s %10s %10s %10s%n",
+        "operation", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms");
+    for (var summary : latencies.summaries(elapsed)) {
+      System.out.printf(
+          "%-40s %9d %7d %10.2f %10.1f %10.1f %10.1f%n",
+          summary.operation(),
+          summary.requests(),
+          summary.errors(),
+          summary.throughput(),
+          summary.p50(),
+          summary.p99(),
+          summary.max());
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.loadtest;
+
+import java.time.Duration;
+import java.util.List;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of a load test run, bound from the {@code --loadtest.*} command line arguments.
+ *
+ * @param gcp latency and payload sizes of the GCP APIs stand-ins.
+ * @param model script followed by the fake chat model on every interaction.
+ * @param interact concurrent conversations with the agent.
+ * @param mcp concurrent MCP sessions calling the tools directly.
+ * @param timeout maximum duration of the run, pending requests are cancelled after it.
+ */
+public record LoadTestProperties(
+    @DefaultValue Gcp gcp,
+    @DefaultValue Model model,
+    @DefaultValue Interact interact,
+    @DefaultValue Mcp mcp,
+    @DefaultValue("10m") Duration timeout) {
+
+  /**
+   * Behavior of the in-process stand-ins of the Jobs, Metrics, Messages and Monitoring APIs.
+   *
+   * @param latency base latency of every response.
+   * @param jitter random latency added to the base one, up to this value.
+   * @param transforms amount of transforms of the jobs, every one with display data.
+   * @param metricSteps amount of steps reported in the job metrics.
+   * @param logMessages amount of log messages returned for a job.
+   * @param workers amount of workers reporting CPU utilization.
+   * @param points amount of CPU utilization points per worker.
+   * @param jobs amount of distinct jobs of the project, every session asks about one of them.
+   */
+  public record Gcp(
+      @DefaultValue("50ms") Duration latency,
+      @DefaultValue("25ms") Duration jitter,
+      @DefaultValue("200") int transforms,
+      @DefaultValue("100") int metricSteps,
+      @DefaultValue("500") int logMessages,
+      @DefaultValue("20") int workers,
+      @DefaultValue("5") int points,
+      @DefaultValue("50") int jobs) {}
+
+  /**
+   * Deterministic script of the fake chat model: the tools are called in order, one per model
+   * round unless parallel, then the answer is streamed token by token.
+   *
+   * @param tools names of the MCP tools called on every interaction, missing ones are skipped.
+   * @param parallelToolCalls when true all the tools are requested in a single model round.
+   * @param thinkTime time taken by every model round before its first token or tool call.
+   * @param answerTokens amount of tokens of the answer.
+   * @param tokenDelay time between the answer tokens.
+   */
+  public record Model(
+      @DefaultValue({"Job Details", "Job metrics", "Job Workers CPU metrics"}) List<String> tools,
+      @DefaultValue("false") boolean parallelToolCalls,
+      @DefaultValue("800ms") Duration thinkTime,
+      @DefaultValue("200") int answerTokens,
+      @DefaultValue("10ms") Duration tokenDelay) {}
+
+  /**
+   * Conversations with the agent, every session sends its questions one after the other.
+   *
+   * @param sessions amount of concurrent sessions.
+   * @param turns amount of questions per session, the follow ups carry the session history.
+   * @param stream when true the streaming endpoint is used instead of the blocking one.
+   */
+  public record Interact(
+      @DefaultValue("16") int sessions,
+      @DefaultValue("3") int turns,
+      @DefaultValue("false") boolean stream) {}
+
+  /**
+   * MCP sessions calling the tools directly, as other MCP clients of the tools server would.
+   *
+   * @param sessions amount of concurrent sessions.
+   * @param calls amount of tool calls per session, cycling through the tools.
+   * @param tools names of the tools called.
+   */
+  public record Mcp(
+      @DefaultValue("16") int sessions,
+      @DefaultValue("20") int calls,
+      @DefaultValue({"Job Details", "Job metrics", "Log Messages Per Level", "Analyze Job"})
+          List<String> tools) {}
+}
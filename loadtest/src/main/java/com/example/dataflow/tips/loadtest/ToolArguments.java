@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Fills the arguments of a tool call from the tool's input schema, targeting the job a question is
+ * about. Arguments are recognized by name, the rest get a neutral value of their type.
+ */
+final class ToolArguments {
+  private static final Pattern TARGET =
+      Pattern.compile("job (\\S+) in project (\\S+) and region (\\S+?)[?.]?(?:\\s|$)");
+
+  private ToolArguments() {}
+
+  /** The job a question or a tool call is about. */
+  record Target(String projectId, String regionId, String jobId) {
+
+    static Target of(int index) {
+      return new Target(
+          FakeResponses.PROJECT_ID, FakeResponses.REGION_ID, FakeResponses.jobId(index));
+    }
+
+    /** The job mentioned by the question, in the form used by {@link #question(String)}. */
+    static Optional<Target> parse(String question) {
+      var matcher = TARGET.matcher(question);
+      return matcher.find()
+          ? Optional.of(new Target(matcher.group(2), matcher.group(3), matcher.group(1)))
+          : Optional.empty();
+    }
+
+    String question(String template) {
+      return template.formatted(
+          "job %s in project %s and region %s".formatted(jobId, projectId, regionId));
+    }
+  }
+
+  /**
+   * The arguments for the properties of a JSON schema.
+   *
+   * @param properties the {@code properties} of the tool's input schema, may be null.
+   * @param target the job the call is about.
+   */
+  static Map<String, Object> of(Map<String, Object> properties, Target target) {
+    var arguments = new LinkedHashMap<String, Object>();
+    if (properties == null) {
+      return arguments;
+    }
+    properties.forEach((name, schema) -> arguments.put(name, value(name, schema, target)));
+    return arguments;
+  }
+
+  static Object value(String name, Object schema, Target target) {
+    var key = name.toLowerCase(Locale.ROOT);
+    if (key.contains("project")) {
+      return target.projectId();
+    }
+    if (key.contains("region") || key.contains("location")) {
+      return target.regionId();
+    }
+    if (key.contains("job")) {
+      return target.jobId();
+    }
+    if (key.contains("level")) {
+      return "ERROR";
+    }
+    var type = schema instanceof Map<?, ?> definition ? definition.get("type") : null;
+    return switch (String.valueOf(type)) {
+      case "integer", "number" -> 3600;
+      case "boolean" -> false;
+      case "array" -> List.of();
+      default -> "";
+    };
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.common;
+
+import com.example.dataflow.tips.tools.config.ResilienceProperties;
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker of a GCP API. Opens when the failure rate of the recent calls reaches the
+ * threshold, rejecting the calls until the open duration elapses. Then a few probe calls are let
+ * through, closing the circuit when all of them succeed or opening it again on the first failure.
+ */
+class CircuitBreaker {
+
+  enum State {
+    CLOSED,
+    HALF_OPEN,
+    OPEN
+  }
+
+  /** Outcome of a call, ignored outcomes do not count as success nor failure. */
+  enum Outcome {
+    SUCCESS,
+    FAILURE,
+    IGNORED
+  }
+
+  private final String api;
+  private final ResilienceProperties.CircuitBreaker settings;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final boolean[] failures;
+  private int calls;
+  private int next;
+  private int failed;
+  private State state = State.CLOSED;
+  private long openedAt;
+  private int probes;
+  private int probesSucceeded;
+
+  CircuitBreaker(String api, ResilienceProperties.CircuitBreaker settings) {
+    this.api = api;
+    this.settings = settings;
+    this.failures = new boolean[Math.max(settings.windowSize(), 1)];
+  }
+
+  /** Whether a call can be made now, every permitted call has to report its outcome. */
+  boolean tryAcquire() {
+    lock.lock();
+    try {
+      if (state == State.OPEN) {
+        if (System.nanoTime() - openedAt < settings.openDuration().toNanos()) {
+          return false;
+        }
+        state = State.HALF_OPEN;
+        probes = settings.halfOpenCalls();
+        probesSucceeded = 0;
+      }
+      if (state == State.HALF_OPEN) {
+        if (probes == 0) {
+          return false;
+        }
+        probes--;
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void record(Outcome outcome) {
+    lock.lock();
+    try {
+      switch (state) {
+        case HALF_OPEN -> {
+          switch (outcome) {
+            case FAILURE -> open();
+            case SUCCESS -> {
+              if (++probesSucceeded >= settings.halfOpenCalls()) {
+                close();
+              }
+            }
+            case IGNORED -> probes++;
+          }
+        }
+        case CLOSED -> {
+          if (outcome == Outcome.IGNORED) {
+            return;
+          }
+          if (calls == failures.length) {
+            failed -= failures[next] ? 1 : 0;
+          } else {
+            calls++;
+          }
+          failures[next] = outcome == Outcome.FAILURE;
+          failed += failures[next] ? 1 : 0;
+          next = (next + 1) % failures.length;
+          if (calls >= settings.minimumCalls() && failed >= settings.failureRate() * calls) {
+            open();
+          }
+        }
+        case OPEN -> {}
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  State state() {
+    lock.lock();
+    try {
+      return state;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Explains the rejection of the calls, the message ends up in the tool's error result. */
+  String rejection() {
+    lock.lock();
+    try {
+      var remaining =
+          Duration.ofNanos(
+              Math.max(settings.openDuration().toNanos() - (System.nanoTime() - openedAt), 0));
+      return ("The %s API is failing, calls to it are suspended for the next %d seconds. Retry "
+              + "later or continue without this information.")
+          .formatted(api, Math.max(remaining.toSeconds(), 1));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void open() {
+    state = State.OPEN;
+    openedAt = System.nanoTime();
+  }
+
+  void close() {
+    state = State.CLOSED;
+    calls = 0;
+    next = 0;
+    failed = 0;
+  }
+}
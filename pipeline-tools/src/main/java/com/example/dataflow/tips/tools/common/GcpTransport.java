@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.common;
+
+import com.example.dataflow.tips.tools.config.GcpClientProperties;
+import com.google.api.gax.core.CredentialsProvider;
+import com.google.api.gax.core.FixedCredentialsProvider;
+import com.google.api.gax.core.FixedExecutorProvider;
+import com.google.api.gax.core.GoogleCredentialsProvider;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.ChannelPoolSettings;
+import com.google.api.gax.grpc.InstantiatingGrpcChannelProvider;
+import com.google.api.gax.rpc.ClientSettings;
+import com.google.auth.Credentials;
+import io.grpc.ConnectivityState;
+import io.grpc.ForwardingChannelBuilder2;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+/**
+ * Transport shared by the GCP API clients: tuned channel pools, one executor sized for the tools
+ * workload instead of one per client, and one set of credentials. The warm up opens the channels'
+ * connections and fetches an access token ahead of the first tool invocation, so it does not pay
+ * the TLS handshake and the credentials exchange. Replayed clients neither connect nor
+ * authenticate.
+ */
+public class GcpTransport implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(GcpTransport.class);
+  private static final String CLOUD_PLATFORM_SCOPE =
+      "https://www.googleapis.com/auth/cloud-platform";
+
+  /** Progress of the warm up, the transport is ready once it is over whatever its outcome. */
+  public enum WarmUp {
+    PENDING,
+    RUNNING,
+    DONE,
+    TIMED_OUT,
+    FAILED,
+    DISABLED
+  }
+
+  private final GcpClientProperties properties;
+  private final GcpClientProperties.Transport settings;
+  private final Credentials credentials;
+  private final ScheduledExecutorService executor;
+  private final List<ManagedChannel> channels = new CopyOnWriteArrayList<>();
+  private volatile WarmUp warmUp;
+  private volatile Duration warmUpDuration;
+  private volatile String warmUpFailure;
+
+  private GcpTransport(
+      GcpClientProperties properties,
+      Credentials credentials,
+      boolean warmUp,
+      MeterRegistry registry) {
+    this.properties = properties;
+    this.settings = properties.transport();
+    this.credentials = credentials;
+    this.warmUp = warmUp ? WarmUp.PENDING : WarmUp.DISABLED;
+    var threads =
+        settings.executorThreads() > 0
+            ? settings.executorThreads()
+            : Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+    this.executor =
+        ExecutorServiceMetrics.monitor(
+            registry,
+            Executors.newScheduledThreadPool(
+                threads, Thread.ofPlatform().name("tools-gcp-", 0).daemon().factory()),
+            "tools.gcp.executor");
+  }
+
+  /**
+   * Creates the transport of the GCP clients, loading the application default credentials unless
+   * the clients reach a plaintext endpoint or replay their responses.
+   */
+  public static GcpTransport create(
+      GcpClientProperties properties, boolean replaying, MeterRegistry registry)
+      throws IOException {
+    var plaintext = StringUtils.hasText(properties.endpoint()) && properties.plaintext();
+    var credentials =
+        plaintext || replaying
+            ? null
+            : GoogleCredentialsProvider.newBuilder()
+                .setScopesToApply(List.of(CLOUD_PLATFORM_SCOPE))
+                .build()
+                .getCredentials();
+    return new GcpTransport(
+        properties, credentials, properties.transport().warmUp().enabled() && !replaying, registry);
+  }
+
+  /**
+   * Sets the client's executor and credentials to the shared ones, and configures the channels of
+   * its provider, pointed to the configured endpoint if any. The channels built by the provider are
+   * tracked for the warm up.
+   */
+  public <B extends ClientSettings.Builder<?, B>> B configure(
+      B clientSettings, InstantiatingGrpcChannelProvider.Builder channelProvider) {
+    var plaintext = false;
+    if (StringUtils.hasText(properties.endpoint())) {
+      channelProvider.setEndpoint(properties.endpoint());
+      plaintext = properties.plaintext();
+    }
+    var usePlaintext = plaintext;
+    channelProvider
+        .setChannelPoolSettings(ChannelPoolSettings.staticallySized(settings.channelPoolSize()))
+        .setKeepAliveTimeDuration(settings.keepAliveTime())
+        .setKeepAliveTimeoutDuration(settings.keepAliveTimeout())
+        .setKeepAliveWithoutCalls(settings.keepAliveWithoutCalls())
+        .setMaxInboundMessageSize(Math.toIntExact(settings.maxInboundMessageSize().toBytes()))
+        .setChannelConfigurator(
+            builder -> {
+              if (builder instanceof NettyChannelBuilder netty) {
+                netty.flowControlWindow(Math.toIntExact(settings.flowControlWindow().toBytes()));
+              }
+              if (usePlaintext) {
+                builder.usePlaintext();
+              }
+              return new TrackedChannelBuilder(builder);
+            });
+    return clientSettings
+        .setBackgroundExecutorProvider(FixedExecutorProvider.create(executor))
+        .setCredentialsProvider(credentialsProvider());
+  }
+
+  private CredentialsProvider credentialsProvider() {
+    return credentials == null
+        ? NoCredentialsProvider.create()
+        : FixedCredentialsProvider.create(credentials);
+  }
+
+  /**
+   * Fetches an access token and connects all the channels built so far, completes once done or
+   * once the warm up timeout elapses. The outcome is only reported, a failed warm up does not
+   * prevent the clients from connecting on their first calls.
+   */
+  public CompletableFuture<Void> warmUp() {
+    if (warmUp != WarmUp.PENDING) {
+      return CompletableFuture.completedFuture(null);
+    }
+    warmUp = WarmUp.RUNNING;
+    var started = System.nanoTime();
+    return CompletableFuture.runAsync(this::refreshCredentials, executor)
+        .thenCompose(
+            ignored ->
+                CompletableFuture.allOf(
+                    channels.stream()
+                        .map(GcpTransport::connected)
+                        .toArray(CompletableFuture[]::new)))
+        .orTimeout(settings.warmUp().timeout().toMillis(), TimeUnit.MILLISECONDS)
+        .whenComplete(
+            (ignored, error) -> {
+              warmUpDuration = Duration.ofNanos(System.nanoTime() - started);
+              var cause = error instanceof CompletionException ? error.getCause() : error;
+              if (cause == null) {
+                warmUp = WarmUp.DONE;
+                LOG.info(
+                    "Warmed up {} GCP channels in {} ms.",
+                    channels.size(),
+                    warmUpDuration.toMillis());
+              } else {
+                warmUp = cause instanceof TimeoutException ? WarmUp.TIMED_OUT : WarmUp.FAILED;
+                warmUpFailure = Utils.reason(cause);
+                LOG.warn(
+                    "GCP transport warm up {} after {} ms, channels: {}.",
+                    warmUp == WarmUp.TIMED_OUT ? "timed out" : "failed",
+                    warmUpDuration.toMillis(),
+                    channelStates(),
+                    cause);
+              }
+            })
+        .exceptionally(error -> null);
+  }
+
+  private void refreshCredentials() {
+    if (credentials == null) {
+      return;
+    }
+    try {
+      credentials.refresh();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /** Completes once the channel is connected, requesting the connection when idle. */
+  private static CompletableFuture<Void> connected(ManagedChannel channel) {
+    var connected = new CompletableFuture<Void>();
+    awaitReady(channel, connected);
+    return connected;
+  }
+
+  private static void awaitReady(ManagedChannel channel, CompletableFuture<Void> connected) {
+    var state = channel.getState(true);
+    switch (state) {
+      case READY -> connected.complete(null);
+      case SHUTDOWN ->
+          connected.completeExceptionally(new IllegalStateException("Channel closed."));
+      // transient failures are retried by the channel with a backoff until the warm up times out
+      default -> channel.notifyWhenStateChanged(state, () -> awaitReady(channel, connected));
+    }
+  }
+
+  /** Whether the warm up is over, or was not needed. */
+  public boolean ready() {
+    return warmUp != WarmUp.PENDING && warmUp != WarmUp.RUNNING;
+  }
+
+  /** Outcome of the warm up and current state of the channels, reported by the health endpoint. */
+  public Map<String, Object> details() {
+    var details = new LinkedHashMap<String, Object>();
+    details.put("warmUp", warmUp);
+    if (warmUpDuration != null) {
+      details.put("warmUpMillis", warmUpDuration.toMillis());
+    }
+    if (warmUpFailure != null) {
+      details.put("warmUpFailure", warmUpFailure);
+    }
+    details.put("authenticated", credentials != null);
+    details.put("channels", channelStates());
+    return details;
+  }
+
+  private Map<ConnectivityState, Long> channelStates() {
+    return channels.stream()
+        .collect(Collectors.groupingBy(channel -> channel.getState(false), Collectors.counting()));
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /** Keeps track of the channels built by the clients' channel providers. */
+  private final class TrackedChannelBuilder
+      extends ForwardingChannelBuilder2<TrackedChannelBuilder> {
+    private final ManagedChannelBuilder<?> delegate;
+
+    TrackedChannelBuilder(ManagedChannelBuilder<?> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    protected ManagedChannelBuilder<?> delegate() {
+      return delegate;
+    }
+
+    @Override
+    public ManagedChannel build() {
+      var channel = super.build();
+      channels.add(channel);
+      return channel;
+    }
+  }
+}
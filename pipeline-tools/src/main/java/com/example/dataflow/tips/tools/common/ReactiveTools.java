@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.spec.McpSchema;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import org.springframework.ai.mcp.McpToolUtils;
+import org.springframework.ai.tool.ToolCallback;
+import reactor.core.publisher.Mono;
+
+/**
+ * Builds the MCP async tool specifications. Tools with a reactive handler are executed without
+ * holding a thread while the GCP calls are in flight, the rest are executed through their blocking
+ * tool callback.
+ */
+public class ReactiveTools {
+
+  private ReactiveTools() {}
+
+  /** A non blocking tool implementation, receiving the tool call arguments. */
+  @FunctionalInterface
+  public interface Handler {
+    Mono<?> apply(Map<String, Object> arguments);
+  }
+
+  /**
+   * Creates the async specifications for the tool callbacks.
+   *
+   * @param callbacks the tool callbacks, used for the tool definitions and as blocking fallback.
+   * @param handlers the reactive handlers keyed by tool name.
+   * @param mapper used to serialize the reactive handlers results.
+   * @param metrics records the tool invocations.
+   * @param resilience bounds the tool invocations by their time budget.
+   * @return the async tool specifications.
+   */
+  public static List<McpServerFeatures.AsyncToolSpecification> specifications(
+      ToolCallback[] callbacks,
+      Map<String, Handler> handlers,
+      ObjectMapper mapper,
+      ToolMetrics metrics,
+      Resilience resilience) {
+    return List.of(callbacks).stream()
+        .map(
+            callback ->
+                Optional.ofNullable(handlers.get(callback.getToolDefinition().name()))
+                    .map(
+                        handler ->
+                            specification(callback, handler, mapper, metrics, resilience))
+                    .orElseGet(
+                        () ->
+                            McpToolUtils.toAsyncToolSpecification(
+                                new MeteredToolCallback(callback, metrics, resilience))))
+        .toList();
+  }
+
+  static McpServerFeatures.AsyncToolSpecification specification(
+      ToolCallback callback,
+      Handler handler,
+      ObjectMapper mapper,
+      ToolMetrics metrics,
+      Resilience resilience) {
+    var definition = callback.getToolDefinition();
+    return new McpServerFeatures.AsyncToolSpecification(
+        new McpSchema.Tool(definition.name(), definition.description(), definition.inputSchema()),
+        (exchange, arguments) ->
+            metrics
+                .record(
+                    definition.name(),
+                    resilience.withinBudget(
+                        definition.name(),
+                        Mono.defer(() -> handler.apply(arguments))
+                            .map(result -> toJson(mapper, result))))
+                .map(json -> new McpSchema.CallToolResult(json, false))
+                .onErrorResume(
+                    ex -> Mono.just(new McpSchema.CallToolResult(ex.getMessage(), true))));
+  }
+
+  static String toJson(ObjectMapper mapper, Object result) {
+    try {
+      return mapper.writeValueAsString(result);
+    } catch (JsonProcessingException ex) {
+      throw new RuntimeException("Error while serializing the tool result.", ex);
+    }
+  }
+
+  public static String string(Map<String, Object> arguments, String name) {
+    return Optional.ofNullable(arguments.get(name)).map(Object::toString).orElse(null);
+  }
+
+  public static Integer integer(Map<String, Object> arguments, String name) {
+    return Optional.ofNullable(arguments.get(name))
+        .map(
+            value ->
+                value instanceof Number number
+                    ? number.intValue()
+                    : Double.valueOf(value.toString()).intValue())
+        .orElse(null);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.common;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageLite;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.util.Optional;
+
+/** Appends the calls made through the channel, with their responses, to the archive. */
+class RecordingInterceptor implements ClientInterceptor {
+
+  private final ResponseArchive archive;
+
+  RecordingInterceptor(ResponseArchive archive) {
+    this.archive = archive;
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    return new ForwardingClientCall.SimpleForwardingClientCall<>(
+        next.newCall(method, callOptions)) {
+      private long start;
+      private Message request;
+
+      @Override
+      public void start(Listener<RespT> responseListener, Metadata headers) {
+        start = System.nanoTime();
+        super.start(
+            new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(
+                responseListener) {
+              private MessageLite response;
+
+              @Override
+              public void onMessage(RespT message) {
+                response = (MessageLite) message;
+                super.onMessage(message);
+              }
+
+              @Override
+              public void onClose(Status status, Metadata trailers) {
+                if (request != null) {
+                  archive.append(
+                      new ResponseArchive.Recording(
+                          method.getFullMethodName(),
+                          ResponseArchive.normalize(request).toByteString(),
+                          Optional.ofNullable(response).map(MessageLite::toByteString),
+                          status,
+                          (System.nanoTime() - start) / 1000));
+                }
+                super.onClose(status, trailers);
+              }
+            },
+            headers);
+      }
+
+      @Override
+      public void sendMessage(ReqT message) {
+        request = (Message) message;
+        super.sendMessage(message);
+      }
+    };
+  }
+}
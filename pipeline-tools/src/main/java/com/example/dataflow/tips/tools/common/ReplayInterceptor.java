@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.common;
+
+import com.google.protobuf.Message;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serves the calls made through the channel from the archive, without reaching the network. The
+ * responses are delivered after their recorded latency multiplied by the time scale, calls not
+ * found in the archive fail with a {@code NOT_FOUND} status.
+ */
+class ReplayInterceptor implements ClientInterceptor {
+
+  private static final ScheduledExecutorService SCHEDULER =
+      Executors.newScheduledThreadPool(
+          Runtime.getRuntime().availableProcessors(),
+          Thread.ofPlatform().name("gcp-replay-", 0).daemon().factory());
+
+  private final ResponseArchive archive;
+  private final double timeScale;
+
+  ReplayInterceptor(ResponseArchive archive, double timeScale) {
+    this.archive = archive;
+    this.timeScale = timeScale;
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    return new ReplayCall<>(method);
+  }
+
+  class ReplayCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+    private final MethodDescriptor<ReqT, RespT> method;
+    private final ReentrantLock lock = new ReentrantLock();
+    private Listener<RespT> listener;
+    private ReqT request;
+    private Future<?> delivery;
+    private boolean closed;
+
+    ReplayCall(MethodDescriptor<ReqT, RespT> method) {
+      this.method = method;
+    }
+
+    @Override
+    public void start(Listener<RespT> responseListener, Metadata headers) {
+      listener = responseListener;
+    }
+
+    @Override
+    public void request(int numMessages) {}
+
+    @Override
+    public void sendMessage(ReqT message) {
+      request = message;
+    }
+
+    @Override
+    public void halfClose() {
+      var recording = archive.next(method.getFullMethodName(), (Message) request);
+      var delayMicros =
+          recording.map(found -> (long) (found.latencyMicros() * timeScale)).orElse(0L);
+      delivery =
+          SCHEDULER.schedule(
+              () ->
+                  recording.ifPresentOrElse(
+                      this::respond,
+                      () ->
+                          close(
+                              Status.NOT_FOUND.withDescription(
+                                  "No recorded response for " + method.getFullMethodName()))),
+              delayMicros,
+              TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public void cancel(String message, Throwable cause) {
+      if (delivery != null) {
+        delivery.cancel(false);
+      }
+      close(Status.CANCELLED.withDescription(message).withCause(cause));
+    }
+
+    void respond(ResponseArchive.Recording recording) {
+      lock.lock();
+      try {
+        if (closed) {
+          return;
+        }
+        if (recording.response().isPresent()) {
+          listener.onHeaders(new Metadata());
+          listener.onMessage(method.parseResponse(recording.response().get().newInput()));
+        }
+        close(recording.status());
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /** Closes the call once, the listener is never called concurrently. */
+    void close(Status status) {
+      lock.lock();
+      try {
+        if (!closed) {
+          closed = true;
+          listener.onClose(status, new Metadata());
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
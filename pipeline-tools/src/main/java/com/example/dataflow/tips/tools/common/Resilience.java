@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.common;
+
+import com.example.dataflow.tips.tools.config.ResilienceProperties;
+import com.google.api.gax.rpc.UnaryCallSettings;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+
+/**
+ * Resilience of the tools against slow or failing GCP APIs: a time budget per tool invocation,
+ * shared by the GCP calls it makes, and per API interceptors retrying, hedging and failing fast the
+ * calls, see {@link ResilienceInterceptor}. Exposes the circuit breakers state as a gauge, 0 when
+ * closed, 1 when half open and 2 when open, and counts the tool invocations exceeding their budget.
+ */
+public class Resilience implements AutoCloseable {
+  static final String CIRCUIT_STATE = "tools.gcp.circuit.state";
+  static final String DEADLINE_EXCEEDED = "tools.deadline.exceeded";
+
+  private final ResilienceProperties settings;
+  private final MeterRegistry registry;
+  private final ScheduledExecutorService scheduler =
+      Executors.newScheduledThreadPool(
+          2, Thread.ofPlatform().name("tools-resilience-", 0).daemon().factory());
+
+  public Resilience(ResilienceProperties settings, MeterRegistry registry) {
+    this.settings = settings;
+    this.registry = registry;
+  }
+
+  /**
+   * The interceptors to be added to the channel of a GCP API client, none when disabled.
+   *
+   * @param api name of the API, used by the metrics and the circuit breaker messages.
+   */
+  public List<ClientInterceptor> interceptors(String api) {
+    if (!settings.enabled()) {
+      return List.of();
+    }
+    var breaker = new CircuitBreaker(api, settings.circuitBreaker());
+    Gauge.builder(CIRCUIT_STATE, breaker, circuit -> circuit.state().ordinal())
+        .description("State of the GCP API circuit breaker: 0 closed, 1 half open, 2 open.")
+        .tag("api", api)
+        .register(registry);
+    return List.of(new ResilienceInterceptor(api, settings, breaker, registry, scheduler));
+  }
+
+  /**
+   * Disables the GAX retries of a client's unary method when the interceptors are applied, they are
+   * the only retry layer so an attempt is not retried by both, nor a circuit breaker rejection by
+   * GAX.
+   */
+  public Void withoutGaxRetries(UnaryCallSettings.Builder<?, ?> method) {
+    if (settings.enabled()) {
+      method.setRetryableCodes(Set.of());
+    }
+    return null;
+  }
+
+  /**
+   * Runs a blocking tool invocation within its budget, the GCP calls made from the invocation's
+   * thread fail once the budget is exhausted.
+   */
+  public <T> T withinBudget(String tool, Supplier<T> invocation) {
+    if (!settings.enabled()) {
+      return invocation.get();
+    }
+    var context =
+        Context.current()
+            .withDeadlineAfter(
+                settings.deadlines().budget(tool).toNanos(), TimeUnit.NANOSECONDS, scheduler);
+    var previous = context.attach();
+    try {
+      return invocation.get();
+    } catch (RuntimeException ex) {
+      if (context.isCancelled()) {
+        registry.counter(DEADLINE_EXCEEDED, "tool", tool).increment();
+      }
+      throw ex;
+    } finally {
+      context.detach(previous);
+      context.cancel(null);
+    }
+  }
+
+  /**
+   * Bounds a non blocking tool invocation by its budget, cancelling the pending GCP calls and
+   * failing with an explanation for the model once exhausted.
+   */
+  public <T> Mono<T> withinBudget(String tool, Mono<T> invocation) {
+    if (!settings.enabled()) {
+      return invocation;
+    }
+    var budget = settings.deadlines().budget(tool);
+    return invocation.timeout(
+        budget,
+        Mono.defer(
+            () -> {
+              registry.counter(DEADLINE_EXCEEDED, "tool", tool).increment();
+              return Mono.error(
+                  new TimeoutException(
+                      ("The tool %s did not complete within its %d seconds budget, the GCP APIs "
+                              + "are slower than usual. Retry later or narrow the request.")
+                          .formatted(tool, budget.toSeconds())));
+            }));
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.common;
+
+import com.example.dataflow.tips.tools.config.ResilienceProperties;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Makes the unary calls to a GCP API resilient: every attempt is bounded by the attempt deadline,
+ * failed reads are retried with a jittered exponential backoff, the configured methods get a
+ * hedged second request once slower than their usual latency, and the calls fail fast while the
+ * API's circuit breaker is open. Only the response of the winning attempt reaches the caller.
+ */
+class ResilienceInterceptor implements ClientInterceptor {
+  static final String CALLS = "tools.gcp.calls";
+  static final String RETRIES = "tools.gcp.retries";
+  static final String HEDGES = "tools.gcp.hedges";
+  static final String REJECTIONS = "tools.gcp.circuit.rejections";
+  private static final List<String> READS = List.of("Get", "List", "AggregatedList");
+  private static final List<Status.Code> FAILURES =
+      List.of(
+          Status.Code.UNAVAILABLE,
+          Status.Code.DEADLINE_EXCEEDED,
+          Status.Code.RESOURCE_EXHAUSTED,
+          Status.Code.INTERNAL,
+          Status.Code.UNKNOWN);
+
+  private final String api;
+  private final ResilienceProperties settings;
+  private final CircuitBreaker breaker;
+  private final MeterRegistry registry;
+  private final ScheduledExecutorService scheduler;
+
+  ResilienceInterceptor(
+      String api,
+      ResilienceProperties settings,
+      CircuitBreaker breaker,
+      MeterRegistry registry,
+      ScheduledExecutorService scheduler) {
+    this.api = api;
+    this.settings = settings;
+    this.breaker = breaker;
+    this.registry = registry;
+    this.scheduler = scheduler;
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    if (method.getType() != MethodDescriptor.MethodType.UNARY) {
+      return next.newCall(method, callOptions);
+    }
+    return new ResilientCall<>(method, callOptions, next);
+  }
+
+  /** Reads are idempotent, so they can be retried and hedged. */
+  static boolean idempotent(MethodDescriptor<?, ?> method) {
+    return READS.stream().anyMatch(method.getBareMethodName()::startsWith);
+  }
+
+  boolean hedged(MethodDescriptor<?, ?> method) {
+    return settings.hedging().enabled()
+        && idempotent(method)
+        && settings.hedging().methods().contains(method.getBareMethodName());
+  }
+
+  /** The configured percentile of the method's successful calls latency. */
+  Duration hedgingDelay(MethodDescriptor<?, ?> method) {
+    var hedging = settings.hedging();
+    var snapshot = timer(method, Status.Code.OK).takeSnapshot();
+    if (snapshot.count() < hedging.minSamples()) {
+      return hedging.initialDelay();
+    }
+    for (var percentile : snapshot.percentileValues()) {
+      if (percentile.percentile() == hedging.percentile()) {
+        var delay = Duration.ofNanos((long) percentile.value(TimeUnit.NANOSECONDS));
+        return delay.compareTo(hedging.minDelay()) < 0 ? hedging.minDelay() : delay;
+      }
+    }
+    return hedging.initialDelay();
+  }
+
+  /** Exponential backoff before the retry, with a random half of it as jitter. */
+  Duration backoff(int retry) {
+    var backoff =
+        Math.min(
+            settings.retry().initialBackoff().toNanos()
+                * Math.pow(settings.retry().multiplier(), retry - 1),
+            settings.retry().maxBackoff().toNanos());
+    if (backoff <= 0) {
+      return Duration.ZERO;
+    }
+    var jitter = ThreadLocalRandom.current().nextDouble(backoff / 2);
+    return Duration.ofNanos((long) (backoff / 2 + jitter));
+  }
+
+  Timer timer(MethodDescriptor<?, ?> method, Status.Code code) {
+    return Timer.builder(CALLS)
+        .description("GCP API calls latency, including retries and hedged requests.")
+        .tag("api", api)
+        .tag("method", method.getBareMethodName())
+        .tag("status", code.name())
+        .publishPercentiles(0.5, settings.hedging().percentile(), 0.99)
+        .register(registry);
+  }
+
+  static CircuitBreaker.Outcome outcome(Status status) {
+    if (status.isOk()) {
+      return CircuitBreaker.Outcome.SUCCESS;
+    }
+    return FAILURES.contains(status.getCode())
+        ? CircuitBreaker.Outcome.FAILURE
+        : status.getCode() == Status.Code.CANCELLED
+            ? CircuitBreaker.Outcome.IGNORED
+            : CircuitBreaker.Outcome.SUCCESS;
+  }
+
+  /**
+   * A call made of one or more attempts. The request is kept until the caller half closes the
+   * call, then the attempts are started and the outcome of the first successful one, or of the
+   * last failed one, is delivered to the caller. The outcome is decided under the lock while the
+   * caller's listener and the cancellation of the losing attempts run once it is released, one at
+   * a time and in the order they were decided.
+   */
+  class ResilientCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+    private final MethodDescriptor<ReqT, RespT> method;
+    private final CallOptions callOptions;
+    private final Channel next;
+    // the caller's context carries the tool deadline, the attempts are started within it
+    private final Context context = Context.current();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<Attempt> inFlight = new ArrayList<>();
+    private final long start = System.nanoTime();
+    private final Queue<Runnable> deliveries = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean delivering = new AtomicBoolean();
+    private Listener<RespT> listener;
+    private Metadata headers;
+    private ReqT request;
+    private int attempts;
+    private boolean done;
+    private ScheduledFuture<?> pending;
+
+    ResilientCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+      this.method = method;
+      this.callOptions = callOptions;
+      this.next = next;
+    }
+
+    @Override
+    public void start(Listener<RespT> responseListener, Metadata headers) {
+      this.listener = responseListener;
+      this.headers = headers;
+    }
+
+    @Override
+    public void request(int numMessages) {}
+
+    @Override
+    public void sendMessage(ReqT message) {
+      request = message;
+    }
+
+    @Override
+    public void halfClose() {
+      locked(
+          () -> {
+            attempt(false);
+            if (hedged(method) && !done) {
+              pending = schedule(this::hedge, hedgingDelay(method));
+            }
+          });
+    }
+
+    @Override
+    public void cancel(String message, Throwable cause) {
+      locked(
+          () -> finish(Status.CANCELLED.withDescription(message).withCause(cause), new Metadata()));
+    }
+
+    @Override
+    public boolean isReady() {
+      return !done;
+    }
+
+    void attempt(boolean hedge) {
+      if (!breaker.tryAcquire()) {
+        registry.counter(REJECTIONS, "api", api).increment();
+        if (inFlight.isEmpty()) {
+          finish(Status.UNAVAILABLE.withDescription(breaker.rejection()), new Metadata());
+        }
+        return;
+      }
+      attempts++;
+      var attempt = new Attempt(next.newCall(method, attemptOptions()), hedge);
+      inFlight.add(attempt);
+      var attemptHeaders = new Metadata();
+      attemptHeaders.merge(headers);
+      attempt.call.start(attempt, attemptHeaders);
+      attempt.call.request(1);
+      attempt.call.sendMessage(request);
+      attempt.call.halfClose();
+    }
+
+    void hedge() {
+      locked(
+          () -> {
+            if (!done && inFlight.size() == 1 && attempts < settings.retry().maxAttempts()) {
+              registry
+                  .counter(
+                      HEDGES, "api", api, "method", method.getBareMethodName(), "result", "sent")
+                  .increment();
+              attempt(true);
+            }
+          });
+    }
+
+    void retry() {
+      locked(
+          () -> {
+            if (!done) {
+              registry
+                  .counter(RETRIES, "api", api, "method", method.getBareMethodName())
+                  .increment();
+              attempt(false);
+            }
+          });
+    }
+
+    /** Runs the action under the lock, then delivers the callbacks it decided. */
+    void locked(Runnable action) {
+      lock.lock();
+      try {
+        action.run();
+      } finally {
+        lock.unlock();
+      }
+      deliver();
+    }
+
+    /**
+     * Runs the decided callbacks outside of the lock. A single thread delivers at a time, so the
+     * listener sees them serialized and in order; an attempt closing synchronously while the lock
+     * is held leaves its callbacks to the thread holding it.
+     */
+    void deliver() {
+      while (!lock.isHeldByCurrentThread()
+          && !deliveries.isEmpty()
+          && delivering.compareAndSet(false, true)) {
+        try {
+          Runnable callback;
+          while ((callback = deliveries.poll()) != null) {
+            callback.run();
+          }
+        } finally {
+          delivering.set(false);
+        }
+      }
+    }
+
+    /** The attempt deadline, within the call's own deadline if any. */
+    CallOptions attemptOptions() {
+      var attemptDeadline =
+          Deadline.after(settings.deadlines().attempt().toNanos(), TimeUnit.NANOSECONDS);
+      var callDeadline = deadline();
+      return callOptions.withDeadline(
+          callDeadline != null && callDeadline.isBefore(attemptDeadline)
+              ? callDeadline
+              : attemptDeadline);
+    }
+
+    /** The earliest of the call's deadline and the caller's context one, null when none. */
+    Deadline deadline() {
+      var callDeadline = callOptions.getDeadline();
+      var contextDeadline = context.getDeadline();
+      if (callDeadline == null || contextDeadline == null) {
+        return callDeadline != null ? callDeadline : contextDeadline;
+      }
+      return callDeadline.minimum(contextDeadline);
+    }
+
+    void closed(Attempt attempt, Status status, Metadata trailers) {
+      locked(() -> decide(attempt, status, trailers));
+    }
+
+    /** Decides what the closed attempt means for the call, under the lock. */
+    void decide(Attempt attempt, Status status, Metadata trailers) {
+      inFlight.remove(attempt);
+      breaker.record(done ? CircuitBreaker.Outcome.IGNORED : outcome(status));
+      if (done) {
+        return;
+      }
+      if (status.isOk()) {
+        if (attempt.hedge) {
+          registry
+              .counter(HEDGES, "api", api, "method", method.getBareMethodName(), "result", "won")
+              .increment();
+        }
+        if (attempt.headers != null) {
+          deliveries.add(() -> listener.onHeaders(attempt.headers));
+        }
+        if (attempt.response != null) {
+          deliveries.add(() -> listener.onMessage(attempt.response));
+        }
+        finish(status, trailers);
+        return;
+      }
+      if (!inFlight.isEmpty()) {
+        // a hedged attempt is still running
+        return;
+      }
+      var backoff = backoff(attempts);
+      if (!idempotent(method)
+          || !settings.retry().codes().contains(status.getCode())
+          || attempts >= settings.retry().maxAttempts()
+          || !enoughTime(backoff)) {
+        finish(status, trailers);
+        return;
+      }
+      cancelPending();
+      pending = schedule(this::retry, backoff);
+    }
+
+    boolean enoughTime(Duration backoff) {
+      var deadline = deadline();
+      return deadline == null
+          || deadline.timeRemaining(TimeUnit.NANOSECONDS) > backoff.toNanos();
+    }
+
+    /** Completes the call once, cancelling the attempts still running. */
+    void finish(Status status, Metadata trailers) {
+      if (done) {
+        return;
+      }
+      done = true;
+      cancelPending();
+      for (var attempt : List.copyOf(inFlight)) {
+        deliveries.add(() -> attempt.call.cancel("Another attempt completed the call.", null));
+      }
+      timer(method, status.getCode()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      if (listener != null) {
+        deliveries.add(() -> listener.onClose(status, trailers));
+      }
+    }
+
+    void cancelPending() {
+      if (pending != null) {
+        pending.cancel(false);
+        pending = null;
+      }
+    }
+
+    ScheduledFuture<?> schedule(Runnable task, Duration delay) {
+      return scheduler.schedule(context.wrap(task), delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /** An attempt of the call, its response is kept until the attempt completes. */
+    class Attempt extends ClientCall.Listener<RespT> {
+      private final ClientCall<ReqT, RespT> call;
+      private final boolean hedge;
+      private Metadata headers;
+      private RespT response;
+
+      Attempt(ClientCall<ReqT, RespT> call, boolean hedge) {
+        this.call = call;
+        this.hedge = hedge;
+      }
+
+      @Override
+      public void onHeaders(Metadata headers) {
+        this.headers = headers;
+      }
+
+      @Override
+      public void onMessage(RespT message) {
+        this.response = message;
+      }
+
+      @Override
+      public void onClose(Status status, Metadata trailers) {
+        closed(this, status, trailers);
+      }
+    }
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.common;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import io.grpc.ClientInterceptor;
+import io.grpc.Status;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Archive of the GCP API responses, used to record the responses received by the clients and to
+ * replay them later without reaching GCP.
+ *
+ * <p>The archive is an append only file of length prefixed records, every record is a protobuf
+ * message holding the gRPC method, the request, the response or the error status, and the time
+ * taken by the call. Requests are stored with their timestamps cleared, since the tools ask for
+ * time windows relative to the current time, so replayed requests match the recorded ones. When
+ * replaying the file is memory mapped and indexed by method and request, the responses are parsed
+ * from the mapped file when served. The same request recorded several times is replayed in the
+ * recorded order, repeating the last response once all of them were served.
+ */
+public final class ResponseArchive implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(ResponseArchive.class);
+
+  private static final int METHOD = 1;
+  private static final int REQUEST = 2;
+  private static final int RESPONSE = 3;
+  private static final int STATUS_CODE = 4;
+  private static final int STATUS_DESCRIPTION = 5;
+  private static final int LATENCY_MICROS = 6;
+
+  /** How the archive is used by the GCP clients. */
+  public enum Mode {
+    /** The clients reach GCP, nothing is recorded. */
+    OFF,
+    /** The clients reach GCP, their responses are appended to the archive. */
+    RECORD,
+    /** The clients are served from the archive, without reaching GCP. */
+    REPLAY
+  }
+
+  private final Mode mode;
+  private final List<ClientInterceptor> interceptors;
+  private final FileChannel channel;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<Key, Recordings> index = new HashMap<>();
+
+  private ResponseArchive(Mode mode, Path path, double timeScale) throws IOException {
+    this.mode = mode;
+    switch (mode) {
+      case RECORD -> {
+        this.channel =
+            FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.interceptors = List.of(new RecordingInterceptor(this));
+      }
+      case REPLAY -> {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        this.interceptors = List.of(new ReplayInterceptor(this, timeScale));
+        LOG.info("Replaying {} recorded GCP requests from {}.", index.size(), path);
+      }
+      default -> {
+        this.channel = null;
+        this.interceptors = List.of();
+      }
+    }
+  }
+
+  /**
+   * Opens the archive.
+   *
+   * @param mode how the archive is used.
+   * @param path location of the archive file, appended to when recording.
+   * @param timeScale factor applied to the recorded latencies when replaying: 1 replays in real
+   *     time, lower values accelerate the replay and 0 serves the responses instantly.
+   */
+  public static ResponseArchive open(Mode mode, Path path, double timeScale) throws IOException {
+    return new ResponseArchive(mode, path, timeScale);
+  }
+
+  /** The interceptors to be added to the GCP clients channels, none when the archive is off. */
+  public List<ClientInterceptor> interceptors() {
+    return interceptors;
+  }
+
+  public boolean replaying() {
+    return mode == Mode.REPLAY;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+  }
+
+  /** A recorded call, the response is empty when the call failed. */
+  record Recording(
+      String method,
+      ByteString request,
+      Optional<ByteString> response,
+      Status status,
+      long latencyMicros) {}
+
+  record Key(String method, ByteString request) {}
+
+  /** The recordings of a request, served in order. */
+  record Recordings(List<Recording> recordings, AtomicInteger served) {
+
+    Recording next() {
+      var next = served.getAndUpdate(index -> Math.min(index + 1, recordings.size() - 1));
+      return recordings.get(next);
+    }
+  }
+
+  /** Appends a call to the archive, failing to do so does not fail the call. */
+  void append(Recording recording) {
+    try {
+      var bytes = new ByteArrayOutputStream();
+      var output = CodedOutputStream.newInstance(bytes);
+      output.writeString(METHOD, recording.method());
+      output.writeBytes(REQUEST, recording.request());
+      if (recording.response().isPresent()) {
+        output.writeBytes(RESPONSE, recording.response().get());
+      }
+      output.writeInt32(STATUS_CODE, recording.status().getCode().value());
+      if (recording.status().getDescription() != null) {
+        output.writeString(STATUS_DESCRIPTION, recording.status().getDescription());
+      }
+      output.writeInt64(LATENCY_MICROS, recording.latencyMicros());
+      output.flush();
+      var record = ByteBuffer.allocate(Integer.BYTES + bytes.size());
+      record.putInt(bytes.size()).put(bytes.toByteArray()).flip();
+      lock.lock();
+      try {
+        while (record.hasRemaining()) {
+          channel.write(record);
+        }
+      } finally {
+        lock.unlock();
+      }
+    } catch (IOException ex) {
+      LOG.warn("Error while recording the response of {}.", recording.method(), ex);
+    }
+  }
+
+  /** The next recorded response of the request, if any. */
+  Optional<Recording> next(String method, Message request) {
+    return Optional.ofNullable(index.get(new Key(method, normalize(request).toByteString())))
+        .map(Recordings::next);
+  }
+
+  /** Indexes the records of the mapped archive, a truncated last record is ignored. */
+  void load(ByteBuffer buffer) throws IOException {
+    var recordings = new HashMap<Key, List<Recording>>();
+    while (buffer.remaining() > Integer.BYTES) {
+      var length = buffer.getInt();
+      if (length <= 0 || length > buffer.remaining()) {
+        LOG.warn("Ignoring truncated record at the end of the GCP responses archive.");
+        break;
+      }
+      var record = buffer.slice(buffer.position(), length);
+      buffer.position(buffer.position() + length);
+      var recording = read(record);
+      recordings
+          .computeIfAbsent(
+              new Key(recording.method(), recording.request()), key -> new ArrayList<>())
+          .add(recording);
+    }
+    recordings.forEach(
+        (key, list) -> index.put(key, new Recordings(List.copyOf(list), new AtomicInteger())));
+  }
+
+  /** Reads a record, its request and response alias the mapped archive instead of copying it. */
+  static Recording read(ByteBuffer record) throws IOException {
+    var input = CodedInputStream.newInstance(record);
+    input.enableAliasing(true);
+    var method = "";
+    var request = ByteString.EMPTY;
+    ByteString response = null;
+    var code = 0;
+    String description = null;
+    var latencyMicros = 0L;
+    for (var tag = input.readTag(); tag != 0; tag = input.readTag()) {
+      switch (tag >>> 3) {
+        case METHOD -> method = input.readString();
+        case REQUEST -> request = input.readBytes();
+        case RESPONSE -> response = input.readBytes();
+        case STATUS_CODE -> code = input.readInt32();
+        case STATUS_DESCRIPTION -> description = input.readString();
+        case LATENCY_MICROS -> latencyMicros = input.readInt64();
+        default -> input.skipField(tag);
+      }
+    }
+    return new Recording(
+        method,
+        request,
+        Optional.ofNullable(response),
+        Status.fromCodeValue(code).withDescription(description),
+        latencyMicros);
+  }
+
+  /** The request with all its timestamps cleared, including the ones of nested messages. */
+  static Message normalize(Message message) {
+    var builder = message.toBuilder();
+    for (var field : message.getAllFields().entrySet()) {
+      var descriptor = field.getKey();
+      if (descriptor.getJavaType() != Descriptors.FieldDescriptor.JavaType.MESSAGE
+          || descriptor.isRepeated()) {
+        continue;
+      }
+      if (descriptor.getMessageType().equals(Timestamp.getDescriptor())) {
+        builder.clearField(descriptor);
+      } else {
+        builder.setField(descriptor, normalize((Message) field.getValue()));
+      }
+    }
+    return builder.build();
+  }
+}
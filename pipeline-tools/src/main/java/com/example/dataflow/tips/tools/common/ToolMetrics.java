@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.common;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+
+/**
+ * Records the tool invocations: a latency timer with percentiles by tool and outcome, an error
+ * counter by tool and exception type, and the distribution of the result sizes by tool. Every
+ * invocation is also traced as a span, child of the MCP request one, which parents the spans of
+ * the GCP calls made by the tool.
+ */
+public class ToolMetrics {
+  static final String INVOCATIONS = "tools.invocations";
+  static final String ERRORS = "tools.errors";
+  static final String RESULT_SIZE = "tools.result.size";
+  static final String SPAN = "tools.call";
+
+  private final MeterRegistry registry;
+  private final ObservationRegistry observationRegistry;
+
+  public ToolMetrics(MeterRegistry registry, ObservationRegistry observationRegistry) {
+    this.registry = registry;
+    this.observationRegistry = observationRegistry;
+  }
+
+  /** Records a blocking tool invocation returning its result. */
+  public String record(String tool, Supplier<String> invocation) {
+    var sample = Timer.start(registry);
+    try {
+      var result =
+          observation(tool, observationRegistry.getCurrentObservation()).observe(invocation);
+      sample.stop(timer(tool, "success"));
+      resultSize(tool).record(result == null ? 0 : result.length());
+      return result;
+    } catch (RuntimeException ex) {
+      sample.stop(timer(tool, "error"));
+      error(tool, ex);
+      throw ex;
+    }
+  }
+
+  /**
+   * Records a non blocking tool invocation, timed from subscription until its serialized result is
+   * available.
+   */
+  public Mono<String> record(String tool, Mono<String> invocation) {
+    return Mono.defer(
+        () -> {
+          var sample = Timer.start(registry);
+          var observation =
+              observation(tool, observationRegistry.getCurrentObservation()).start();
+          return invocation
+              .doOnNext(
+                  result -> {
+                    sample.stop(timer(tool, "success"));
+                    resultSize(tool).record(result.length());
+                  })
+              .doOnError(
+                  ex -> {
+                    sample.stop(timer(tool, "error"));
+                    error(tool, ex);
+                    observation.error(ex);
+                  })
+              .doFinally(signal -> observation.stop())
+              .contextWrite(
+                  context -> context.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+  }
+
+  Observation observation(String tool, Observation parent) {
+    return Observation.createNotStarted(SPAN, observationRegistry)
+        .parentObservation(parent)
+        .lowCardinalityKeyValue("tool", tool);
+  }
+
+  Timer timer(String tool, String outcome) {
+    return Timer.builder(INVOCATIONS)
+        .description("Tool invocations latency.")
+        .tag("tool", tool)
+        .tag("outcome", outcome)
+        .publishPercentiles(0.5, 0.95, 0.99)
+        .publishPercentileHistogram()
+        .register(registry);
+  }
+
+  DistributionSummary resultSize(String tool) {
+    return DistributionSummary.builder(RESULT_SIZE)
+        .description("Size of the tool results, in characters.")
+        .baseUnit("characters")
+        .tag("tool", tool)
+        .publishPercentiles(0.5, 0.95, 0.99)
+        .register(registry);
+  }
+
+  void error(String tool, Throwable error) {
+    var cause = error.getCause() != null ? error.getCause() : error;
+    registry
+        .counter(ERRORS, "tool", tool, "exception", cause.getClass().getSimpleName())
+        .increment();
+  }
+}
@@ -15,9 +15,20 @@
  */
 package com.example.dataflow.tips.tools.common;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.StatusRuntimeException;
 import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /** */
 public class Utils {
@@ -44,7 +55,7 @@ public class Utils {
           result.toString());
       return result;
     } catch (Exception ex) {
-      String msg = String.format(errorMessage, args);
+      String msg = message(errorMessage, args, ex);
       LOG.error(msg, ex);
       throw new RuntimeException(msg, ex);
     }
@@ -60,9 +71,113 @@ public class Utils {
           result.toString());
       return result;
     } catch (Exception ex) {
-      String msg = String.format(errorMessage, args);
+      String msg = message(errorMessage, args, ex);
       LOG.error(msg, ex);
       throw new RuntimeException(msg, ex);
     }
   }
+
+  /**
+   * Reactive counterpart of {@link #execute(CheckedSupplier, String, Object...)}, errors raised
+   * while creating or executing the Mono are logged and mapped the same way.
+   */
+  public static <T> Mono<T> executeAsync(
+      CheckedSupplier<Mono<T>> toExecute, String errorMessage, Object... args) {
+    return Mono.defer(
+            () -> {
+              try {
+                return toExecute.apply();
+              } catch (Exception ex) {
+                return Mono.error(ex);
+              }
+            })
+        .doOnNext(
+            result ->
+                LOG.debug(
+                    "Completed execution with params {}, result: {}",
+                    Arrays.toString(args),
+                    result.toString()))
+        .onErrorMap(
+            ex -> {
+              String msg = message(errorMessage, args, ex);
+              LOG.error(msg, ex);
+              return new RuntimeException(msg, ex);
+            });
+  }
+
+  /**
+   * The error message followed by the reason of the failure, so the model can tell a missing job
+   * from an unavailable API and act accordingly.
+   */
+  static String message(String errorMessage, Object[] args, Throwable error) {
+    return String.format(errorMessage, args) + " Reason: " + reason(error);
+  }
+
+  /** The gRPC status of the failed GCP call if any, the message of the root cause otherwise. */
+  static String reason(Throwable error) {
+    var cause = error;
+    while (true) {
+      if (cause instanceof StatusRuntimeException grpc) {
+        return Optional.ofNullable(grpc.getStatus().getDescription())
+            .map(description -> grpc.getStatus().getCode() + ": " + description)
+            .orElse(grpc.getStatus().getCode().toString());
+      }
+      if (cause.getCause() == null || cause.getCause() == cause) {
+        return Optional.ofNullable(cause.getMessage()).orElse(cause.getClass().getSimpleName());
+      }
+      cause = cause.getCause();
+    }
+  }
+
+  /**
+   * Creates a Mono that issues the GAX call on subscription, cancelling the Mono cancels the
+   * underlying call.
+   */
+  public static <T> Mono<T> toMono(Supplier<ApiFuture<T>> call) {
+    return Mono.fromFuture(() -> toCompletableFuture(call.get()));
+  }
+
+  /**
+   * Retrieves all the pages of a paginated GAX call, requesting the next page only when the
+   * previous one completed and the subscriber asks for more.
+   *
+   * @param call issues the call for the provided page token, empty for the first page.
+   * @param nextPageToken extracts the next page token from a response, empty for the last page.
+   * @return a Flux with all the responses.
+   */
+  public static <T> Flux<T> pages(
+      Function<String, ApiFuture<T>> call, Function<T, String> nextPageToken) {
+    return toMono(() -> call.apply(""))
+        .expand(
+            response -> {
+              var token = nextPageToken.apply(response);
+              return token.isEmpty() ? Mono.empty() : toMono(() -> call.apply(token));
+            });
+  }
+
+  /** Bridges a GAX future into a completable future, without blocking any thread. */
+  public static <T> CompletableFuture<T> toCompletableFuture(ApiFuture<T> future) {
+    var result = new CompletableFuture<T>();
+    ApiFutures.addCallback(
+        future,
+        new ApiFutureCallback<T>() {
+          @Override
+          public void onFailure(Throwable t) {
+            result.completeExceptionally(t);
+          }
+
+          @Override
+          public void onSuccess(T value) {
+            result.complete(value);
+          }
+        },
+        MoreExecutors.directExecutor());
+    result.whenComplete(
+        (value, error) -> {
+          if (result.isCancelled()) {
+            future.cancel(true);
+          }
+        });
+    return result;
+  }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the composite job analysis, every part has its own deadline and a part that misses
+ * it is reported as failed without failing the whole analysis.
+ *
+ * @param topologyTimeout deadline to retrieve the job topology.
+ * @param metricsTimeout deadline to retrieve the job metrics.
+ * @param cpuTimeout deadline to retrieve the workers CPU utilization.
+ * @param logsTimeout deadline to retrieve and cluster the job logs.
+ * @param metricsWindow how far back to retrieve the job metrics from.
+ * @param cpuWindow how far back to analyze the workers CPU utilization.
+ * @param logsWindow how far back to retrieve the job logs from.
+ * @param maxLogMessages maximum amount of log messages to cluster.
+ */
+@ConfigurationProperties(prefix = "tools.analysis")
+public record AnalysisProperties(
+    @DefaultValue("20s") Duration topologyTimeout,
+    @DefaultValue("20s") Duration metricsTimeout,
+    @DefaultValue("15s") Duration cpuTimeout,
+    @DefaultValue("25s") Duration logsTimeout,
+    @DefaultValue("1h") Duration metricsWindow,
+    @DefaultValue("5m") Duration cpuWindow,
+    @DefaultValue("1h") Duration logsWindow,
+    @DefaultValue("5000") int maxLogMessages) {}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.config;
+
+import com.example.dataflow.tips.tools.common.GcpTransport;
+import com.example.dataflow.tips.tools.common.ResponseArchive;
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings of the GCP API clients. By default the clients connect to the Google endpoints with the
+ * application default credentials, an endpoint can be provided to use emulators or the load test
+ * stand-ins instead.
+ *
+ * @param endpoint host and port used by all the clients instead of their default endpoints.
+ * @param plaintext when true the provided endpoint is reached without TLS nor credentials.
+ * @param archive recording and replay of the clients responses.
+ * @param transport channels, executor and credentials shared by the clients.
+ */
+@ConfigurationProperties(prefix = "tools.gcp")
+public record GcpClientProperties(
+    String endpoint,
+    @DefaultValue("false") boolean plaintext,
+    @DefaultValue Archive archive,
+    @DefaultValue Transport transport) {
+
+  /**
+   * Settings of the GCP responses archive, see {@link ResponseArchive}.
+   *
+   * @param mode off, record to append the responses to the archive, or replay to serve the clients
+   *     from it without reaching GCP.
+   * @param path location of the archive file.
+   * @param timeScale factor applied to the recorded latencies when replaying: 1 replays in real
+   *     time, 0.1 ten times faster and 0 serves the responses instantly.
+   */
+  public record Archive(
+      @DefaultValue("off") ResponseArchive.Mode mode,
+      @DefaultValue("gcp-responses.archive") String path,
+      @DefaultValue("1") double timeScale) {}
+
+  /**
+   * Settings of the transport shared by the GCP clients, see {@link GcpTransport}.
+   *
+   * @param channelPoolSize number of gRPC channels, each one an HTTP/2 connection, of every client.
+   * @param keepAliveTime interval of the pings keeping idle connections open, Google front ends
+   *     close the connections pinging more often than every 5 minutes without calls.
+   * @param keepAliveTimeout time waited for a ping acknowledgement before closing the connection.
+   * @param keepAliveWithoutCalls whether to keep pinging connections without calls in flight.
+   * @param flowControlWindow initial HTTP/2 flow control window, large windows avoid stalling the
+   *     transfer of big responses on high latency links.
+   * @param maxInboundMessageSize largest accepted response, full job views of big pipelines exceed
+   *     the gRPC default of 4MB.
+   * @param executorThreads threads of the executor shared by the clients, 0 to size it from the
+   *     available processors.
+   * @param warmUp eager connection of the channels at startup.
+   */
+  public record Transport(
+      @DefaultValue("2") int channelPoolSize,
+      @DefaultValue("5m") Duration keepAliveTime,
+      @DefaultValue("20s") Duration keepAliveTimeout,
+      @DefaultValue("false") boolean keepAliveWithoutCalls,
+      @DefaultValue("8MB") DataSize flowControlWindow,
+      @DefaultValue("64MB") DataSize maxInboundMessageSize,
+      @DefaultValue("0") int executorThreads,
+      @DefaultValue WarmUp warmUp) {}
+
+  /**
+   * Settings of the transport warm up, during which the tools server is not ready.
+   *
+   * @param enabled when false the channels connect on their first call.
+   * @param timeout time after which the server becomes ready even if the warm up did not complete.
+   */
+  public record WarmUp(
+      @DefaultValue("true") boolean enabled, @DefaultValue("30s") Duration timeout) {}
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings for the cache of job details.
+ *
+ * @param maximumWeight maximum serialized size of the jobs kept in the cache before evicting, full
+ *     views of large pipelines weigh several megabytes each.
+ * @param activeJobTtl how long the details of a non terminal job are reused.
+ * @param terminalJobTtl how long the details of a terminal job are reused, terminal jobs do not
+ *     change so this is only a safety net for the size based eviction.
+ */
+@ConfigurationProperties(prefix = "tools.cache.jobs")
+public record JobCacheProperties(
+    @DefaultValue("256MB") DataSize maximumWeight,
+    @DefaultValue("15s") Duration activeJobTtl,
+    @DefaultValue("7d") Duration terminalJobTtl) {}
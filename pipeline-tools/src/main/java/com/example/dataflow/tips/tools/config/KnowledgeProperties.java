@@ -16,8 +16,10 @@
 package com.example.dataflow.tips.tools.config;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /** */
@@ -30,11 +32,15 @@ public class KnowledgeProperties {
 
   private final Map<String, List<String>> categories;
   private final Map<String, List<String>> entries;
+  private final Map<String, List<String>> aliases;
 
   public KnowledgeProperties(
-      Map<String, List<String>> categories, Map<String, List<String>> entries) {
+      Map<String, List<String>> categories,
+      Map<String, List<String>> entries,
+      Map<String, List<String>> aliases) {
     this.categories = categories;
     this.entries = entries;
+    this.aliases = Optional.ofNullable(aliases).orElse(Map.of());
   }
 
   public List<String> bestPractice(String category) {
@@ -47,5 +53,21 @@ public class KnowledgeProperties {
         categories.get(Categories.Sinks.name().toLowerCase()));
   }
 
+  /**
+   * Returns the categories that match the provided IO description, a category matches when its
+   * name or any of its aliases is contained in the description, ignoring case.
+   */
+  public List<String> matchingCategories(List<String> candidates, String ioDescription) {
+    var description = ioDescription.toLowerCase(Locale.ROOT);
+    return Optional.ofNullable(candidates).orElse(List.of()).stream()
+        .filter(
+            category ->
+                Stream.concat(
+                        Stream.of(category),
+                        Optional.ofNullable(aliases.get(category)).orElse(List.of()).stream())
+                    .anyMatch(alias -> description.contains(alias.toLowerCase(Locale.ROOT))))
+        .toList();
+  }
+
   public record IoCategories(List<String> sources, List<String> sinks) {}
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the per job metric values kept by the incremental metrics polling.
+ *
+ * @param maximumJobs maximum amount of jobs with known metric values before evicting.
+ * @param idleTtl how long the values are kept after the last poll for their job.
+ */
+@ConfigurationProperties(prefix = "tools.cache.metrics")
+public record MetricsCursorProperties(
+    @DefaultValue("500") long maximumJobs, @DefaultValue("30m") Duration idleTtl) {}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.config;
+
+import java.time.Duration;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the project wide job discovery across regions.
+ *
+ * @param locations the regions queried when looking for a project's jobs.
+ * @param regionTimeout maximum time to wait for each page of jobs of a region, a region failing to
+ *     list a page is reported with the reason. Must be shorter than the deadline.
+ * @param deadline maximum time to wait for all the regions, after it partial results are returned
+ *     and the regions still listing are reported as timed out.
+ * @param maxJobsPerRegion maximum amount of jobs retrieved from each region.
+ */
+@ConfigurationProperties(prefix = "tools.regions")
+public record RegionsProperties(
+    @DefaultValue({"us-central1", "us-east1", "us-west1", "europe-west1", "asia-east1"})
+        List<String> locations,
+    @DefaultValue("10s") Duration regionTimeout,
+    @DefaultValue("15s") Duration deadline,
+    @DefaultValue("50") int maxJobsPerRegion) {
+
+  public RegionsProperties {
+    if (regionTimeout.compareTo(deadline) >= 0) {
+      throw new IllegalArgumentException(
+          String.format(
+              "The region timeout (%s) must be shorter than the fan out deadline (%s).",
+              regionTimeout, deadline));
+    }
+  }
+}
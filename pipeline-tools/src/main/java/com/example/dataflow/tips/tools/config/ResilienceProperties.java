@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.config;
+
+import io.grpc.Status;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the resilience of the tools against slow or failing GCP APIs.
+ *
+ * @param enabled whether the deadlines, retries, hedged requests and circuit breakers are applied.
+ * @param deadlines time budgets of the tools and of every GCP call attempt.
+ * @param retry retries of the failed GCP reads.
+ * @param hedging second requests sent when a GCP read is slower than usual.
+ * @param circuitBreaker fail fast of the calls to a GCP API failing most of the time.
+ */
+@ConfigurationProperties(prefix = "tools.resilience")
+public record ResilienceProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue Deadlines deadlines,
+    @DefaultValue Retry retry,
+    @DefaultValue Hedging hedging,
+    @DefaultValue CircuitBreaker circuitBreaker) {
+
+  /**
+   * Time budgets, the GCP calls made by a tool share its budget.
+   *
+   * @param tool default budget of a tool invocation.
+   * @param tools budgets of specific tools, by tool name.
+   * @param attempt maximum duration of a single GCP call attempt.
+   */
+  public record Deadlines(
+      @DefaultValue("30s") Duration tool,
+      Map<String, Duration> tools,
+      @DefaultValue("10s") Duration attempt) {
+
+    /** The budget of the tool. */
+    public Duration budget(String name) {
+      return Optional.ofNullable(tools).map(budgets -> budgets.get(name)).orElse(tool);
+    }
+  }
+
+  /**
+   * Retries of the GCP reads, waiting an exponential backoff with a random half of it as jitter.
+   *
+   * @param maxAttempts maximum attempts of a call, including the hedged ones.
+   * @param initialBackoff wait before the first retry.
+   * @param maxBackoff maximum wait between retries.
+   * @param multiplier growth of the wait between consecutive retries.
+   * @param codes status codes of the failed attempts that are retried.
+   */
+  public record Retry(
+      @DefaultValue("3") int maxAttempts,
+      @DefaultValue("100ms") Duration initialBackoff,
+      @DefaultValue("2s") Duration maxBackoff,
+      @DefaultValue("2") double multiplier,
+      @DefaultValue({"UNAVAILABLE", "RESOURCE_EXHAUSTED", "DEADLINE_EXCEEDED", "INTERNAL"})
+          List<Status.Code> codes) {}
+
+  /**
+   * Hedged requests: when a call did not complete after the usual latency of its method, a second
+   * identical request is sent and the first response is used.
+   *
+   * @param enabled whether hedged requests are sent.
+   * @param methods the gRPC methods hedged, by name.
+   * @param percentile latency percentile of the method after which the second request is sent.
+   * @param initialDelay delay used until the method latency is known.
+   * @param minDelay minimum delay before sending the second request.
+   * @param minSamples amount of calls needed to use the method latency.
+   */
+  public record Hedging(
+      @DefaultValue("true") boolean enabled,
+      @DefaultValue({"GetJob", "ListTimeSeries"}) List<String> methods,
+      @DefaultValue("0.95") double percentile,
+      @DefaultValue("1s") Duration initialDelay,
+      @DefaultValue("50ms") Duration minDelay,
+      @DefaultValue("20") int minSamples) {}
+
+  /**
+   * Per GCP API circuit breakers, opened when most of the recent calls failed.
+   *
+   * @param windowSize amount of recent calls considered.
+   * @param minimumCalls amount of calls needed to evaluate the failure rate.
+   * @param failureRate failure rate, from 0 to 1, that opens the circuit.
+   * @param openDuration time the calls fail fast before probing the API again.
+   * @param halfOpenCalls amount of probe calls that have to succeed to close the circuit.
+   */
+  public record CircuitBreaker(
+      @DefaultValue("50") int windowSize,
+      @DefaultValue("20") int minimumCalls,
+      @DefaultValue("0.5") double failureRate,
+      @DefaultValue("30s") Duration openDuration,
+      @DefaultValue("3") int halfOpenCalls) {}
+}
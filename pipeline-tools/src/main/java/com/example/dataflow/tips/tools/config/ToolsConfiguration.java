@@ -15,54 +15,309 @@
  */
 package com.example.dataflow.tips.tools.config;
 
+import static com.example.dataflow.tips.tools.common.ReactiveTools.integer;
+import static com.example.dataflow.tips.tools.common.ReactiveTools.string;
+
+import com.example.dataflow.tips.tools.common.GcpTransport;
+import com.example.dataflow.tips.tools.common.ReactiveTools;
+import com.example.dataflow.tips.tools.common.Resilience;
+import com.example.dataflow.tips.tools.common.ResponseArchive;
+import com.example.dataflow.tips.tools.common.ToolMetrics;
+import com.example.dataflow.tips.tools.services.JobAnalysisService;
 import com.example.dataflow.tips.tools.services.KnowledgeService;
 import com.example.dataflow.tips.tools.services.LogMessagesService;
 import com.example.dataflow.tips.tools.services.PipelineMetricsService;
 import com.example.dataflow.tips.tools.services.PipelineTopologyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.gax.grpc.InstantiatingGrpcChannelProvider;
+import com.google.api.gax.rpc.ClientSettings;
 import com.google.cloud.monitoring.v3.MetricServiceClient;
+import com.google.cloud.monitoring.v3.MetricServiceSettings;
 import com.google.dataflow.v1beta3.JobsV1Beta3Client;
+import com.google.dataflow.v1beta3.JobsV1Beta3Settings;
 import com.google.dataflow.v1beta3.MessagesV1Beta3Client;
+import com.google.dataflow.v1beta3.MessagesV1Beta3Settings;
 import com.google.dataflow.v1beta3.MetricsV1Beta3Client;
+import com.google.dataflow.v1beta3.MetricsV1Beta3Settings;
+import io.grpc.ClientInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.grpc.ObservationGrpcClientInterceptor;
+import io.micrometer.observation.ObservationRegistry;
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.opentelemetry.exporter.logging.otlp.OtlpJsonLoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
 import java.io.IOException;
-import org.springframework.ai.tool.ToolCallbackProvider;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
 
 /** */
 @Configuration
-@EnableConfigurationProperties({KnowledgeProperties.class})
+@EnableConfigurationProperties({
+  KnowledgeProperties.class,
+  JobCacheProperties.class,
+  MetricsCursorProperties.class,
+  RegionsProperties.class,
+  AnalysisProperties.class,
+  GcpClientProperties.class,
+  ResilienceProperties.class
+})
+@ImportRuntimeHints(ToolsRuntimeHints.class)
 public class ToolsConfiguration {
+  static final String FINGERPRINT = "Job Fingerprint";
 
+  /**
+   * Registers the tools as MCP async tool specifications. Tools with a non blocking implementation
+   * do not hold a thread while their GCP calls are in flight, the rest run on a bounded elastic
+   * thread as done by the default MCP server configuration. Every tool invocation is measured and
+   * bounded by its time budget.
+   */
   @Bean
-  public ToolCallbackProvider pipelineTopology(
+  public List<McpServerFeatures.AsyncToolSpecification> pipelineTools(
       PipelineTopologyService topologyService,
       PipelineMetricsService metricsService,
       KnowledgeService knowService,
-      LogMessagesService logsService) {
-    return MethodToolCallbackProvider.builder()
-        .toolObjects(topologyService, metricsService, knowService, logsService)
-        .build();
+      LogMessagesService logsService,
+      JobAnalysisService analysisService,
+      ObjectMapper objectMapper,
+      MeterRegistry meterRegistry,
+      ObservationRegistry observationRegistry,
+      Resilience resilience) {
+    return ReactiveTools.specifications(
+        MethodToolCallbackProvider.builder()
+            .toolObjects(
+                topologyService, metricsService, knowService, logsService, analysisService)
+            .build()
+            .getToolCallbacks(),
+        Map.of(
+            "Job Details",
+            args ->
+                topologyService.jobDetailsAsync(
+                    string(args, "projectId"), string(args, "regionId"), string(args, "jobId")),
+            "Job metrics",
+            args ->
+                metricsService.allJobMetricsAsync(
+                    string(args, "projectId"), string(args, "regionId"), string(args, "jobId")),
+            "Job Workers CPU metrics",
+            args ->
+                metricsService.workerCpuUtilizationAsync(
+                    string(args, "projectId"), string(args, "dataflowJobId")),
+            "Log Messages Per Level",
+            args ->
+                logsService.logMessagesAsync(
+                    string(args, "projectId"),
+                    string(args, "regionId"),
+                    string(args, "jobId"),
+                    string(args, "logLevel"),
+                    integer(args, "secondsAgo")),
+            "Analyze Job",
+            args ->
+                analysisService.analyzeJobAsync(
+                    string(args, "projectId"),
+                    string(args, "regionId"),
+                    string(args, "jobId"),
+                    string(args, "logLevel"))),
+        objectMapper,
+        new ToolMetrics(meterRegistry, observationRegistry),
+        resilience);
+  }
+
+  /**
+   * Serves the job fingerprints the agent keys its cached answers on, outside of MCP so looking up
+   * an answer does not take a generation's client lease. Unavailable fingerprints get a 503 and the
+   * agent bypasses its cache.
+   */
+  @Bean
+  public RouterFunction<ServerResponse> fingerprintRoute(
+      PipelineMetricsService metricsService, Resilience resilience) {
+    return RouterFunctions.route(
+        RequestPredicates.GET("/jobs/{projectId}/{regionId}/{jobId}/fingerprint"),
+        request ->
+            resilience
+                .withinBudget(
+                    FINGERPRINT,
+                    metricsService.jobFingerprint(
+                        request.pathVariable("projectId"),
+                        request.pathVariable("regionId"),
+                        request.pathVariable("jobId")))
+                .flatMap(fingerprint -> ServerResponse.ok().bodyValue(fingerprint))
+                .onErrorResume(
+                    ex ->
+                        ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .bodyValue(String.valueOf(ex.getMessage()))));
+  }
+
+  /** Deadlines, retries, hedged requests and circuit breakers of the GCP calls. */
+  @Bean
+  public Resilience resilience(ResilienceProperties properties, MeterRegistry meterRegistry) {
+    return new Resilience(properties, meterRegistry);
+  }
+
+  @Bean
+  public JobsV1Beta3Client jobsClient(
+      GcpTransport transport,
+      ResponseArchive responseArchive,
+      Resilience resilience,
+      ObservationRegistry observationRegistry)
+      throws IOException {
+    return JobsV1Beta3Client.create(
+        channel(
+                JobsV1Beta3Settings.newBuilder()
+                    .applyToAllUnaryMethods(resilience::withoutGaxRetries),
+                JobsV1Beta3Settings.defaultGrpcTransportProviderBuilder(),
+                transport,
+                responseArchive,
+                resilience.interceptors("Dataflow Jobs"),
+                observationRegistry)
+            .build());
+  }
+
+  @Bean
+  public MetricsV1Beta3Client metricsClient(
+      GcpTransport transport,
+      ResponseArchive responseArchive,
+      Resilience resilience,
+      ObservationRegistry observationRegistry)
+      throws IOException {
+    return MetricsV1Beta3Client.create(
+        channel(
+                MetricsV1Beta3Settings.newBuilder()
+                    .applyToAllUnaryMethods(resilience::withoutGaxRetries),
+                MetricsV1Beta3Settings.defaultGrpcTransportProviderBuilder(),
+                transport,
+                responseArchive,
+                resilience.interceptors("Dataflow Metrics"),
+                observationRegistry)
+            .build());
   }
 
   @Bean
-  public JobsV1Beta3Client jobsClient() throws IOException {
-    return JobsV1Beta3Client.create();
+  public MessagesV1Beta3Client logsClient(
+      GcpTransport transport,
+      ResponseArchive responseArchive,
+      Resilience resilience,
+      ObservationRegistry observationRegistry)
+      throws IOException {
+    return MessagesV1Beta3Client.create(
+        channel(
+                MessagesV1Beta3Settings.newBuilder()
+                    .applyToAllUnaryMethods(resilience::withoutGaxRetries),
+                MessagesV1Beta3Settings.defaultGrpcTransportProviderBuilder(),
+                transport,
+                responseArchive,
+                resilience.interceptors("Dataflow Messages"),
+                observationRegistry)
+            .build());
   }
 
   @Bean
-  public MetricsV1Beta3Client metricsClient() throws IOException {
-    return MetricsV1Beta3Client.create();
+  public MetricServiceClient gcpMetricsClient(
+      GcpTransport transport,
+      ResponseArchive responseArchive,
+      Resilience resilience,
+      ObservationRegistry observationRegistry)
+      throws IOException {
+    return MetricServiceClient.create(
+        channel(
+                MetricServiceSettings.newBuilder()
+                    .applyToAllUnaryMethods(resilience::withoutGaxRetries),
+                MetricServiceSettings.defaultGrpcTransportProviderBuilder(),
+                transport,
+                responseArchive,
+                resilience.interceptors("Cloud Monitoring"),
+                observationRegistry)
+            .build());
   }
 
+  /** Records the GCP responses, or replays them instead of reaching GCP, when configured. */
   @Bean
-  public MessagesV1Beta3Client logsClient() throws IOException {
-    return MessagesV1Beta3Client.create();
+  public ResponseArchive responseArchive(GcpClientProperties gcpProperties) throws IOException {
+    var archive = gcpProperties.archive();
+    return ResponseArchive.open(archive.mode(), Path.of(archive.path()), archive.timeScale());
+  }
+
+  /**
+   * Shared transport of the GCP clients, warmed up once the application started. The tools server
+   * is not ready until the warm up is over.
+   */
+  @Bean
+  public GcpTransport gcpTransport(
+      GcpClientProperties gcpProperties, ResponseArchive responseArchive, MeterRegistry registry)
+      throws IOException {
+    return GcpTransport.create(gcpProperties, responseArchive.replaying(), registry);
+  }
+
+  @Bean
+  public ApplicationListener<ApplicationStartedEvent> gcpTransportWarmUp(GcpTransport transport) {
+    return event -> transport.warmUp();
+  }
+
+  @Bean
+  public HealthIndicator gcpTransportHealthIndicator(GcpTransport transport) {
+    return () ->
+        (transport.ready() ? Health.up() : Health.outOfService())
+            .withDetails(transport.details())
+            .build();
+  }
+
+  /**
+   * Sets the client's transport, adding a span for every gRPC call issued through it, made
+   * resilient by the provided interceptors.
+   */
+  static <B extends ClientSettings.Builder<?, B>> B channel(
+      B settings,
+      InstantiatingGrpcChannelProvider.Builder channelProvider,
+      GcpTransport transport,
+      ResponseArchive responseArchive,
+      List<ClientInterceptor> resilience,
+      ObservationRegistry observationRegistry) {
+    // every resilient call attempt is recorded or replayed
+    return transport
+        .configure(settings, channelProvider)
+        .setTransportChannelProvider(
+            traced(
+                channelProvider,
+                Stream.concat(responseArchive.interceptors().stream(), resilience.stream())
+                    .toList(),
+                observationRegistry));
+  }
+
+  /**
+   * Adds a span for every gRPC call issued through the channel, the span includes the provided
+   * interceptors.
+   */
+  static InstantiatingGrpcChannelProvider traced(
+      InstantiatingGrpcChannelProvider.Builder channelProvider,
+      List<ClientInterceptor> interceptors,
+      ObservationRegistry observationRegistry) {
+    // the last interceptor is the first one called
+    var chain =
+        Stream.concat(
+                interceptors.stream(),
+                Stream.of(new ObservationGrpcClientInterceptor(observationRegistry)))
+            .toList();
+    return channelProvider.setInterceptorProvider(() -> chain).build();
   }
 
   @Bean
-  public MetricServiceClient gcpMetricsClient() throws IOException {
-    return MetricServiceClient.create();
+  @Profile("trace-file")
+  public SpanExporter fileSpanExporter() {
+    return OtlpJsonLoggingSpanExporter.create();
   }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.config;
+
+import com.example.dataflow.tips.tools.services.JobAnalysisService;
+import com.example.dataflow.tips.tools.services.KnowledgeService;
+import com.example.dataflow.tips.tools.services.LogMessagesService;
+import com.example.dataflow.tips.tools.services.PipelineMetricsService;
+import com.example.dataflow.tips.tools.services.PipelineTopologyService;
+import com.google.dataflow.v1beta3.GetJobMetricsRequest;
+import com.google.dataflow.v1beta3.GetJobRequest;
+import com.google.dataflow.v1beta3.Job;
+import com.google.dataflow.v1beta3.JobMetrics;
+import com.google.dataflow.v1beta3.ListJobMessagesRequest;
+import com.google.dataflow.v1beta3.ListJobMessagesResponse;
+import com.google.dataflow.v1beta3.ListJobsRequest;
+import com.google.dataflow.v1beta3.ListJobsResponse;
+import com.google.monitoring.v3.ListTimeSeriesRequest;
+import com.google.monitoring.v3.ListTimeSeriesResponse;
+import com.google.protobuf.Message;
+import com.google.protobuf.ProtocolMessageEnum;
+import io.modelcontextprotocol.spec.McpSchema;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.ReflectionHints;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Hints of the native image of the tools server, covering what is only reached through reflection:
+ * the {@code @Tool} methods and the records they return, serialized by Jackson, the protobuf
+ * messages of the GCP APIs, whose field accessors are looked up reflectively when printed or
+ * traversed, and the MCP schema types exchanged with the agent.
+ */
+public class ToolsRuntimeHints implements RuntimeHintsRegistrar {
+  static final List<Class<?>> TOOL_SERVICES =
+      List.of(
+          PipelineTopologyService.class,
+          PipelineMetricsService.class,
+          KnowledgeService.class,
+          LogMessagesService.class,
+          JobAnalysisService.class);
+
+  /** Requests and responses of the GCP calls, their nested messages are discovered from them. */
+  static final List<Class<? extends Message>> GCP_MESSAGES =
+      List.of(
+          GetJobRequest.class,
+          Job.class,
+          ListJobsRequest.class,
+          ListJobsResponse.class,
+          GetJobMetricsRequest.class,
+          JobMetrics.class,
+          ListJobMessagesRequest.class,
+          ListJobMessagesResponse.class,
+          ListTimeSeriesRequest.class,
+          ListTimeSeriesResponse.class);
+
+  private final BindingReflectionHintsRegistrar bindings = new BindingReflectionHintsRegistrar();
+
+  @Override
+  public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+    var reflection = hints.reflection();
+    TOOL_SERVICES.forEach(
+        service -> {
+          reflection.registerType(service, MemberCategory.INVOKE_PUBLIC_METHODS);
+          Stream.of(service.getMethods())
+              .filter(method -> method.isAnnotationPresent(Tool.class))
+              .forEach(
+                  method ->
+                      bindings.registerReflectionHints(reflection, method.getGenericReturnType()));
+        });
+    // also returned by the non blocking implementations of the tools and the fingerprint route
+    bindings.registerReflectionHints(
+        reflection,
+        PipelineTopologyService.Pipeline.class,
+        PipelineTopologyService.Transform.class,
+        PipelineMetricsService.WorkerCpuUtilization.class,
+        PipelineMetricsService.JobFingerprint.class,
+        JobAnalysisService.JobAnalysis.class);
+
+    var visited = new HashSet<Class<?>>();
+    GCP_MESSAGES.forEach(message -> registerProtobuf(reflection, message, visited));
+
+    registerNested(reflection, McpSchema.class);
+
+    hints.resources().registerPattern("knowledge.yaml");
+  }
+
+  /**
+   * Registers the message or enum and, for messages, their builder and the types of their fields.
+   */
+  static void registerProtobuf(ReflectionHints reflection, Type type, Set<Class<?>> visited) {
+    if (type instanceof ParameterizedType parameterized) {
+      Stream.of(parameterized.getActualTypeArguments())
+          .forEach(argument -> registerProtobuf(reflection, argument, visited));
+      return;
+    }
+    if (!(type instanceof Class<?> protobufType) || !visited.add(protobufType)) {
+      return;
+    }
+    if (ProtocolMessageEnum.class.isAssignableFrom(protobufType)) {
+      reflection.registerType(protobufType, MemberCategory.INVOKE_PUBLIC_METHODS);
+    } else if (Message.class.isAssignableFrom(protobufType)) {
+      reflection.registerType(
+          protobufType, MemberCategory.INVOKE_PUBLIC_METHODS, MemberCategory.DECLARED_FIELDS);
+      Stream.of(protobufType.getDeclaredClasses())
+          .filter(Message.Builder.class::isAssignableFrom)
+          .forEach(
+              builder ->
+                  reflection.registerType(
+                      builder,
+                      MemberCategory.INVOKE_PUBLIC_METHODS,
+                      MemberCategory.DECLARED_FIELDS));
+      Stream.of(protobufType.getDeclaredMethods())
+          .filter(method -> Modifier.isPublic(method.getModifiers()))
+          .forEach(method -> registerProtobuf(reflection, method.getGenericReturnType(), visited));
+    }
+  }
+
+  /** Registers the types nested in the provided one for their Jackson (de)serialization. */
+  void registerNested(ReflectionHints reflection, Class<?> type) {
+    Stream.of(type.getDeclaredClasses())
+        .filter(nested -> Modifier.isPublic(nested.getModifiers()))
+        .forEach(
+            nested -> {
+              bindings.registerReflectionHints(reflection, nested);
+              registerNested(reflection, nested);
+            });
+  }
+}
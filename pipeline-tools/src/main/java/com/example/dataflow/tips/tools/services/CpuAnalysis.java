@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import com.example.dataflow.tips.tools.services.PipelineMetricsService.WorkerCpuUtilization;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.google.monitoring.v3.TimeSeries;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the CPU utilization statistics of a job's workers from the monitoring time series. The
+ * values are accumulated in primitive arrays and only the summary, plus the raw points when
+ * requested, is materialized as objects.
+ */
+public final class CpuAnalysis {
+  private static final String INSTANCE_NAME_LABEL = "instance_name";
+
+  private final List<String> workers = new ArrayList<>();
+  private double[] workerSums = new double[16];
+  private double[] workerMaxes = new double[16];
+  private int[] workerCounts = new int[16];
+  private double[] values = new double[256];
+  private int valueCount = 0;
+  private final List<WorkerCpuUtilization> points;
+
+  CpuAnalysis(boolean keepPoints) {
+    this.points = keepPoints ? new ArrayList<>() : null;
+  }
+
+  /**
+   * Accumulates the time series points, utilization values are converted to percentages.
+   *
+   * @param timeSeries the CPU utilization time series, one per worker.
+   * @param keepPoints whether to keep the raw points for the result.
+   * @return the analysis with the accumulated values.
+   */
+  public static CpuAnalysis of(Iterable<TimeSeries> timeSeries, boolean keepPoints) {
+    var analysis = new CpuAnalysis(keepPoints);
+    timeSeries.forEach(analysis::add);
+    return analysis;
+  }
+
+  void add(TimeSeries series) {
+    var worker = workers.size();
+    var name = series.getMetric().getLabelsMap().get(INSTANCE_NAME_LABEL);
+    workers.add(name);
+    if (worker == workerSums.length) {
+      workerSums = Arrays.copyOf(workerSums, worker * 2);
+      workerMaxes = Arrays.copyOf(workerMaxes, worker * 2);
+      workerCounts = Arrays.copyOf(workerCounts, worker * 2);
+    }
+    for (var point : series.getPointsList()) {
+      var utilization = point.getValue().getDoubleValue() * 100;
+      if (valueCount == values.length) {
+        values = Arrays.copyOf(values, valueCount * 2);
+      }
+      values[valueCount++] = utilization;
+      workerSums[worker] += utilization;
+      workerMaxes[worker] =
+          workerCounts[worker] == 0 ? utilization : Math.max(workerMaxes[worker], utilization);
+      workerCounts[worker]++;
+      if (points != null) {
+        points.add(
+            new WorkerCpuUtilization(
+                name,
+                utilization,
+                Instant.ofEpochSecond(point.getInterval().getStartTime().getSeconds())));
+      }
+    }
+  }
+
+  /**
+   * Summarizes the accumulated values.
+   *
+   * @param idleThreshold workers with a mean utilization under this percentage are counted as idle.
+   * @param saturatedThreshold workers with a mean utilization over this percentage are counted as
+   *     saturated.
+   * @param workerLimit amount of busiest and idlest workers to include.
+   * @return the summary.
+   */
+  public Summary summary(double idleThreshold, double saturatedThreshold, int workerLimit) {
+    var sorted = Arrays.copyOf(values, valueCount);
+    Arrays.sort(sorted);
+    var means =
+        IntStream.range(0, workers.size())
+            .filter(worker -> workerCounts[worker] > 0)
+            .mapToObj(
+                worker ->
+                    new WorkerSummary(
+                        workers.get(worker),
+                        workerSums[worker] / workerCounts[worker],
+                        workerMaxes[worker]))
+            .sorted(Comparator.comparingDouble(WorkerSummary::mean).reversed())
+            .toList();
+    var sortedMeans = means.stream().mapToDouble(WorkerSummary::mean).sorted().toArray();
+    var medianMean = percentile(sortedMeans, 50);
+    return new Summary(
+        workers.size(),
+        valueCount,
+        percentile(sorted, 50),
+        percentile(sorted, 90),
+        percentile(sorted, 99),
+        valueCount == 0 ? 0 : sorted[valueCount - 1],
+        valueCount == 0 ? 0 : Arrays.stream(sorted).sum() / valueCount,
+        medianMean == 0 ? 0 : sortedMeans[sortedMeans.length - 1] / medianMean,
+        (int) means.stream().filter(worker -> worker.mean() < idleThreshold).count(),
+        (int) means.stream().filter(worker -> worker.mean() > saturatedThreshold).count(),
+        means.stream().limit(workerLimit).toList(),
+        means.reversed().stream().limit(workerLimit).toList(),
+        points);
+  }
+
+  /** Nearest rank percentile over sorted values. */
+  static double percentile(double[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    var rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+    return sorted[Math.min(sorted.length, Math.max(1, rank)) - 1];
+  }
+
+  public record WorkerSummary(String name, double mean, double max) {}
+
+  /**
+   * CPU utilization statistics, all values are percentages.
+   *
+   * @param workerCount amount of workers with CPU utilization data.
+   * @param pointCount amount of aligned points analyzed.
+   * @param skewRatio ratio between the busiest worker mean utilization and the median of the
+   *     workers mean utilization.
+   * @param idleWorkers amount of workers under the idle threshold.
+   * @param saturatedWorkers amount of workers over the saturation threshold.
+   * @param busiestWorkers the workers with the highest mean utilization.
+   * @param idlestWorkers the workers with the lowest mean utilization.
+   * @param points the raw points, only when requested.
+   */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record Summary(
+      int workerCount,
+      int pointCount,
+      double p50,
+      double p90,
+      double p99,
+      double max,
+      double mean,
+      double skewRatio,
+      int idleWorkers,
+      int saturatedWorkers,
+      List<WorkerSummary> busiestWorkers,
+      List<WorkerSummary> idlestWorkers,
+      List<WorkerCpuUtilization> points) {}
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import static com.example.dataflow.tips.tools.common.Utils.execute;
+import static com.example.dataflow.tips.tools.common.Utils.executeAsync;
+import static com.example.dataflow.tips.tools.common.Utils.pages;
+import static com.example.dataflow.tips.tools.common.Utils.toMono;
+
+import com.example.dataflow.tips.tools.config.AnalysisProperties;
+import com.example.dataflow.tips.tools.config.KnowledgeProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.google.cloud.monitoring.v3.MetricServiceClient;
+import com.google.dataflow.v1beta3.ListJobMessagesRequest;
+import com.google.dataflow.v1beta3.ListJobMessagesResponse;
+import com.google.dataflow.v1beta3.MessagesV1Beta3Client;
+import com.google.dataflow.v1beta3.MetricsV1Beta3Client;
+import com.google.monitoring.v3.ListTimeSeriesResponse;
+import com.google.protobuf.util.Timestamps;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Gathers in a single tool call the information usually collected with several tools: the job's
+ * topology summary, its sources and sinks mapped to the known IO categories with their best
+ * practices, the aggregated job metrics, the workers CPU statistics and the recurring log messages.
+ * All the parts are retrieved concurrently, each one with its own deadline.
+ */
+@Service
+public class JobAnalysisService {
+  static final int MAX_LOG_TEMPLATES = 15;
+
+  private final JobCache jobCache;
+  private final MetricsV1Beta3Client metricsClient;
+  private final MetricServiceClient gcpMetricsClient;
+  private final MessagesV1Beta3Client logClient;
+  private final KnowledgeProperties knowledge;
+  private final AnalysisProperties properties;
+
+  public JobAnalysisService(
+      JobCache jobCache,
+      MetricsV1Beta3Client metricsClient,
+      MetricServiceClient gcpMetricsClient,
+      MessagesV1Beta3Client logClient,
+      KnowledgeProperties knowledge,
+      AnalysisProperties properties) {
+    this.jobCache = jobCache;
+    this.metricsClient = metricsClient;
+    this.gcpMetricsClient = gcpMetricsClient;
+    this.logClient = logClient;
+    this.knowledge = knowledge;
+    this.properties = properties;
+  }
+
+  @Tool(
+      name = "Analyze Job",
+      description =
+          "Retrieves at once all the information needed to analyze a Dataflow's job: the "
+              + "topology summary, its sources and sinks mapped to the known IO categories and "
+              + "their best practices, the job metrics aggregated per metric name, the workers "
+              + "CPU utilization statistics and the recurring log messages. Parts that could not "
+              + "be retrieved are listed in the errors field. Use this before the individual "
+              + "tools, and use those only to dig deeper.")
+  public JobAnalysis analyzeJob(
+      @ToolParam(description = "Job's GCP project identifier.") String projectId,
+      @ToolParam(description = "Job's GCP region identifier.") String regionId,
+      @ToolParam(description = "Job's identifier.") String jobId,
+      @ToolParam(
+              description =
+                  "Minimum level of the log messages to include, expected values are: "
+                      + "BASIC, DEBUG, DETAILED, ERROR, WARNING or NONE to skip the logs. "
+                      + "Defaults to WARNING.",
+              required = false)
+          String logLevel,
+      ToolContext context) {
+    return execute(
+        () -> analyzeJobAsync(projectId, regionId, jobId, logLevel).block(),
+        "Error while analyzing job id: %s, project: %s, region: %s",
+        jobId,
+        projectId,
+        regionId);
+  }
+
+  /** Non blocking implementation of the "Analyze Job" tool. */
+  public Mono<JobAnalysis> analyzeJobAsync(
+      String projectId, String regionId, String jobId, String logLevel) {
+    return executeAsync(
+        () -> {
+          var errors = new ConcurrentHashMap<String, String>();
+          var level =
+              Optional.ofNullable(logLevel).filter(value -> !value.isBlank()).orElse("WARNING");
+          return Mono.zip(
+                  part(
+                      "topology",
+                      topology(projectId, regionId, jobId),
+                      properties.topologyTimeout(),
+                      errors),
+                  part(
+                      "metrics",
+                      metrics(projectId, regionId, jobId),
+                      properties.metricsTimeout(),
+                      errors),
+                  part("cpu", cpu(projectId, jobId), properties.cpuTimeout(), errors),
+                  "NONE".equalsIgnoreCase(level)
+                      ? Mono.just(Optional.<List<LogTemplates.Template>>empty())
+                      : part(
+                          "logs",
+                          logs(projectId, regionId, jobId, level),
+                          properties.logsTimeout(),
+                          errors))
+              .map(
+                  parts -> {
+                    var topology = parts.getT1();
+                    return new JobAnalysis(
+                        jobId,
+                        topology.orElse(null),
+                        topology.map(this::ioCategories).orElse(null),
+                        parts.getT2().orElse(null),
+                        parts.getT3().orElse(null),
+                        parts.getT4().orElse(null),
+                        errors.isEmpty() ? null : Map.copyOf(errors));
+                  });
+        },
+        "Error while analyzing job id: %s, project: %s, region: %s",
+        jobId,
+        projectId,
+        regionId);
+  }
+
+  /** Retrieves a part of the analysis, errors and missed deadlines are recorded, not raised. */
+  static <T> Mono<Optional<T>> part(
+      String name, Mono<T> retrieval, Duration timeout, Map<String, String> errors) {
+    return retrieval
+        .timeout(timeout)
+        .map(Optional::of)
+        .defaultIfEmpty(Optional.empty())
+        .onErrorResume(
+            ex -> {
+              errors.put(
+                  name,
+                  Optional.ofNullable(ex.getMessage()).orElse(ex.getClass().getSimpleName()));
+              return Mono.just(Optional.empty());
+            });
+  }
+
+  Mono<JobTopology.Summary> topology(String projectId, String regionId, String jobId) {
+    return Mono.fromFuture(() -> jobCache.jobAsync(projectId, regionId, jobId), true)
+        .map(job -> JobTopology.of(job).summary(false, false));
+  }
+
+  Mono<List<MetricsQuery.MetricAggregate>> metrics(
+      String projectId, String regionId, String jobId) {
+    return toMono(
+            () ->
+                metricsClient
+                    .getJobMetricsCallable()
+                    .futureCall(
+                        PipelineMetricsService.jobMetricsRequest(
+                            projectId,
+                            regionId,
+                            jobId,
+                            Instant.now().minus(properties.metricsWindow()))))
+        .map(
+            metrics ->
+                MetricsQuery.aggregate(
+                    MetricsQuery.parse(
+                        metrics.getMetricsList(), MetricsQuery.Filter.of(null, null, false)),
+                    MetricsQuery.Aggregation.MAX,
+                    1));
+  }
+
+  Mono<CpuAnalysis.Summary> cpu(String projectId, String jobId) {
+    var endTime = Instant.now();
+    var request =
+        PipelineMetricsService.cpuTimeSeriesRequest(
+            projectId, jobId, endTime.minus(properties.cpuWindow()), endTime, 60);
+    return pages(
+            pageToken ->
+                gcpMetricsClient
+                    .listTimeSeriesCallable()
+                    .futureCall(request.toBuilder().setPageToken(pageToken).build()),
+            ListTimeSeriesResponse::getNextPageToken)
+        .flatMapIterable(ListTimeSeriesResponse::getTimeSeriesList)
+        .collectList()
+        .map(series -> CpuAnalysis.of(series, false).summary(10, 90, 3));
+  }
+
+  Mono<List<LogTemplates.Template>> logs(
+      String projectId, String regionId, String jobId, String logLevel) {
+    var request =
+        ListJobMessagesRequest.newBuilder()
+            .setProjectId(projectId.trim())
+            .setJobId(jobId.trim())
+            .setLocation(regionId.trim())
+            .setStartTime(
+                Timestamps.fromMillis(Instant.now().minus(properties.logsWindow()).toEpochMilli()))
+            .setMinimumImportance(LogMessagesService.minimumImportance(logLevel))
+            .setPageSize(LogMessagesService.PATTERNS_PAGE_SIZE)
+            .build();
+    return pages(
+            pageToken ->
+                logClient
+                    .listJobMessagesCallable()
+                    .futureCall(request.toBuilder().setPageToken(pageToken).build()),
+            ListJobMessagesResponse::getNextPageToken)
+        .flatMapIterable(ListJobMessagesResponse::getJobMessagesList)
+        .take(properties.maxLogMessages())
+        .collect(
+            () -> LogTemplates.create(LogMessagesService.MAX_TRACKED_TEMPLATES), LogTemplates::add)
+        .map(templates -> templates.templates(MAX_LOG_TEMPLATES));
+  }
+
+  IoMapping ioCategories(JobTopology.Summary topology) {
+    var categories = knowledge.ioCategories();
+    var sources =
+        categories(
+            topology.sources(),
+            endpoint -> knowledge.matchingCategories(categories.sources(), endpoint));
+    var sinks =
+        categories(
+            topology.sinks(),
+            endpoint -> knowledge.matchingCategories(categories.sinks(), endpoint));
+    var practices = new LinkedHashSet<String>();
+    sources.forEach(category -> practices.addAll(knowledge.bestPractice(category)));
+    sinks.forEach(category -> practices.addAll(knowledge.bestPractice(category)));
+    return new IoMapping(sources, sinks, List.copyOf(practices));
+  }
+
+  static List<String> categories(
+      List<JobTopology.Endpoint> endpoints, Function<String, List<String>> matcher) {
+    return endpoints.stream()
+        .flatMap(
+            endpoint ->
+                matcher
+                    .apply(endpoint.name() + " " + String.join(" ", endpoint.ioClasses()))
+                    .stream())
+        .distinct()
+        .toList();
+  }
+
+  /**
+   * The known IO categories found in the job.
+   *
+   * @param sourceCategories the categories of the job's sources.
+   * @param sinkCategories the categories of the job's sinks.
+   * @param bestPractices the best practices for the found categories.
+   */
+  public record IoMapping(
+      List<String> sourceCategories, List<String> sinkCategories, List<String> bestPractices) {}
+
+  /**
+   * The composite analysis of a job, parts that could not be retrieved are null and their reason is
+   * included in the errors, keyed by part name.
+   */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record JobAnalysis(
+      String jobId,
+      JobTopology.Summary topology,
+      IoMapping ioCategories,
+      List<MetricsQuery.MetricAggregate> metrics,
+      CpuAnalysis.Summary cpu,
+      List<LogTemplates.Template> logs,
+      Map<String, String> errors) {}
+}
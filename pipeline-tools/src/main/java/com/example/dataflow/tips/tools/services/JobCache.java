@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import static com.example.dataflow.tips.tools.common.Utils.toCompletableFuture;
+
+import com.example.dataflow.tips.tools.config.JobCacheProperties;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.google.dataflow.v1beta3.GetJobRequest;
+import com.google.dataflow.v1beta3.Job;
+import com.google.dataflow.v1beta3.JobState;
+import com.google.dataflow.v1beta3.JobView;
+import com.google.dataflow.v1beta3.JobsV1Beta3Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the full view of the Dataflow jobs, bounded by their serialized size. Entries for jobs in
+ * a terminal state are kept until evicted by size, while running jobs expire quickly so the state
+ * and topology stay current. Concurrent lookups for the same job while the entry is missing share
+ * a single upstream call.
+ */
+@Component
+public class JobCache {
+  static final Set<JobState> TERMINAL_STATES =
+      EnumSet.of(
+          JobState.JOB_STATE_DONE,
+          JobState.JOB_STATE_FAILED,
+          JobState.JOB_STATE_CANCELLED,
+          JobState.JOB_STATE_DRAINED,
+          JobState.JOB_STATE_UPDATED);
+
+  private final JobsV1Beta3Client jobsClient;
+  private final AsyncCache<JobKey, Job> cache;
+
+  public JobCache(
+      JobsV1Beta3Client jobsClient, JobCacheProperties properties, MeterRegistry registry) {
+    this.jobsClient = jobsClient;
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumWeight(properties.maximumWeight().toBytes())
+            .weigher((JobKey key, Job job) -> job.getSerializedSize())
+            .expireAfter(new StateAwareExpiry(properties))
+            .recordStats()
+            .buildAsync();
+    CaffeineCacheMetrics.monitor(registry, cache.synchronous(), "dataflow.jobs");
+  }
+
+  /**
+   * Returns the job with all its details, fetching it from the Dataflow API when not cached.
+   *
+   * @param projectId Job's GCP project identifier.
+   * @param regionId Job's GCP region identifier.
+   * @param jobId Job's identifier.
+   * @return the job's full view.
+   */
+  public Job job(String projectId, String regionId, String jobId) {
+    try {
+      return jobAsync(projectId, regionId, jobId).join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Non blocking version of {@link #job(String, String, String)}, the upstream call is issued
+   * through the client's future callable.
+   */
+  public CompletableFuture<Job> jobAsync(String projectId, String regionId, String jobId) {
+    return cache.get(
+        new JobKey(projectId.trim(), regionId.trim(), jobId.trim()),
+        (key, executor) ->
+            toCompletableFuture(jobsClient.getJobCallable().futureCall(request(key))));
+  }
+
+  public static boolean isTerminal(JobState state) {
+    return TERMINAL_STATES.contains(state);
+  }
+
+  static GetJobRequest request(JobKey key) {
+    return GetJobRequest.newBuilder()
+        .setJobId(key.jobId())
+        .setProjectId(key.projectId())
+        .setLocation(key.regionId())
+        .setView(JobView.JOB_VIEW_ALL)
+        .build();
+  }
+
+  record JobKey(String projectId, String regionId, String jobId) {}
+
+  static class StateAwareExpiry implements Expiry<JobKey, Job> {
+    private final long activeJobTtlNanos;
+    private final long terminalJobTtlNanos;
+
+    StateAwareExpiry(JobCacheProperties properties) {
+      this.activeJobTtlNanos = properties.activeJobTtl().toNanos();
+      this.terminalJobTtlNanos = properties.terminalJobTtl().toNanos();
+    }
+
+    long ttl(Job job) {
+      return isTerminal(job.getCurrentState()) ? terminalJobTtlNanos : activeJobTtlNanos;
+    }
+
+    @Override
+    public long expireAfterCreate(JobKey key, Job job, long currentTime) {
+      return ttl(job);
+    }
+
+    @Override
+    public long expireAfterUpdate(JobKey key, Job job, long currentTime, long currentDuration) {
+      return ttl(job);
+    }
+
+    @Override
+    public long expireAfterRead(JobKey key, Job job, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import static com.example.dataflow.tips.tools.common.Utils.toCompletableFuture;
+
+import com.example.dataflow.tips.tools.services.PipelineTopologyService.Pipeline;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.dataflow.v1beta3.Job;
+import com.google.dataflow.v1beta3.JobsV1Beta3Client;
+import com.google.dataflow.v1beta3.ListJobsRequest;
+import com.google.dataflow.v1beta3.ListJobsResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lists jobs one page at a time. Pages are filtered on the server and addressed by an opaque token
+ * that encodes the Dataflow API page token plus the position inside that API page, so a page can
+ * end in the middle of an API page. Once a page is returned the following API page is requested in
+ * the background, so paging forward does not wait on the API.
+ */
+@Component
+public class JobPager {
+  static final int API_PAGE_SIZE = 100;
+  static final int MAX_PAGE_SIZE = 100;
+  static final int MAX_SCANNED_JOBS = 2_000;
+  private static final String TOKEN_SEPARATOR = "\n";
+
+  private final JobsV1Beta3Client jobsClient;
+  private final Cache<PageKey, CompletableFuture<ListJobsResponse>> prefetched =
+      Caffeine.newBuilder().maximumSize(200).expireAfterWrite(Duration.ofMinutes(1)).build();
+
+  public JobPager(JobsV1Beta3Client jobsClient) {
+    this.jobsClient = jobsClient;
+  }
+
+  /**
+   * Returns a page of jobs matching the filter.
+   *
+   * @param request the list request, its page size and page token are managed by the pager.
+   * @param filter the server side filter applied to the listed jobs.
+   * @param pageSize the maximum amount of jobs in the page, capped to {@link #MAX_PAGE_SIZE}.
+   * @param pageToken the token returned with the previous page, null or empty for the first one.
+   * @return the page of jobs, with the token for the next page when more jobs are available.
+   */
+  public JobPage page(
+      ListJobsRequest request, Predicate<Job> filter, int pageSize, String pageToken) {
+    var size = Math.max(1, Math.min(MAX_PAGE_SIZE, pageSize));
+    var baseRequest = request.toBuilder().setPageSize(API_PAGE_SIZE).clearPageToken().build();
+    var cursor = Cursor.decode(pageToken);
+    var jobs = new ArrayList<Pipeline>(size);
+    var scanned = 0;
+    while (true) {
+      var response = fetch(baseRequest, cursor.apiToken());
+      var index = cursor.offset();
+      for (; index < response.getJobsCount() && jobs.size() < size; index++) {
+        scanned++;
+        var job = response.getJobs(index);
+        if (filter.test(job)) {
+          jobs.add(PipelineTopologyService.pipelineSummary(job));
+        }
+        if (scanned >= MAX_SCANNED_JOBS) {
+          index++;
+          break;
+        }
+      }
+      if (index < response.getJobsCount()) {
+        // the page is complete, or the scan limit was reached, in the middle of an API page, keep
+        // it around for the next page and request the following one
+        prefetched
+            .asMap()
+            .put(
+                new PageKey(baseRequest, cursor.apiToken()),
+                CompletableFuture.completedFuture(response));
+        if (!response.getNextPageToken().isEmpty()) {
+          prefetch(baseRequest, response.getNextPageToken());
+        }
+        return new JobPage(jobs, new Cursor(cursor.apiToken(), index).encode(), scanned);
+      }
+      var nextApiToken = response.getNextPageToken();
+      if (nextApiToken.isEmpty()) {
+        return new JobPage(jobs, null, scanned);
+      }
+      cursor = new Cursor(nextApiToken, 0);
+      if (jobs.size() >= size || scanned >= MAX_SCANNED_JOBS) {
+        prefetch(baseRequest, nextApiToken);
+        return new JobPage(jobs, cursor.encode(), scanned);
+      }
+    }
+  }
+
+  ListJobsResponse fetch(ListJobsRequest baseRequest, String apiToken) {
+    var key = new PageKey(baseRequest, apiToken);
+    var pending = prefetched.asMap().remove(key);
+    try {
+      return pending != null
+          ? pending.join()
+          : jobsClient
+              .listJobsCallable()
+              .call(baseRequest.toBuilder().setPageToken(apiToken).build());
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw ex;
+    }
+  }
+
+  void prefetch(ListJobsRequest baseRequest, String apiToken) {
+    prefetched
+        .asMap()
+        .computeIfAbsent(
+            new PageKey(baseRequest, apiToken),
+            key ->
+                toCompletableFuture(
+                    jobsClient
+                        .listJobsCallable()
+                        .futureCall(baseRequest.toBuilder().setPageToken(apiToken).build())));
+  }
+
+  /**
+   * A page of jobs.
+   *
+   * @param jobs the jobs in the page.
+   * @param nextPageToken the token to request the next page, null when there are no more jobs.
+   * @param scannedJobs amount of jobs evaluated by the filter to build the page.
+   */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record JobPage(List<Pipeline> jobs, String nextPageToken, int scannedJobs) {}
+
+  record PageKey(ListJobsRequest request, String apiToken) {}
+
+  record Cursor(String apiToken, int offset) {
+
+    static Cursor decode(String token) {
+      if (token == null || token.isBlank()) {
+        return new Cursor("", 0);
+      }
+      var decoded =
+          new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+      var separator = decoded.lastIndexOf(TOKEN_SEPARATOR);
+      if (separator < 0) {
+        throw new IllegalArgumentException("Invalid page token: " + token);
+      }
+      return new Cursor(
+          decoded.substring(0, separator), Integer.parseInt(decoded.substring(separator + 1)));
+    }
+
+    String encode() {
+      return Base64.getUrlEncoder()
+          .withoutPadding()
+          .encodeToString((apiToken + TOKEN_SEPARATOR + offset).getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
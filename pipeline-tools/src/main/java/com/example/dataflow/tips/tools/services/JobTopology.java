@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.google.dataflow.v1beta3.DisplayData;
+import com.google.dataflow.v1beta3.ExecutionStageSummary;
+import com.google.dataflow.v1beta3.Job;
+import com.google.dataflow.v1beta3.TransformSummary;
+import com.google.protobuf.util.Durations;
+import com.google.protobuf.util.Timestamps;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Compact representation of a job's topology. Transforms and execution stages are identified by
+ * their position, names are kept once in a table and the edges between them are integer adjacency
+ * lists resolved through the PCollection names produced and consumed by each node.
+ */
+public final class JobTopology {
+  private static final int[] NO_EDGES = new int[0];
+
+  private final Job job;
+  private final String[] transformNames;
+  private final String[] transformKinds;
+  private final int[][] transformUpstream;
+  private final int[] sources;
+  private final int[] sinks;
+  private final String[] stageNames;
+  private final String[] stageKinds;
+  private final int[][] stageUpstream;
+
+  private JobTopology(Job job) {
+    this.job = job;
+    var transforms = job.getPipelineDescription().getOriginalPipelineTransformList();
+    var transformCount = transforms.size();
+    this.transformNames = new String[transformCount];
+    this.transformKinds = new String[transformCount];
+    var producers = new HashMap<String, Integer>();
+    for (int i = 0; i < transformCount; i++) {
+      var transform = transforms.get(i);
+      transformNames[i] = transform.getName();
+      transformKinds[i] = kind(transform);
+      for (var output : transform.getOutputCollectionNameList()) {
+        producers.putIfAbsent(output, i);
+      }
+    }
+    this.transformUpstream = new int[transformCount][];
+    var consumed = new boolean[transformCount];
+    for (int i = 0; i < transformCount; i++) {
+      transformUpstream[i] =
+          resolve(transforms.get(i).getInputCollectionNameList(), producers, i, consumed);
+    }
+    this.sources =
+        IntStream.range(0, transformCount)
+            .filter(i -> transforms.get(i).getInputCollectionNameCount() == 0)
+            .toArray();
+    this.sinks =
+        IntStream.range(0, transformCount)
+            .filter(i -> !consumed[i] && transforms.get(i).getInputCollectionNameCount() > 0)
+            .toArray();
+
+    var stages = job.getPipelineDescription().getExecutionPipelineStageList();
+    var stageCount = stages.size();
+    this.stageNames = new String[stageCount];
+    this.stageKinds = new String[stageCount];
+    var stageProducers = new HashMap<String, Integer>();
+    for (int i = 0; i < stageCount; i++) {
+      var stage = stages.get(i);
+      stageNames[i] = stage.getName();
+      stageKinds[i] = kind(stage);
+      for (var output : stage.getOutputSourceList()) {
+        stageProducers.putIfAbsent(output.getName(), i);
+      }
+    }
+    this.stageUpstream = new int[stageCount][];
+    var stageConsumed = new boolean[stageCount];
+    for (int i = 0; i < stageCount; i++) {
+      stageUpstream[i] =
+          resolve(
+              stages.get(i).getInputSourceList().stream().map(input -> input.getName()).toList(),
+              stageProducers,
+              i,
+              stageConsumed);
+    }
+  }
+
+  /**
+   * Builds the compact topology for the provided job, which is expected to be retrieved with the
+   * full job view.
+   */
+  public static JobTopology of(Job job) {
+    return new JobTopology(job);
+  }
+
+  public int transformCount() {
+    return transformNames.length;
+  }
+
+  public String transformName(int index) {
+    return transformNames[index];
+  }
+
+  public String transformKind(int index) {
+    return transformKinds[index];
+  }
+
+  public int[] transformUpstream(int index) {
+    return transformUpstream[index];
+  }
+
+  public int[] sources() {
+    return sources;
+  }
+
+  /** The user names of the collections produced by the pipeline sources. */
+  public List<String> sourceOutputs() {
+    var transforms = job.getPipelineDescription().getOriginalPipelineTransformList();
+    return Arrays.stream(sources)
+        .mapToObj(transforms::get)
+        .flatMap(transform -> transform.getOutputCollectionNameList().stream())
+        .toList();
+  }
+
+  public int[] sinks() {
+    return sinks;
+  }
+
+  /**
+   * Creates the summary for this topology.
+   *
+   * @param includeTransforms include the graph of the original pipeline transforms, and not only
+   *     the execution stages.
+   * @param includeDisplayData include the display data of the pipeline and every transform.
+   * @return the topology summary.
+   */
+  public Summary summary(boolean includeTransforms, boolean includeDisplayData) {
+    var transforms = job.getPipelineDescription().getOriginalPipelineTransformList();
+    return new Summary(
+        job.getId(),
+        job.getName(),
+        job.getCurrentState().toString(),
+        transformNames.length,
+        stageNames.length,
+        IntStream.range(0, stageNames.length)
+            .mapToObj(i -> new Node(i, stageNames[i], stageKinds[i], stageUpstream[i], null))
+            .toList(),
+        Arrays.stream(sources).mapToObj(i -> endpoint(i, transforms.get(i))).toList(),
+        Arrays.stream(sinks).mapToObj(i -> endpoint(i, transforms.get(i))).toList(),
+        includeTransforms
+            ? IntStream.range(0, transformNames.length)
+                .mapToObj(
+                    i ->
+                        new Node(
+                            i,
+                            transformNames[i],
+                            transformKinds[i],
+                            transformUpstream[i],
+                            includeDisplayData
+                                ? displayData(transforms.get(i).getDisplayDataList())
+                                : null))
+                .toList()
+            : null,
+        includeDisplayData
+            ? displayData(job.getPipelineDescription().getDisplayDataList())
+            : null);
+  }
+
+  Endpoint endpoint(int index, TransformSummary transform) {
+    return new Endpoint(
+        index,
+        transformNames[index],
+        transformKinds[index],
+        transform.getDisplayDataList().stream()
+            .filter(data -> !data.getNamespace().isEmpty())
+            .map(data -> simpleName(data.getNamespace()))
+            .distinct()
+            .toList());
+  }
+
+  static int[] resolve(
+      List<String> inputs, Map<String, Integer> producers, int self, boolean[] consumed) {
+    if (inputs.isEmpty()) {
+      return NO_EDGES;
+    }
+    var upstream = new int[inputs.size()];
+    var count = 0;
+    for (var input : inputs) {
+      var producer = producers.get(input);
+      if (producer == null || producer == self) {
+        continue;
+      }
+      consumed[producer] = true;
+      var duplicated = false;
+      for (int j = 0; j < count && !duplicated; j++) {
+        duplicated = upstream[j] == producer;
+      }
+      if (!duplicated) {
+        upstream[count++] = producer;
+      }
+    }
+    return count == upstream.length ? upstream : Arrays.copyOf(upstream, count);
+  }
+
+  static String kind(TransformSummary transform) {
+    return transform.getKind().name().replace("_KIND", "");
+  }
+
+  static String kind(ExecutionStageSummary stage) {
+    return stage.getKind().name().replace("_KIND", "");
+  }
+
+  static String simpleName(String className) {
+    var lastDot = className.lastIndexOf('.');
+    return lastDot < 0 ? className : className.substring(lastDot + 1);
+  }
+
+  /** Formats the display data as compact key/value pairs, without relying on reflection. */
+  static Map<String, String> displayData(List<DisplayData> displayData) {
+    var result = new HashMap<String, String>(displayData.size() * 2);
+    for (var data : displayData) {
+      var key =
+          data.getNamespace().isEmpty()
+              ? data.getKey()
+              : simpleName(data.getNamespace()) + "." + data.getKey();
+      result.put(key, displayValue(data));
+    }
+    return result;
+  }
+
+  static String displayValue(DisplayData data) {
+    return switch (data.getValueCase()) {
+      case STR_VALUE -> data.getStrValue();
+      case INT64_VALUE -> Long.toString(data.getInt64Value());
+      case FLOAT_VALUE -> Float.toString(data.getFloatValue());
+      case JAVA_CLASS_VALUE -> data.getJavaClassValue();
+      case TIMESTAMP_VALUE -> Timestamps.toString(data.getTimestampValue());
+      case DURATION_VALUE -> Durations.toString(data.getDurationValue());
+      case BOOL_VALUE -> Boolean.toString(data.getBoolValue());
+      case VALUE_NOT_SET -> data.getShortStrValue();
+    };
+  }
+
+  /**
+   * A node of the graph, the upstream list holds the indexes of the nodes that produce the data
+   * consumed by this one.
+   */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record Node(
+      int id, String name, String kind, int[] upstream, Map<String, String> displayData) {}
+
+  /** A pipeline source or sink, with the simple names of the IO classes involved. */
+  public record Endpoint(int id, String name, String kind, List<String> ioClasses) {}
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record Summary(
+      String jobId,
+      String name,
+      String state,
+      int transformCount,
+      int stageCount,
+      List<Node> stages,
+      List<Endpoint> sources,
+      List<Endpoint> sinks,
+      List<Node> transforms,
+      Map<String, String> displayData) {}
+}
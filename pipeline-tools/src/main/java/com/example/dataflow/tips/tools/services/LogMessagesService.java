@@ -21,6 +21,7 @@ import com.google.dataflow.v1beta3.JobMessageImportance;
 import com.google.dataflow.v1beta3.ListJobMessagesRequest;
 import com.google.dataflow.v1beta3.MessagesV1Beta3Client;
 import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.Timestamps;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
@@ -29,10 +30,14 @@ import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 /** */
 @Service
 public class LogMessagesService {
+  static final int PATTERNS_PAGE_SIZE = 500;
+  static final int MAX_ANALYZED_MESSAGES = 20_000;
+  static final int MAX_TRACKED_TEMPLATES = 1_000;
 
   private final MessagesV1Beta3Client logClient;
 
@@ -60,24 +65,9 @@ public class LogMessagesService {
             StreamSupport.stream(
                     logClient
                         .listJobMessages(
-                            ListJobMessagesRequest.getDefaultInstance().toBuilder()
-                                .setProjectId(projectId)
-                                .setJobId(jobId)
-                                .setLocation(regionId)
-                                .setStartTime(
-                                    Timestamp.getDefaultInstance().toBuilder()
-                                        .setSeconds(
-                                            Instant.now().minusSeconds(secondsAgo).getEpochSecond())
-                                        .build())
-                                .setMinimumImportance(
-                                    JobMessageImportance.valueOf(
-                                        Optional.ofNullable(logLevel)
-                                            .map(level -> "JOB_MESSAGE_" + level.toUpperCase())
-                                            .orElse("UNRECOGNIZED")))
-                                .setPageSize(10)
-                                .build())
+                            logMessagesRequest(projectId, regionId, jobId, logLevel, secondsAgo))
                         .getPage()
-                        .iterateAll()
+                        .getValues()
                         .spliterator(),
                     false)
                 .map(JobMessage::toString)
@@ -88,4 +78,141 @@ public class LogMessagesService {
         projectId,
         regionId);
   }
+
+  /** Non blocking implementation of the "Log Messages Per Level" tool. */
+  public Mono<List<String>> logMessagesAsync(
+      String projectId, String regionId, String jobId, String logLevel, Integer secondsAgo) {
+    return Utils.executeAsync(
+        () -> {
+          // only the first page, as the blocking implementation
+          var request = logMessagesRequest(projectId, regionId, jobId, logLevel, secondsAgo);
+          return Utils.toMono(() -> logClient.listJobMessagesCallable().futureCall(request))
+              .map(
+                  response ->
+                      response.getJobMessagesList().stream().map(JobMessage::toString).toList());
+        },
+        "Errors while trying to retrieve the job %s logs at %s level (project %s, region %s).",
+        jobId,
+        logLevel,
+        projectId,
+        regionId);
+  }
+
+  static ListJobMessagesRequest logMessagesRequest(
+      String projectId, String regionId, String jobId, String logLevel, Integer secondsAgo) {
+    return ListJobMessagesRequest.getDefaultInstance().toBuilder()
+        .setProjectId(projectId)
+        .setJobId(jobId)
+        .setLocation(regionId)
+        .setStartTime(
+            Timestamp.getDefaultInstance().toBuilder()
+                .setSeconds(Instant.now().minusSeconds(secondsAgo).getEpochSecond())
+                .build())
+        .setMinimumImportance(
+            JobMessageImportance.valueOf(
+                Optional.ofNullable(logLevel)
+                    .map(level -> "JOB_MESSAGE_" + level.toUpperCase())
+                    .orElse("UNRECOGNIZED")))
+        .setPageSize(10)
+        .build();
+  }
+
+  @Tool(
+      name = "Log Message Patterns",
+      description =
+          "Retrieve all the log messages in the desired level and time window, clustered into "
+              + "templates with the variable parts masked as <*>. Each template includes its "
+              + "count, first and last seen times, importance and a sample message. "
+              + "Prefer this over 'Log Messages Per Level' to find recurring errors.")
+  public LogPatterns logMessagePatterns(
+      @ToolParam(description = "Job's GCP project identifier.") String projectId,
+      @ToolParam(description = "Job's GCP region identifier.") String regionId,
+      @ToolParam(description = "Job's identifier.") String jobId,
+      @ToolParam(
+              description =
+                  "Minimum log level, expected values are: "
+                      + "BASIC, DEBUG, DETAILED, ERROR, WARNING, UNKNOWN or null.",
+              required = false)
+          String logLevel,
+      @ToolParam(
+              description =
+                  "The amount of seconds ago to retrieve messages from, defaults to 3600.",
+              required = false)
+          Integer secondsAgo,
+      @ToolParam(
+              description = "Maximum amount of templates to return, defaults to 30.",
+              required = false)
+          Integer maxTemplates,
+      ToolContext context) {
+    return Utils.execute(
+        () -> {
+          var startTime =
+              Instant.now().minusSeconds(Optional.ofNullable(secondsAgo).orElse(3600));
+          var templates = LogTemplates.create(MAX_TRACKED_TEMPLATES);
+          var messages =
+              logClient
+                  .listJobMessages(
+                      ListJobMessagesRequest.newBuilder()
+                          .setProjectId(projectId.trim())
+                          .setJobId(jobId.trim())
+                          .setLocation(regionId.trim())
+                          .setStartTime(Timestamps.fromMillis(startTime.toEpochMilli()))
+                          .setMinimumImportance(minimumImportance(logLevel))
+                          .setPageSize(PATTERNS_PAGE_SIZE)
+                          .build())
+                  .iterateAll()
+                  .iterator();
+          var analyzed = 0;
+          while (analyzed < MAX_ANALYZED_MESSAGES && messages.hasNext()) {
+            templates.add(messages.next());
+            analyzed++;
+          }
+          return new LogPatterns(
+              jobId,
+              startTime,
+              templates.messageCount(),
+              // only truncated when messages were left unread after reaching the limit
+              messages.hasNext(),
+              templates.templateCount(),
+              templates.evictedCount(),
+              templates.templates(Optional.ofNullable(maxTemplates).orElse(30)));
+        },
+        "Errors while trying to analyze the job %s logs at %s level (project %s, region %s).",
+        jobId,
+        logLevel,
+        projectId,
+        regionId);
+  }
+
+  static JobMessageImportance minimumImportance(String logLevel) {
+    return Optional.ofNullable(logLevel)
+        .filter(level -> !level.isBlank())
+        .map(level -> level.trim().toUpperCase())
+        .map(
+            level ->
+                level.equals("UNKNOWN")
+                    ? JobMessageImportance.JOB_MESSAGE_IMPORTANCE_UNKNOWN
+                    : JobMessageImportance.valueOf("JOB_MESSAGE_" + level))
+        .orElse(JobMessageImportance.JOB_MESSAGE_IMPORTANCE_UNKNOWN);
+  }
+
+  /**
+   * The log message templates of a job.
+   *
+   * @param jobId Job's identifier.
+   * @param startTime the time the messages were retrieved from.
+   * @param messageCount amount of analyzed messages.
+   * @param truncated true when the window had more messages than the analysis limit.
+   * @param templateCount amount of templates found.
+   * @param evictedTemplates amount of rare templates discarded to keep memory bounded.
+   * @param templates the most relevant templates.
+   */
+  public record LogPatterns(
+      String jobId,
+      Instant startTime,
+      long messageCount,
+      boolean truncated,
+      int templateCount,
+      long evictedTemplates,
+      List<LogTemplates.Template> templates) {}
 }
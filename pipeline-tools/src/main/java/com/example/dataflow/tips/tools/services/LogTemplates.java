@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import com.google.dataflow.v1beta3.JobMessage;
+import com.google.dataflow.v1beta3.JobMessageImportance;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clusters job messages online into templates, following the Drain log parsing approach: messages
+ * are routed through a fixed depth tree, first by their amount of tokens and then by their leading
+ * tokens, and matched against the templates of the reached leaf by token similarity. Tokens that
+ * differ between messages of the same template are masked as variables.
+ *
+ * <p>Memory stays bounded regardless of the amount of messages: only the first line of each
+ * message is tokenized with a maximum amount of tokens, every tree node has a maximum amount of
+ * children and the least recently matched templates are evicted when reaching the maximum amount
+ * of templates.
+ */
+public final class LogTemplates {
+  static final String WILDCARD = "<*>";
+  static final int MAX_TOKENS = 48;
+  static final int MAX_SAMPLE_LENGTH = 500;
+  static final Comparator<Cluster> RELEVANCE =
+      Comparator.comparingInt((Cluster cluster) -> rank(cluster.importance))
+          .thenComparingLong(cluster -> cluster.count)
+          .reversed();
+
+  private final int depth;
+  private final int maxChildren;
+  private final double similarityThreshold;
+  private final Map<Integer, Node> roots = new HashMap<>();
+  private final LinkedHashMap<Cluster, Boolean> recentlyMatched;
+  private long messageCount = 0;
+  private long evictedCount = 0;
+
+  LogTemplates(int depth, int maxChildren, double similarityThreshold, int maxTemplates) {
+    this.depth = depth;
+    this.maxChildren = maxChildren;
+    this.similarityThreshold = similarityThreshold;
+    this.recentlyMatched =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Cluster, Boolean> eldest) {
+            if (size() > maxTemplates) {
+              eldest.getKey().leaf.remove(eldest.getKey());
+              evictedCount++;
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /** Creates a parser with the usual Drain settings, a prefix depth of 2 and similarity of 0.5. */
+  public static LogTemplates create(int maxTemplates) {
+    return new LogTemplates(2, 100, 0.5, maxTemplates);
+  }
+
+  /** Adds the message to its matching template, or creates a new template for it. */
+  public void add(JobMessage message) {
+    messageCount++;
+    var tokens = tokenize(message.getMessageText());
+    var leaf = leaf(tokens);
+    Cluster best = null;
+    var bestSimilarity = -1.0;
+    for (var cluster : leaf) {
+      var similarity = similarity(cluster.template, tokens);
+      if (similarity > bestSimilarity) {
+        best = cluster;
+        bestSimilarity = similarity;
+      }
+    }
+    var time =
+        message.hasTime() ? Instant.ofEpochSecond(message.getTime().getSeconds()) : Instant.EPOCH;
+    if (best == null || bestSimilarity < similarityThreshold) {
+      best = new Cluster(leaf, tokens, message, time);
+      leaf.add(best);
+    } else {
+      best.merge(tokens, message, time);
+    }
+    recentlyMatched.put(best, Boolean.TRUE);
+  }
+
+  public long messageCount() {
+    return messageCount;
+  }
+
+  public long evictedCount() {
+    return evictedCount;
+  }
+
+  public int templateCount() {
+    return recentlyMatched.size();
+  }
+
+  /**
+   * Returns the templates sorted by importance and then by count.
+   *
+   * @param limit maximum amount of templates to return.
+   */
+  public List<Template> templates(int limit) {
+    return recentlyMatched.keySet().stream()
+        .sorted(RELEVANCE)
+        .limit(limit)
+        .map(Cluster::toTemplate)
+        .toList();
+  }
+
+  List<Cluster> leaf(String[] tokens) {
+    var node = roots.computeIfAbsent(tokens.length, length -> new Node());
+    for (int i = 0; i < Math.min(depth, tokens.length); i++) {
+      var token = tokens[i];
+      var child = node.children.get(token);
+      if (child == null) {
+        child =
+            node.children.size() < maxChildren
+                ? node.children.computeIfAbsent(token, key -> new Node())
+                : node.children.computeIfAbsent(WILDCARD, key -> new Node());
+      }
+      node = child;
+    }
+    return node.clusters;
+  }
+
+  /** Tokenizes the first line of the message, masking the tokens that contain digits. */
+  static String[] tokenize(String text) {
+    var end = text.indexOf('\n');
+    var firstLine = end < 0 ? text : text.substring(0, end);
+    var tokens = firstLine.trim().split("\\s+", MAX_TOKENS + 1);
+    if (tokens.length > MAX_TOKENS) {
+      tokens = Arrays.copyOf(tokens, MAX_TOKENS);
+    }
+    for (int i = 0; i < tokens.length; i++) {
+      if (hasDigit(tokens[i])) {
+        tokens[i] = WILDCARD;
+      }
+    }
+    return tokens;
+  }
+
+  static boolean hasDigit(String token) {
+    for (int i = 0; i < token.length(); i++) {
+      if (Character.isDigit(token.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static double similarity(String[] template, String[] tokens) {
+    if (template.length != tokens.length) {
+      return 0;
+    }
+    if (tokens.length == 0) {
+      return 1;
+    }
+    var same = 0;
+    for (int i = 0; i < tokens.length; i++) {
+      if (template[i].equals(tokens[i])) {
+        same++;
+      }
+    }
+    return (double) same / tokens.length;
+  }
+
+  /** Ranks the message importance, from the less to the most relevant. */
+  static int rank(JobMessageImportance importance) {
+    return switch (importance) {
+      case JOB_MESSAGE_ERROR -> 5;
+      case JOB_MESSAGE_WARNING -> 4;
+      case JOB_MESSAGE_BASIC -> 3;
+      case JOB_MESSAGE_DETAILED -> 2;
+      case JOB_MESSAGE_DEBUG -> 1;
+      default -> 0;
+    };
+  }
+
+  /**
+   * A log message template.
+   *
+   * @param template the message tokens, with the variable parts masked as {@code <*>}.
+   * @param count amount of messages matching the template.
+   * @param firstSeen time of the earliest message matching the template.
+   * @param lastSeen time of the latest message matching the template.
+   * @param importance the highest importance of the messages matching the template.
+   * @param sample the text of the first message matching the template, truncated.
+   */
+  public record Template(
+      String template,
+      long count,
+      Instant firstSeen,
+      Instant lastSeen,
+      String importance,
+      String sample) {}
+
+  static class Node {
+    final Map<String, Node> children = new HashMap<>();
+    final List<Cluster> clusters = new ArrayList<>();
+  }
+
+  static class Cluster {
+    final List<Cluster> leaf;
+    final String[] template;
+    final String sample;
+    long count = 1;
+    Instant firstSeen;
+    Instant lastSeen;
+    JobMessageImportance importance;
+
+    Cluster(List<Cluster> leaf, String[] tokens, JobMessage message, Instant time) {
+      this.leaf = leaf;
+      this.template = tokens;
+      var text = message.getMessageText();
+      this.sample =
+          text.length() > MAX_SAMPLE_LENGTH ? text.substring(0, MAX_SAMPLE_LENGTH) : text;
+      this.firstSeen = time;
+      this.lastSeen = time;
+      this.importance = message.getMessageImportance();
+    }
+
+    void merge(String[] tokens, JobMessage message, Instant time) {
+      count++;
+      for (int i = 0; i < template.length; i++) {
+        if (!template[i].equals(tokens[i])) {
+          template[i] = WILDCARD;
+        }
+      }
+      if (time.isBefore(firstSeen)) {
+        firstSeen = time;
+      }
+      if (time.isAfter(lastSeen)) {
+        lastSeen = time;
+      }
+      if (rank(message.getMessageImportance()) > rank(importance)) {
+        importance = message.getMessageImportance();
+      }
+    }
+
+    Template toTemplate() {
+      return new Template(
+          String.join(" ", template), count, firstSeen, lastSeen, importance.name(), sample);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import com.example.dataflow.tips.tools.config.MetricsCursorProperties;
+import com.example.dataflow.tips.tools.services.JobCache.JobKey;
+import com.example.dataflow.tips.tools.services.MetricsQuery.StageMetric;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.dataflow.v1beta3.MetricStructuredName;
+import com.google.dataflow.v1beta3.MetricUpdate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import org.springframework.stereotype.Component;
+
+/**
+ * Computes the metric changes of a job since a cursor owned by the caller, the time of the latest
+ * update it saw, so concurrent investigations of the same job each get their own deltas. Only the
+ * updates newer than the cursor are requested, so repeated questions about a running job do not
+ * download the whole window again. The latest value of each metric is kept per job, merged from
+ * every poll, to aggregate over all the known values. A metric is identified by its whole
+ * structured name, origin, name and context, so the values of every PCollection, step and
+ * namespace are kept apart.
+ */
+@Component
+public class MetricsCursors {
+
+  private final Cache<JobKey, KnownMetrics> known;
+
+  public MetricsCursors(MetricsCursorProperties properties, MeterRegistry registry) {
+    this.known =
+        Caffeine.newBuilder()
+            .maximumSize(properties.maximumJobs())
+            .expireAfterAccess(properties.idleTtl())
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(registry, known, "dataflow.metrics.cursors");
+  }
+
+  /**
+   * Polls the job metrics, requesting only the updates since the caller's cursor, or since the
+   * provided window start on the first poll.
+   *
+   * @param projectId Job's GCP project identifier.
+   * @param regionId Job's GCP region identifier.
+   * @param jobId Job's identifier.
+   * @param cursor the cursor returned by the caller's previous poll, null on the first one.
+   * @param windowStart the time to retrieve updates from when there is no cursor.
+   * @param fetcher retrieves the metric updates changed since the provided time.
+   * @return the changed metrics, the cursor for the next poll and the merged state.
+   */
+  public Delta poll(
+      String projectId,
+      String regionId,
+      String jobId,
+      Instant cursor,
+      Instant windowStart,
+      Function<Instant, List<MetricUpdate>> fetcher) {
+    var since = cursor == null ? windowStart : cursor;
+    // retrieved without holding the job's lock, concurrent polls of the same job do not wait on
+    // each other's remote calls
+    var updates = fetcher.apply(since);
+    var changed = new LinkedHashMap<MetricStructuredName, StageMetric>();
+    var next = since;
+    for (var update : updates) {
+      var parsed = MetricsQuery.parse(update);
+      if (parsed.isEmpty()) {
+        continue;
+      }
+      var metric = parsed.get();
+      changed.merge(update.getName(), metric, MetricsCursors::newest);
+      if (metric.updateTime() != null && metric.updateTime().isAfter(next)) {
+        next = metric.updateTime();
+      }
+    }
+    var state =
+        known.get(
+            new JobKey(projectId.trim(), regionId.trim(), jobId.trim()), key -> new KnownMetrics());
+    List<StageMetric> current;
+    state.lock.lock();
+    try {
+      changed.forEach((key, metric) -> state.latest.merge(key, metric, MetricsCursors::newest));
+      current = List.copyOf(state.latest.values());
+    } finally {
+      state.lock.unlock();
+    }
+    return new Delta(
+        cursor == null, since, next, updates.size(), List.copyOf(changed.values()), current);
+  }
+
+  static StageMetric newest(StageMetric previous, StageMetric metric) {
+    return isNewer(metric, previous) ? metric : previous;
+  }
+
+  static boolean isNewer(StageMetric metric, StageMetric previous) {
+    if (metric.updateTime() != null
+        && previous.updateTime() != null
+        && metric.updateTime().isBefore(previous.updateTime())) {
+      return false;
+    }
+    return metric.value() != previous.value()
+        || !Objects.equals(metric.updateTime(), previous.updateTime());
+  }
+
+  /**
+   * The result of an incremental poll.
+   *
+   * @param initial true when there was no cursor and the whole window was retrieved.
+   * @param since the time the updates were requested from.
+   * @param cursor the time of the latest update seen, to be provided to the next poll.
+   * @param updateCount amount of updates returned by the API.
+   * @param changed the metrics that changed since the cursor.
+   * @param current the latest known value of every metric of the job.
+   */
+  public record Delta(
+      boolean initial,
+      Instant since,
+      Instant cursor,
+      int updateCount,
+      List<StageMetric> changed,
+      List<StageMetric> current) {}
+
+  static class KnownMetrics {
+    final ReentrantLock lock = new ReentrantLock();
+    final Map<MetricStructuredName, StageMetric> latest = new HashMap<>();
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.google.dataflow.v1beta3.MetricUpdate;
+import com.google.protobuf.Value;
+import com.google.protobuf.util.Timestamps;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Parses the Dataflow job metric updates into typed per stage records, and filters and aggregates
+ * them so only a small structured result is returned to the model.
+ */
+public final class MetricsQuery {
+  static final String STEP_CONTEXT = "step";
+  static final String ORIGINAL_STEP_CONTEXT = "original_step_name";
+  static final String OUTPUT_USER_NAME_CONTEXT = "output_user_name";
+  static final String ORIGINAL_NAME_CONTEXT = "original_name";
+  static final String NAMESPACE_CONTEXT = "namespace";
+  static final String TENTATIVE_CONTEXT = "tentative";
+  // the steps are named by the step context, the PCollections of the system metrics by the output
+  private static final List<String> STEP_CONTEXTS =
+      List.of(
+          STEP_CONTEXT, ORIGINAL_STEP_CONTEXT, OUTPUT_USER_NAME_CONTEXT, ORIGINAL_NAME_CONTEXT);
+
+  private MetricsQuery() {}
+
+  public enum Aggregation {
+    NONE,
+    SUM,
+    MAX,
+    TOP_K;
+
+    static Aggregation parse(String value) {
+      return Optional.ofNullable(value)
+          .filter(aggregation -> !aggregation.isBlank())
+          .map(aggregation -> valueOf(aggregation.trim().toUpperCase(Locale.ROOT)))
+          .orElse(NONE);
+    }
+  }
+
+  /**
+   * Filters the metric updates.
+   *
+   * @param names metric names to keep, case insensitive, all of them if empty.
+   * @param steps step names fragments to keep, case insensitive, all of them if empty.
+   * @param tentative when true only tentative values are kept, when false only committed ones, and
+   *     both when null.
+   */
+  public record Filter(Set<String> names, List<String> steps, Boolean tentative) {
+
+    static Filter of(List<String> names, List<String> steps, Boolean tentative) {
+      return new Filter(
+          Optional.ofNullable(names).orElse(List.of()).stream()
+              .map(name -> name.trim().toLowerCase(Locale.ROOT))
+              .collect(Collectors.toSet()),
+          Optional.ofNullable(steps).orElse(List.of()).stream()
+              .map(step -> step.trim().toLowerCase(Locale.ROOT))
+              .toList(),
+          tentative);
+    }
+
+    boolean matches(StageMetric metric) {
+      return (names.isEmpty() || names.contains(metric.name().toLowerCase(Locale.ROOT)))
+          && (steps.isEmpty()
+              || steps.stream()
+                  .anyMatch(step -> metric.step().toLowerCase(Locale.ROOT).contains(step)))
+          && (tentative == null || tentative == metric.tentative());
+    }
+  }
+
+  /**
+   * A metric value of a stage.
+   *
+   * @param origin origin of the metric, dataflow/v1b3 for the system metrics and user for the
+   *     pipeline's counters.
+   * @param namespace namespace of the user metrics, null for the system ones.
+   * @param name metric name.
+   * @param step the step, or the PCollection for the system metrics measuring them.
+   * @param tentative whether the value is tentative or committed.
+   * @param value the metric value, the mean for the mean and distribution metrics.
+   * @param updateTime time the metric was updated.
+   */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record StageMetric(
+      String origin,
+      String namespace,
+      String name,
+      String step,
+      boolean tentative,
+      double value,
+      Instant updateTime) {
+
+    /** Identifies the metric regardless of its step. */
+    MetricId id() {
+      return new MetricId(origin, namespace, name);
+    }
+  }
+
+  /** A metric identity, user and system metrics with the same name are different metrics. */
+  record MetricId(String origin, String namespace, String name) {
+    static final Comparator<MetricId> ORDER =
+        Comparator.comparing(MetricId::name)
+            .thenComparing(MetricId::origin)
+            .thenComparing(id -> Optional.ofNullable(id.namespace()).orElse(""));
+  }
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record MetricAggregate(
+      String origin,
+      String namespace,
+      String name,
+      String step,
+      double value,
+      Integer stepCount) {}
+
+  /**
+   * The result of a metrics query.
+   *
+   * @param jobId Job's identifier.
+   * @param startTime the time the metric updates were requested from.
+   * @param updateCount amount of metric updates returned by the API.
+   * @param matchedCount amount of metrics matching the filter.
+   * @param metrics the matching metrics, when not aggregated.
+   * @param aggregates the aggregated metrics, when an aggregation was requested.
+   * @param cursor for incremental queries, the cursor to provide to the next one.
+   */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record Result(
+      String jobId,
+      Instant startTime,
+      int updateCount,
+      int matchedCount,
+      List<StageMetric> metrics,
+      List<MetricAggregate> aggregates,
+      Instant cursor) {}
+
+  /**
+   * Converts the metric update in a stage metric, returns empty when the update does not carry a
+   * numeric value.
+   */
+  public static Optional<StageMetric> parse(MetricUpdate update) {
+    var value = numericValue(update);
+    if (Double.isNaN(value)) {
+      return Optional.empty();
+    }
+    var context = update.getName().getContextMap();
+    return Optional.of(
+        new StageMetric(
+            update.getName().getOrigin(),
+            context.get(NAMESPACE_CONTEXT),
+            update.getName().getName(),
+            STEP_CONTEXTS.stream()
+                .map(context::get)
+                .filter(step -> step != null && !step.isEmpty())
+                .findFirst()
+                .orElse(""),
+            Boolean.parseBoolean(context.get(TENTATIVE_CONTEXT)),
+            value,
+            update.hasUpdateTime()
+                ? Instant.ofEpochMilli(Timestamps.toMillis(update.getUpdateTime()))
+                : null));
+  }
+
+  public static List<StageMetric> parse(List<MetricUpdate> updates, Filter filter) {
+    return updates.stream()
+        .map(MetricsQuery::parse)
+        .flatMap(Optional::stream)
+        .filter(filter::matches)
+        .toList();
+  }
+
+  static double numericValue(MetricUpdate update) {
+    if (update.hasScalar()) {
+      return numericValue(update.getScalar());
+    }
+    if (update.hasGauge()) {
+      return numericValue(update.getGauge());
+    }
+    if (update.hasMeanSum() && update.hasMeanCount()) {
+      var count = numericValue(update.getMeanCount());
+      return count == 0 ? 0 : numericValue(update.getMeanSum()) / count;
+    }
+    if (update.hasDistribution() && update.getDistribution().hasStructValue()) {
+      var fields = update.getDistribution().getStructValue().getFieldsMap();
+      var count = Optional.ofNullable(fields.get("count")).map(MetricsQuery::numericValue);
+      var sum = Optional.ofNullable(fields.get("sum")).map(MetricsQuery::numericValue);
+      if (count.isPresent() && sum.isPresent()) {
+        return count.get() == 0 ? 0 : sum.get() / count.get();
+      }
+    }
+    return Double.NaN;
+  }
+
+  static double numericValue(Value value) {
+    return switch (value.getKindCase()) {
+      case NUMBER_VALUE -> value.getNumberValue();
+      case BOOL_VALUE -> value.getBoolValue() ? 1 : 0;
+      case STRUCT_VALUE -> {
+        // large integer counters are encoded as a struct with the high and low bits
+        var fields = value.getStructValue().getFieldsMap();
+        if (fields.containsKey("lowBits") || fields.containsKey("highBits")) {
+          var empty = Value.getDefaultInstance();
+          var high = (long) fields.getOrDefault("highBits", empty).getNumberValue();
+          var low = (long) fields.getOrDefault("lowBits", empty).getNumberValue();
+          yield (double) ((high << 32) | (low & 0xFFFFFFFFL));
+        }
+        yield Double.NaN;
+      }
+      default -> Double.NaN;
+    };
+  }
+
+  /**
+   * Aggregates the stage metrics per metric, user and system metrics with the same name are kept
+   * apart.
+   *
+   * @param metrics the metrics to aggregate.
+   * @param aggregation SUM adds the values of all the steps, MAX keeps the step with the largest
+   *     value and TOP_K keeps the {@code topK} steps with the largest values.
+   * @param topK amount of steps to keep for each metric when using TOP_K.
+   * @return the aggregated values, sorted by metric name.
+   */
+  public static List<MetricAggregate> aggregate(
+      List<StageMetric> metrics, Aggregation aggregation, int topK) {
+    Map<MetricId, List<StageMetric>> byMetric =
+        metrics.stream()
+            .sorted(Comparator.comparing(StageMetric::id, MetricId.ORDER))
+            .collect(
+                Collectors.groupingBy(StageMetric::id, LinkedHashMap::new, Collectors.toList()));
+    return byMetric.entrySet().stream()
+        .flatMap(
+            entry -> {
+              var id = entry.getKey();
+              var values = entry.getValue();
+              return switch (aggregation) {
+                case SUM ->
+                    Stream.of(
+                        new MetricAggregate(
+                            id.origin(),
+                            id.namespace(),
+                            id.name(),
+                            null,
+                            values.stream().mapToDouble(StageMetric::value).sum(),
+                            values.size()));
+                case MAX ->
+                    values.stream()
+                        .max(Comparator.comparingDouble(StageMetric::value))
+                        .map(MetricsQuery::perStep)
+                        .stream();
+                case TOP_K ->
+                    values.stream()
+                        .sorted(Comparator.comparingDouble(StageMetric::value).reversed())
+                        .limit(Math.max(1, topK))
+                        .map(MetricsQuery::perStep);
+                case NONE -> Stream.<MetricAggregate>empty();
+              };
+            })
+        .toList();
+  }
+
+  static MetricAggregate perStep(StageMetric metric) {
+    return new MetricAggregate(
+        metric.origin(), metric.namespace(), metric.name(), metric.step(), metric.value(), null);
+  }
+}
@@ -16,36 +16,63 @@
 package com.example.dataflow.tips.tools.services;
 
 import static com.example.dataflow.tips.tools.common.Utils.execute;
+import static com.example.dataflow.tips.tools.common.Utils.executeAsync;
+import static com.example.dataflow.tips.tools.common.Utils.pages;
+import static com.example.dataflow.tips.tools.common.Utils.toMono;
 
+import com.example.dataflow.tips.tools.services.JobCache.JobKey;
+import com.example.dataflow.tips.tools.services.MetricsQuery.StageMetric;
 import com.google.cloud.monitoring.v3.MetricServiceClient;
 import com.google.dataflow.v1beta3.GetJobMetricsRequest;
+import com.google.dataflow.v1beta3.JobMetrics;
 import com.google.dataflow.v1beta3.MetricsV1Beta3Client;
 import com.google.monitoring.v3.Aggregation;
 import com.google.monitoring.v3.ListTimeSeriesRequest;
+import com.google.monitoring.v3.ListTimeSeriesResponse;
 import com.google.monitoring.v3.ProjectName;
 import com.google.monitoring.v3.TimeInterval;
+import com.google.monitoring.v3.TimeSeries;
 import com.google.protobuf.Duration;
-import com.google.protobuf.Timestamp;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.util.JsonFormat;
 import com.google.protobuf.util.Timestamps;
 import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.DoubleStream;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
 
 /** */
 @Service
 public class PipelineMetricsService {
+  static final String ELEMENT_COUNT = "ElementCount";
+  static final String USER_ORIGIN = "user";
+  static final int LAG_WINDOW_SECONDS = 300;
+
   private final MetricsV1Beta3Client metricsClient;
   private final MetricServiceClient gcpMetricsClient;
+  private final MetricsCursors cursors;
+  private final ThroughputSamples throughputSamples;
+  private final JobCache jobCache;
 
   public PipelineMetricsService(
-      MetricsV1Beta3Client metricsClient, MetricServiceClient gcpMetricsClient) {
+      MetricsV1Beta3Client metricsClient,
+      MetricServiceClient gcpMetricsClient,
+      MetricsCursors cursors,
+      ThroughputSamples throughputSamples,
+      JobCache jobCache) {
     this.metricsClient = metricsClient;
     this.gcpMetricsClient = gcpMetricsClient;
+    this.cursors = cursors;
+    this.throughputSamples = throughputSamples;
+    this.jobCache = jobCache;
   }
 
   @Tool(
@@ -60,27 +87,275 @@ public class PipelineMetricsService {
       ToolContext context) {
 
     return execute(
+        () -> toJson(jobMetrics(projectId, regionId, jobId, Instant.now().minusSeconds(3600))),
+        "Error while retrieving metrics for job id %s, project %s, region %s.",
+        jobId,
+        projectId,
+        regionId);
+  }
+
+  /** Non blocking implementation of the "Job metrics" tool. */
+  public Mono<String> allJobMetricsAsync(String projectId, String regionId, String jobId) {
+    return executeAsync(
         () ->
-            JsonFormat.printer()
-                .sortingMapKeys()
-                .omittingInsignificantWhitespace()
-                .print(
-                    metricsClient.getJobMetrics(
-                        GetJobMetricsRequest.getDefaultInstance().toBuilder()
-                            .setJobId(jobId)
-                            .setProjectId(projectId)
-                            .setLocation(regionId)
-                            .setStartTime(
-                                Timestamp.getDefaultInstance().toBuilder()
-                                    .setSeconds(Instant.now().minusSeconds(3600).getEpochSecond())
-                                    .build())
-                            .build())),
+            toMono(
+                    () ->
+                        metricsClient
+                            .getJobMetricsCallable()
+                            .futureCall(
+                                jobMetricsRequest(
+                                    projectId,
+                                    regionId,
+                                    jobId,
+                                    Instant.now().minusSeconds(3600))))
+                .map(
+                    metrics -> {
+                      try {
+                        return toJson(metrics);
+                      } catch (InvalidProtocolBufferException ex) {
+                        throw new IllegalStateException(ex);
+                      }
+                    }),
         "Error while retrieving metrics for job id %s, project %s, region %s.",
         jobId,
         projectId,
         regionId);
   }
 
+  static String toJson(JobMetrics metrics) throws InvalidProtocolBufferException {
+    return JsonFormat.printer().sortingMapKeys().omittingInsignificantWhitespace().print(metrics);
+  }
+
+  @Tool(
+      name = "Job Metrics Query",
+      description =
+          "Query the metrics for the Dataflow's job, returning typed per stage values filtered by "
+              + "metric and step names, optionally aggregated per metric name. "
+              + "Prefer this over 'Job metrics' when looking for specific metrics or stages.")
+  public MetricsQuery.Result jobMetricsQuery(
+      @ToolParam(description = "Job's GCP project identifier.") String projectId,
+      @ToolParam(description = "Job's GCP region identifier.") String regionId,
+      @ToolParam(description = "Job's identifier.") String jobId,
+      @ToolParam(
+              description =
+                  "Metric names to include, for example ElementCount or MeanByteCount. "
+                      + "All metrics are included when empty.",
+              required = false)
+          List<String> metricNames,
+      @ToolParam(
+              description =
+                  "Fragments of the step names to include, all steps are included when empty.",
+              required = false)
+          List<String> stepNames,
+      @ToolParam(
+              description =
+                  "When true only tentative values are included, when false only committed "
+                      + "ones. Both are included when omitted.",
+              required = false)
+          Boolean tentative,
+      @ToolParam(
+              description =
+                  "Aggregation per metric name, expected values are: NONE, SUM, MAX or TOP_K. "
+                      + "Defaults to NONE.",
+              required = false)
+          String aggregation,
+      @ToolParam(
+              description = "Amount of steps to keep per metric for TOP_K, defaults to 5.",
+              required = false)
+          Integer topK,
+      @ToolParam(
+              description = "The amount of seconds ago to retrieve metrics from, defaults to 3600.",
+              required = false)
+          Integer windowSeconds,
+      @ToolParam(
+              description =
+                  "When true, only the metrics changed since the cursor are listed, while "
+                      + "aggregations cover all the known values. The result includes the cursor "
+                      + "for the next incremental query. Defaults to false.",
+              required = false)
+          Boolean incremental,
+      @ToolParam(
+              description =
+                  "For incremental queries, the cursor returned by the previous incremental "
+                      + "query of this conversation. The whole window is listed when omitted.",
+              required = false)
+          String cursor,
+      ToolContext context) {
+    return execute(
+        () -> {
+          var startTime =
+              Instant.now().minusSeconds(Optional.ofNullable(windowSeconds).orElse(3600));
+          var filter = MetricsQuery.Filter.of(metricNames, stepNames, tentative);
+          var aggregationType = MetricsQuery.Aggregation.parse(aggregation);
+          var aggregateTopK = Optional.ofNullable(topK).orElse(5);
+          if (Boolean.TRUE.equals(incremental)) {
+            var delta =
+                cursors.poll(
+                    projectId,
+                    regionId,
+                    jobId,
+                    StringUtils.hasText(cursor) ? Instant.parse(cursor.trim()) : null,
+                    startTime,
+                    since -> jobMetrics(projectId, regionId, jobId, since).getMetricsList());
+            var changed = delta.changed().stream().filter(filter::matches).toList();
+            return new MetricsQuery.Result(
+                jobId,
+                delta.since(),
+                delta.updateCount(),
+                changed.size(),
+                aggregationType == MetricsQuery.Aggregation.NONE ? changed : null,
+                aggregationType == MetricsQuery.Aggregation.NONE
+                    ? null
+                    : MetricsQuery.aggregate(
+                        delta.current().stream().filter(filter::matches).toList(),
+                        aggregationType,
+                        aggregateTopK),
+                delta.cursor());
+          }
+          var updates = jobMetrics(projectId, regionId, jobId, startTime).getMetricsList();
+          var metrics = MetricsQuery.parse(updates, filter);
+          return new MetricsQuery.Result(
+              jobId,
+              startTime,
+              updates.size(),
+              metrics.size(),
+              aggregationType == MetricsQuery.Aggregation.NONE ? metrics : null,
+              aggregationType == MetricsQuery.Aggregation.NONE
+                  ? null
+                  : MetricsQuery.aggregate(metrics, aggregationType, aggregateTopK),
+              null);
+        },
+        "Error while querying metrics for job id %s, project %s, region %s.",
+        jobId,
+        projectId,
+        regionId);
+  }
+
+  /**
+   * Computes the fingerprint of the job's current condition, used by the agent to key its cached
+   * answers. Served over plain HTTP rather than as a tool, it is not meant for the model.
+   */
+  public Mono<JobFingerprint> jobFingerprint(String projectId, String regionId, String jobId) {
+    return executeAsync(
+        () -> {
+          var now = Instant.now();
+          var key = new JobKey(projectId.trim(), regionId.trim(), jobId.trim());
+          return Mono.fromFuture(() -> jobCache.jobAsync(projectId, regionId, jobId), true)
+              .flatMap(
+                  job -> {
+                    var state = job.getCurrentState();
+                    if (JobCache.isTerminal(state)) {
+                      // a finished job does not move anymore
+                      return Mono.just(JobFingerprint.of(jobId, state.name(), true, 0, 0));
+                    }
+                    // the counters unchanged for a while are only listed without a start time
+                    var elements =
+                        toMono(
+                                () ->
+                                    metricsClient
+                                        .getJobMetricsCallable()
+                                        .futureCall(
+                                            jobMetricsRequest(
+                                                projectId, regionId, jobId, Instant.EPOCH)))
+                            .map(
+                                metrics ->
+                                    sourceElements(
+                                        JobTopology.of(job).sourceOutputs(),
+                                        MetricsQuery.parse(
+                                            metrics.getMetricsList(),
+                                            MetricsQuery.Filter.of(
+                                                List.of(ELEMENT_COUNT), List.of(), false))));
+                    var lag =
+                        toMono(
+                                () ->
+                                    gcpMetricsClient
+                                        .listTimeSeriesCallable()
+                                        .futureCall(systemLagRequest(projectId, jobId, now)))
+                            .map(response -> systemLag(response.getTimeSeriesList()));
+                    return Mono.zip(elements, lag)
+                        .map(
+                            sampled -> {
+                              var throughput =
+                                  Double.isNaN(sampled.getT1())
+                                      ? Double.NaN
+                                      : throughputSamples.rate(key, now, sampled.getT1());
+                              return JobFingerprint.of(
+                                  jobId, state.name(), false, sampled.getT2(), throughput);
+                            });
+                  });
+        },
+        "Error while computing the fingerprint for job id %s, project %s, region %s.",
+        jobId,
+        projectId,
+        regionId);
+  }
+
+  /**
+   * The committed element count of the collections produced by the sources, each element counted
+   * once when entering the pipeline. NaN when the sources did not report it.
+   */
+  static double sourceElements(List<String> sourceOutputs, List<StageMetric> metrics) {
+    var counts =
+        metrics.stream()
+            .filter(
+                metric ->
+                    !USER_ORIGIN.equals(metric.origin())
+                        && ELEMENT_COUNT.equals(metric.name())
+                        && !metric.tentative()
+                        && sourceOutputs.contains(metric.step()))
+            .mapToDouble(StageMetric::value)
+            .toArray();
+    return counts.length == 0 ? Double.NaN : DoubleStream.of(counts).sum();
+  }
+
+  /** The largest system lag of the time series, in seconds, 0 when not reported. */
+  static double systemLag(Iterable<TimeSeries> series) {
+    return StreamSupport.stream(series.spliterator(), false)
+        .flatMap(timeSeries -> timeSeries.getPointsList().stream())
+        .mapToDouble(point -> point.getValue().getInt64Value())
+        .max()
+        .orElse(0);
+  }
+
+  /** The job's system lag over the last five minutes, in seconds. */
+  static ListTimeSeriesRequest systemLagRequest(String projectId, String jobId, Instant endTime) {
+    return ListTimeSeriesRequest.newBuilder()
+        .setName(ProjectName.of(projectId.trim()).toString())
+        .setFilter(
+            String.format(
+                "metric.type = \"dataflow.googleapis.com/job/system_lag\" AND "
+                    + "resource.labels.job_id = \"%s\"",
+                jobId.trim()))
+        .setInterval(
+            TimeInterval.newBuilder()
+                .setStartTime(
+                    Timestamps.fromMillis(
+                        endTime.minusSeconds(LAG_WINDOW_SECONDS).toEpochMilli()))
+                .setEndTime(Timestamps.fromMillis(endTime.toEpochMilli()))
+                .build())
+        .setAggregation(
+            Aggregation.newBuilder()
+                .setAlignmentPeriod(Duration.newBuilder().setSeconds(LAG_WINDOW_SECONDS).build())
+                .setPerSeriesAligner(Aggregation.Aligner.ALIGN_MAX)
+                .build())
+        .setView(ListTimeSeriesRequest.TimeSeriesView.FULL)
+        .build();
+  }
+
+  JobMetrics jobMetrics(String projectId, String regionId, String jobId, Instant startTime) {
+    return metricsClient.getJobMetrics(jobMetricsRequest(projectId, regionId, jobId, startTime));
+  }
+
+  static GetJobMetricsRequest jobMetricsRequest(
+      String projectId, String regionId, String jobId, Instant startTime) {
+    return GetJobMetricsRequest.newBuilder()
+        .setJobId(jobId.trim())
+        .setProjectId(projectId.trim())
+        .setLocation(regionId.trim())
+        .setStartTime(Timestamps.fromMillis(startTime.toEpochMilli()))
+        .build();
+  }
+
   @Tool(
       name = "Job Workers CPU metrics",
       description =
@@ -90,53 +365,197 @@ public class PipelineMetricsService {
       @ToolParam(description = "Job's identifier.") String dataflowJobId,
       ToolContext context) {
     var timeInSecs = 300;
+    var endTime = Instant.now();
     return execute(
         () ->
             StreamSupport.stream(
-                    gcpMetricsClient
-                        .listTimeSeries(
-                            ListTimeSeriesRequest.newBuilder()
-                                .setName(ProjectName.of(projectId).toString())
-                                .setFilter(
-                                    String.format(
-                                        "metric.type = \"compute.googleapis.com/instance/cpu/utilization\" AND "
-                                            + "metadata.user_labels.dataflow_job_id = \"%s\"",
-                                        dataflowJobId))
-                                .setInterval(
-                                    TimeInterval.newBuilder()
-                                        .setStartTime(
-                                            Timestamps.fromMillis(
-                                                Instant.now()
-                                                    .minusSeconds(timeInSecs)
-                                                    .toEpochMilli()))
-                                        .setEndTime(
-                                            Timestamps.fromMillis(Instant.now().toEpochMilli()))
-                                        .build())
-                                .setAggregation(
-                                    Aggregation.newBuilder()
-                                        .setAlignmentPeriod(
-                                            Duration.newBuilder().setSeconds(timeInSecs).build())
-                                        .setPerSeriesAligner(Aggregation.Aligner.ALIGN_MEAN)
-                                        .build())
-                                .setView(ListTimeSeriesRequest.TimeSeriesView.FULL)
-                                .build())
-                        .iterateAll()
+                    cpuTimeSeries(
+                            projectId,
+                            dataflowJobId,
+                            endTime.minusSeconds(timeInSecs),
+                            endTime,
+                            timeInSecs)
                         .spliterator(),
                     false)
-                .flatMap(
-                    ts ->
-                        ts.getPointsList().stream()
-                            .map(
-                                point ->
-                                    new WorkerCpuUtilization(
-                                        ts.getMetric().getLabelsMap().get("instance_name"),
-                                        point.getValue().getDoubleValue() * 100,
-                                        Instant.ofEpochSecond(
-                                            point.getInterval().getStartTime().getSeconds()))))
+                .flatMap(PipelineMetricsService::toWorkerCpuUtilization)
                 .toList(),
         "Errors while trying to retrieve CPU metrics for jobid %s",
         dataflowJobId);
   }
 
+  /** Non blocking implementation of the "Job Workers CPU metrics" tool. */
+  public Mono<List<WorkerCpuUtilization>> workerCpuUtilizationAsync(
+      String projectId, String dataflowJobId) {
+    var timeInSecs = 300;
+    var endTime = Instant.now();
+    var request =
+        cpuTimeSeriesRequest(
+            projectId, dataflowJobId, endTime.minusSeconds(timeInSecs), endTime, timeInSecs);
+    return executeAsync(
+        () ->
+            pages(
+                    pageToken ->
+                        gcpMetricsClient
+                            .listTimeSeriesCallable()
+                            .futureCall(request.toBuilder().setPageToken(pageToken).build()),
+                    ListTimeSeriesResponse::getNextPageToken)
+                .flatMapIterable(ListTimeSeriesResponse::getTimeSeriesList)
+                .flatMapIterable(series -> toWorkerCpuUtilization(series).toList())
+                .collectList(),
+        "Errors while trying to retrieve CPU metrics for jobid %s",
+        dataflowJobId);
+  }
+
+  static Stream<WorkerCpuUtilization> toWorkerCpuUtilization(TimeSeries ts) {
+    return ts.getPointsList().stream()
+        .map(
+            point ->
+                new WorkerCpuUtilization(
+                    ts.getMetric().getLabelsMap().get("instance_name"),
+                    point.getValue().getDoubleValue() * 100,
+                    Instant.ofEpochSecond(point.getInterval().getStartTime().getSeconds())));
+  }
+
+  @Tool(
+      name = "Job Workers CPU Analysis",
+      description =
+          "Computes the CPU utilization statistics for the job's workers: percentiles, mean, "
+              + "skew between workers, idle and saturated worker counts and the busiest and "
+              + "idlest workers. Prefer this over 'Job Workers CPU metrics' for jobs with many "
+              + "workers.")
+  public WorkerCpuAnalysis workerCpuAnalysis(
+      @ToolParam(description = "Job's GCP project identifier.") String projectId,
+      @ToolParam(description = "Job's identifier.") String dataflowJobId,
+      @ToolParam(
+              description = "The amount of seconds ago to analyze, defaults to 300.",
+              required = false)
+          Integer windowSeconds,
+      @ToolParam(
+              description =
+                  "The alignment period in seconds, each worker gets one mean value per period. "
+                      + "Defaults to 60, which is also the minimum.",
+              required = false)
+          Integer alignmentSeconds,
+      @ToolParam(
+              description =
+                  "Mean utilization percentage under which a worker is considered idle, "
+                      + "defaults to 10.",
+              required = false)
+          Double idleThreshold,
+      @ToolParam(
+              description =
+                  "Mean utilization percentage over which a worker is considered saturated, "
+                      + "defaults to 90.",
+              required = false)
+          Double saturatedThreshold,
+      @ToolParam(
+              description = "Include the raw utilization points per worker, defaults to false.",
+              required = false)
+          Boolean includePoints,
+      ToolContext context) {
+    var window = Math.max(60, Optional.ofNullable(windowSeconds).orElse(300));
+    // the monitoring API does not align on periods shorter than a minute
+    var alignment =
+        Math.max(60, Math.min(window, Optional.ofNullable(alignmentSeconds).orElse(60)));
+    var endTime = Instant.now();
+    var startTime = endTime.minusSeconds(window);
+    return execute(
+        () ->
+            new WorkerCpuAnalysis(
+                dataflowJobId,
+                startTime,
+                endTime,
+                alignment,
+                CpuAnalysis.of(
+                        cpuTimeSeries(projectId, dataflowJobId, startTime, endTime, alignment),
+                        Boolean.TRUE.equals(includePoints))
+                    .summary(
+                        Optional.ofNullable(idleThreshold).orElse(10.0),
+                        Optional.ofNullable(saturatedThreshold).orElse(90.0),
+                        5)),
+        "Errors while trying to analyze CPU metrics for jobid %s",
+        dataflowJobId);
+  }
+
+  Iterable<TimeSeries> cpuTimeSeries(
+      String projectId, String dataflowJobId, Instant startTime, Instant endTime, int alignment) {
+    return gcpMetricsClient
+        .listTimeSeries(
+            cpuTimeSeriesRequest(projectId, dataflowJobId, startTime, endTime, alignment))
+        .iterateAll();
+  }
+
+  static ListTimeSeriesRequest cpuTimeSeriesRequest(
+      String projectId, String dataflowJobId, Instant startTime, Instant endTime, int alignment) {
+    return ListTimeSeriesRequest.newBuilder()
+        .setName(ProjectName.of(projectId.trim()).toString())
+        .setFilter(
+            String.format(
+                "metric.type = \"compute.googleapis.com/instance/cpu/utilization\" AND "
+                    + "metadata.user_labels.dataflow_job_id = \"%s\"",
+                dataflowJobId.trim()))
+        .setInterval(
+            TimeInterval.newBuilder()
+                .setStartTime(Timestamps.fromMillis(startTime.toEpochMilli()))
+                .setEndTime(Timestamps.fromMillis(endTime.toEpochMilli()))
+                .build())
+        .setAggregation(
+            Aggregation.newBuilder()
+                .setAlignmentPeriod(Duration.newBuilder().setSeconds(alignment).build())
+                .setPerSeriesAligner(Aggregation.Aligner.ALIGN_MEAN)
+                .build())
+        .setView(ListTimeSeriesRequest.TimeSeriesView.FULL)
+        .build();
+  }
+
+  public record WorkerCpuAnalysis(
+      String jobId,
+      Instant startTime,
+      Instant endTime,
+      int alignmentSeconds,
+      CpuAnalysis.Summary statistics) {}
+
   public record WorkerCpuUtilization(String name, Double utilization, Instant timestamp) {}
+
+  /**
+   * A cheap summary of the job condition. The buckets are orders of magnitude: 0 for values under
+   * 1, 1 from 1 to 9, 2 from 10 to 99 and so on, and -1 when the value is not known yet. Terminal
+   * jobs have both buckets at 0.
+   *
+   * @param jobId Job's identifier.
+   * @param state the job's current state.
+   * @param terminal whether the job state is terminal.
+   * @param lagBucket bucket of the largest system lag over the last five minutes, in seconds.
+   * @param throughputBucket bucket of the elements per second read by the sources, measured
+   *     between two fingerprints at least a minute apart, see {@link ThroughputSamples}.
+   * @param fingerprint all of the above combined in a single value.
+   */
+  public record JobFingerprint(
+      String jobId,
+      String state,
+      boolean terminal,
+      int lagBucket,
+      int throughputBucket,
+      String fingerprint) {
+
+    static JobFingerprint of(
+        String jobId, String state, boolean terminal, double lag, double throughput) {
+      var lagBucket = bucket(lag);
+      var throughputBucket = bucket(throughput);
+      return new JobFingerprint(
+          jobId,
+          state,
+          terminal,
+          lagBucket,
+          throughputBucket,
+          "%s|%s|%d|%d".formatted(jobId, state, lagBucket, throughputBucket));
+    }
+
+    static int bucket(double value) {
+      if (Double.isNaN(value)) {
+        return -1;
+      }
+      return value < 1 ? 0 : 1 + (int) Math.floor(Math.log10(value));
+    }
+  }
 }
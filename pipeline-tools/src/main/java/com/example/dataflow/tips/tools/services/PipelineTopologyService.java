@@ -16,31 +16,43 @@
 package com.example.dataflow.tips.tools.services;
 
 import static com.example.dataflow.tips.tools.common.Utils.execute;
+import static com.example.dataflow.tips.tools.common.Utils.executeAsync;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.google.dataflow.v1beta3.DisplayData;
-import com.google.dataflow.v1beta3.GetJobRequest;
-import com.google.dataflow.v1beta3.JobView;
+import com.google.dataflow.v1beta3.Job;
 import com.google.dataflow.v1beta3.JobsV1Beta3Client;
 import com.google.dataflow.v1beta3.ListJobsRequest;
 import com.google.dataflow.v1beta3.TransformSummary;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 /** */
 @Service
 public class PipelineTopologyService {
   private final JobsV1Beta3Client jobsClient;
+  private final JobCache jobCache;
+  private final JobPager jobPager;
+  private final RegionFanOut regionFanOut;
 
-  public PipelineTopologyService(JobsV1Beta3Client jobsClient) {
+  public PipelineTopologyService(
+      JobsV1Beta3Client jobsClient,
+      JobCache jobCache,
+      JobPager jobPager,
+      RegionFanOut regionFanOut) {
     this.jobsClient = jobsClient;
+    this.jobCache = jobCache;
+    this.jobPager = jobPager;
+    this.regionFanOut = regionFanOut;
   }
 
   @Tool(
@@ -54,37 +66,76 @@ public class PipelineTopologyService {
       @ToolParam(description = "Job's identifier.") String jobId,
       ToolContext context) {
     return execute(
-        () -> {
-          var job =
-              jobsClient.getJob(
-                  GetJobRequest.getDefaultInstance().toBuilder()
-                      .setJobId(jobId.trim())
-                      .setProjectId(projectId.trim())
-                      .setLocation(regionId.trim())
-                      .setView(JobView.JOB_VIEW_ALL)
-                      .build());
-          return new Pipeline(
-              job.getName(),
-              job.getProjectId(),
-              job.getLocation(),
-              job.getId(),
-              job.getType().toString(),
-              job.getCurrentState().toString(),
-              Instant.ofEpochSecond(job.getStartTime().getSeconds()),
-              job.getEnvironment().getExperimentsList(),
-              job.getEnvironment().getWorkerPoolsList().stream()
-                  .findFirst()
-                  .map(wp -> wp.getMachineType())
-                  .orElse("NA"),
-              toTransform(job.getPipelineDescription().getOriginalPipelineTransformList()),
-              toDisplayData(job.getPipelineDescription().getDisplayDataList()));
-        },
+        () -> pipelineDetails(jobCache.job(projectId, regionId, jobId)),
+        "Error while retrieving information for job id: %s, project: %s, region: %s",
+        jobId,
+        projectId,
+        regionId);
+  }
+
+  /** Non blocking implementation of the "Job Details" tool. */
+  public Mono<Pipeline> jobDetailsAsync(String projectId, String regionId, String jobId) {
+    return executeAsync(
+        () ->
+            // the cached future is shared with other callers, a cancellation should not affect them
+            Mono.fromFuture(() -> jobCache.jobAsync(projectId, regionId, jobId), true)
+                .map(this::pipelineDetails),
         "Error while retrieving information for job id: %s, project: %s, region: %s",
         jobId,
         projectId,
         regionId);
   }
 
+  Pipeline pipelineDetails(Job job) {
+    return new Pipeline(
+        job.getName(),
+        job.getProjectId(),
+        job.getLocation(),
+        job.getId(),
+        job.getType().toString(),
+        job.getCurrentState().toString(),
+        Instant.ofEpochSecond(job.getStartTime().getSeconds()),
+        job.getEnvironment().getExperimentsList(),
+        job.getEnvironment().getWorkerPoolsList().stream()
+            .findFirst()
+            .map(wp -> wp.getMachineType())
+            .orElse("NA"),
+        toTransform(job.getPipelineDescription().getOriginalPipelineTransformList()),
+        toDisplayData(job.getPipelineDescription().getDisplayDataList()));
+  }
+
+  @Tool(
+      name = "Job Topology Summary",
+      description =
+          "Get a compact summary of the Dataflow's job topology: the graph of execution stages, "
+              + "where each stage lists the indexes of its upstream stages, and the pipeline's "
+              + "sources and sinks. Prefer this over 'Job Details' for large pipelines.")
+  public JobTopology.Summary jobTopologySummary(
+      @ToolParam(description = "Job's GCP project identifier.") String projectId,
+      @ToolParam(description = "Job's GCP region identifier.") String regionId,
+      @ToolParam(description = "Job's identifier.") String jobId,
+      @ToolParam(
+              description =
+                  "Include the graph of the original pipeline transforms, defaults to false.",
+              required = false)
+          Boolean includeTransforms,
+      @ToolParam(
+              description = "Include the pipeline and transforms display data, defaults to false.",
+              required = false)
+          Boolean includeDisplayData,
+      ToolContext context) {
+    return execute(
+        () ->
+            JobTopology.of(jobCache.job(projectId, regionId, jobId))
+                .summary(
+                    Boolean.TRUE.equals(includeTransforms),
+                    Boolean.TRUE.equals(includeDisplayData)),
+        "Error while retrieving the topology summary for job id: %s, project: %s, region: %s",
+        jobId,
+        projectId,
+        regionId);
+  }
+
   @Tool(
       name = "Job List For Project",
       description = "Get Dataflow's jobs executed in a GCP project.")
@@ -104,21 +155,39 @@ public class PipelineTopologyService {
                         .iterateAll()
                         .spliterator(),
                     false)
-                .map(
-                    job ->
-                        new Pipeline(
-                            job.getName(),
-                            job.getProjectId(),
-                            job.getLocation(),
-                            job.getId(),
-                            job.getType().toString(),
-                            job.getCurrentState().toString(),
-                            Instant.ofEpochSecond(job.getStartTime().getSeconds())))
+                .map(PipelineTopologyService::pipelineSummary)
                 .toList(),
         "Error while retrieving pipelines for project: %s",
         projectId);
   }
 
+  @Tool(
+      name = "Job List For Project Across Regions",
+      description =
+          "Get Dataflow's jobs executed in a GCP project, looking concurrently on all the "
+              + "known regions. Jobs are sorted by start time, newest first, and regions that "
+              + "could not be listed are reported with an error.")
+  public RegionFanOut.ProjectJobs pipelinesAcrossRegions(
+      @ToolParam(description = "Pipelines GCP project identifier.") String projectId,
+      @ToolParam(
+              description =
+                  "Jobs state filter, expected values are: ALL, ACTIVE or TERMINATED. "
+                      + "Defaults to ALL.",
+              required = false)
+          String state,
+      ToolContext context) {
+    return execute(
+        () ->
+            regionFanOut.jobs(
+                projectId,
+                Optional.ofNullable(state)
+                    .filter(filter -> !filter.isBlank())
+                    .map(filter -> ListJobsRequest.Filter.valueOf(filter.trim().toUpperCase()))
+                    .orElse(ListJobsRequest.Filter.ALL)),
+        "Error while retrieving pipelines across regions for project: %s",
+        projectId);
+  }
+
   @Tool(
       name = "Job List For Project and Region",
       description = "Get Dataflow's jobs executed in a GCP project and region.")
@@ -140,16 +209,7 @@ public class PipelineTopologyService {
                         .iterateAll()
                         .spliterator(),
                     false)
-                .map(
-                    job ->
-                        new Pipeline(
-                            job.getName(),
-                            job.getProjectId(),
-                            job.getLocation(),
-                            job.getId(),
-                            job.getType().toString(),
-                            job.getCurrentState().toString(),
-                            Instant.ofEpochSecond(job.getStartTime().getSeconds())))
+                .map(PipelineTopologyService::pipelineSummary)
                 .toList(),
         "Error while retrieving pipelines for project: %s on region %s",
         projectId,
@@ -180,16 +240,7 @@ public class PipelineTopologyService {
                         .iterateAll()
                         .spliterator(),
                     false)
-                .map(
-                    job ->
-                        new Pipeline(
-                            job.getName(),
-                            job.getProjectId(),
-                            job.getLocation(),
-                            job.getId(),
-                            job.getType().toString(),
-                            job.getCurrentState().toString(),
-                            Instant.ofEpochSecond(job.getStartTime().getSeconds())))
+                .map(PipelineTopologyService::pipelineSummary)
                 .toList(),
         "Error while retrieving pipelines for project: %s on region %s with name %s",
         projectId,
@@ -197,6 +248,75 @@ public class PipelineTopologyService {
         name);
   }
 
+  @Tool(
+      name = "Job List Page",
+      description =
+          "Get one page of Dataflow's jobs executed in a GCP project, optionally in a region, "
+              + "filtered by state and start time. When more jobs are available the result "
+              + "includes a nextPageToken to request the following page.")
+  public JobPager.JobPage pipelinesPage(
+      @ToolParam(description = "Jobs GCP project identifier.") String projectId,
+      @ToolParam(description = "Jobs GCP region identifier.", required = false) String regionId,
+      @ToolParam(
+              description =
+                  "Jobs state filter, expected values are: ALL, ACTIVE or TERMINATED. "
+                      + "Defaults to ALL.",
+              required = false)
+          String state,
+      @ToolParam(
+              description =
+                  "Only include jobs started after this ISO instant, "
+                      + "for example 2025-01-31T10:15:30Z.",
+              required = false)
+          String startedAfter,
+      @ToolParam(
+              description = "Maximum amount of jobs in the page, defaults to 25 and up to 100.",
+              required = false)
+          Integer pageSize,
+      @ToolParam(
+              description = "The nextPageToken returned with the previous page, if any.",
+              required = false)
+          String pageToken,
+      ToolContext context) {
+    return execute(
+        () -> {
+          var request = ListJobsRequest.newBuilder().setProjectId(projectId.trim());
+          Optional.ofNullable(regionId)
+              .filter(region -> !region.isBlank())
+              .ifPresent(region -> request.setLocation(region.trim()));
+          Optional.ofNullable(state)
+              .filter(filter -> !filter.isBlank())
+              .ifPresent(
+                  filter ->
+                      request.setFilter(
+                          ListJobsRequest.Filter.valueOf(filter.trim().toUpperCase())));
+          var after =
+              Optional.ofNullable(startedAfter)
+                  .filter(time -> !time.isBlank())
+                  .map(time -> Instant.parse(time.trim()))
+                  .orElse(Instant.EPOCH);
+          return jobPager.page(
+              request.build(),
+              job -> job.getStartTime().getSeconds() >= after.getEpochSecond(),
+              Optional.ofNullable(pageSize).orElse(25),
+              pageToken);
+        },
+        "Error while retrieving a page of pipelines for project: %s, region: %s",
+        projectId,
+        regionId);
+  }
+
+  static Pipeline pipelineSummary(Job job) {
+    return new Pipeline(
+        job.getName(),
+        job.getProjectId(),
+        job.getLocation(),
+        job.getId(),
+        job.getType().toString(),
+        job.getCurrentState().toString(),
+        Instant.ofEpochSecond(job.getStartTime().getSeconds()));
+  }
+
   List<Transform> toTransform(List<TransformSummary> summaries) {
     return summaries.stream()
         .map(
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import com.example.dataflow.tips.tools.config.RegionsProperties;
+import com.example.dataflow.tips.tools.services.PipelineTopologyService.Pipeline;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.google.api.gax.grpc.GrpcCallContext;
+import com.google.dataflow.v1beta3.JobsV1Beta3Client;
+import com.google.dataflow.v1beta3.ListJobsRequest;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.StreamSupport;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lists a project's jobs on all the configured regions concurrently, each region on its own virtual
+ * thread. Slow or failing regions do not fail the whole listing: a region whose page request
+ * exceeds the region timeout is reported with the failure, and once the deadline of the whole fan
+ * out expires the regions still listing are reported as timed out. Every region runs within a gRPC
+ * context carrying the fan out deadline, which its calls honour and which is cancelled once the
+ * region is given up.
+ */
+@Component
+public class RegionFanOut implements DisposableBean {
+
+  private final JobsV1Beta3Client jobsClient;
+  private final RegionsProperties properties;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+  public RegionFanOut(JobsV1Beta3Client jobsClient, RegionsProperties properties) {
+    this.jobsClient = jobsClient;
+    this.properties = properties;
+  }
+
+  /**
+   * Lists the project's jobs on the configured regions.
+   *
+   * @param projectId the GCP project identifier.
+   * @param filter the jobs state filter.
+   * @return the jobs of all the regions sorted by start time, newest first, and the per region
+   *     status.
+   */
+  public ProjectJobs jobs(String projectId, ListJobsRequest.Filter filter) {
+    var started = System.nanoTime();
+    // regions run concurrently, so the deadline applies to the whole fan out
+    var deadline = Deadline.after(properties.deadline().toNanos(), TimeUnit.NANOSECONDS);
+    var pending = new LinkedHashMap<String, RegionTask>();
+    for (var region : properties.locations()) {
+      var context = Context.current().withDeadline(deadline, scheduler);
+      pending.put(
+          region,
+          new RegionTask(
+              context,
+              executor.submit(context.wrap(() -> regionJobs(projectId, region, filter)))));
+    }
+    var jobs = new ArrayList<Pipeline>();
+    var regions = new ArrayList<RegionStatus>();
+    for (var entry : pending.entrySet()) {
+      var task = entry.getValue();
+      try {
+        var remaining = Math.max(0, deadline.timeRemaining(TimeUnit.NANOSECONDS));
+        var regionJobs = task.future().get(remaining, TimeUnit.NANOSECONDS);
+        jobs.addAll(regionJobs);
+        regions.add(new RegionStatus(entry.getKey(), regionJobs.size(), null));
+      } catch (TimeoutException ex) {
+        task.cancel(ex);
+        regions.add(
+            new RegionStatus(
+                entry.getKey(), 0, "Still listing jobs when the discovery deadline expired."));
+      } catch (ExecutionException ex) {
+        regions.add(
+            new RegionStatus(
+                entry.getKey(), 0, failure(ex.getCause() != null ? ex.getCause() : ex)));
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        task.cancel(ex);
+        regions.add(new RegionStatus(entry.getKey(), 0, "Interrupted while listing jobs."));
+      } finally {
+        // releases the deadline timer of the regions already completed
+        task.context().cancel(null);
+      }
+    }
+    jobs.sort(
+        Comparator.comparing(
+                Pipeline::startTime, Comparator.nullsLast(Comparator.<Instant>naturalOrder()))
+            .reversed());
+    return new ProjectJobs(projectId, jobs, regions, (System.nanoTime() - started) / 1_000_000);
+  }
+
+  /** The failure message, or its type and gRPC status when it has none. */
+  static String failure(Throwable failure) {
+    if (failure.getMessage() != null) {
+      return failure.getMessage();
+    }
+    var status = Status.fromThrowable(failure);
+    return status.getCode() == Status.Code.UNKNOWN
+        ? failure.getClass().getSimpleName()
+        : failure.getClass().getSimpleName() + " with status " + status.getCode();
+  }
+
+  List<Pipeline> regionJobs(String projectId, String region, ListJobsRequest.Filter filter) {
+    return StreamSupport.stream(
+            jobsClient
+                .listJobsPagedCallable()
+                .call(
+                    ListJobsRequest.newBuilder()
+                        .setProjectId(projectId.trim())
+                        .setLocation(region)
+                        .setFilter(filter)
+                        .setPageSize(Math.min(100, properties.maxJobsPerRegion()))
+                        .build(),
+                    // applies to every page request of the region
+                    GrpcCallContext.createDefault()
+                        .withTimeoutDuration(properties.regionTimeout()))
+                .iterateAll()
+                .spliterator(),
+            false)
+        .limit(properties.maxJobsPerRegion())
+        .map(PipelineTopologyService::pipelineSummary)
+        .toList();
+  }
+
+  /**
+   * A region listing, its gRPC context is cancelled to stop the in flight calls as interrupting the
+   * thread does not reach them.
+   */
+  record RegionTask(Context.CancellableContext context, Future<List<Pipeline>> future) {
+    void cancel(Throwable cause) {
+      context.cancel(cause);
+      future.cancel(true);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * The listing status of a region.
+   *
+   * @param region the region identifier.
+   * @param jobCount amount of jobs found in the region.
+   * @param error the reason the region jobs could not be listed, null when successful.
+   */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record RegionStatus(String region, int jobCount, String error) {}
+
+  public record ProjectJobs(
+      String projectId, List<Pipeline> jobs, List<RegionStatus> regions, long durationMillis) {}
+}
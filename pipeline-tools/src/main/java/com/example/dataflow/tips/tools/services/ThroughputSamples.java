@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import com.example.dataflow.tips.tools.config.MetricsCursorProperties;
+import com.example.dataflow.tips.tools.services.JobCache.JobKey;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.time.Instant;
+import org.springframework.stereotype.Component;
+
+/**
+ * Computes the throughput of the jobs sources as the rate between two samples of their cumulative
+ * element count at least a minute apart. The latest sample of every job is kept like the metric
+ * cursors, up to the configured amount of jobs and while the job is polled.
+ */
+@Component
+public class ThroughputSamples {
+  static final Duration MIN_INTERVAL = Duration.ofMinutes(1);
+
+  private final Cache<JobKey, Sample> samples;
+
+  public ThroughputSamples(MetricsCursorProperties properties) {
+    this.samples =
+        Caffeine.newBuilder()
+            .maximumSize(properties.maximumJobs())
+            .expireAfterAccess(properties.idleTtl())
+            .build();
+  }
+
+  /**
+   * A sample of the sources element count.
+   *
+   * @param time when the count was sampled.
+   * @param count the cumulative element count.
+   * @param rate elements per second since the previous sample, NaN when unknown.
+   */
+  record Sample(Instant time, double count, double rate) {}
+
+  /**
+   * Samples the job's sources element count.
+   *
+   * @return the elements per second since the previous sample at least a minute older, the last
+   *     computed rate for closer samples, or NaN until two samples were taken.
+   */
+  double rate(JobKey job, Instant time, double count) {
+    return samples.asMap().compute(job, (key, previous) -> next(previous, time, count)).rate();
+  }
+
+  static Sample next(Sample previous, Instant time, double count) {
+    // a smaller count means the counters were reset, the rate is computed again from scratch
+    if (previous == null || count < previous.count()) {
+      return new Sample(time, count, Double.NaN);
+    }
+    var elapsed = Duration.between(previous.time(), time);
+    if (elapsed.compareTo(MIN_INTERVAL) < 0) {
+      return previous;
+    }
+    return new Sample(time, count, (count - previous.count()) * 1000 / elapsed.toMillis());
+  }
+}
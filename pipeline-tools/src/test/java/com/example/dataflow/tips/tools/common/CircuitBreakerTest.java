@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.dataflow.tips.tools.common.CircuitBreaker.Outcome;
+import com.example.dataflow.tips.tools.common.CircuitBreaker.State;
+import com.example.dataflow.tips.tools.config.ResilienceProperties;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+  static CircuitBreaker breaker(Duration openDuration) {
+    return new CircuitBreaker(
+        "Dataflow Jobs", new ResilienceProperties.CircuitBreaker(4, 4, 0.5, openDuration, 2));
+  }
+
+  static CircuitBreaker opened(Duration openDuration) {
+    var breaker = breaker(openDuration);
+    for (var call = 0; call < 4; call++) {
+      breaker.record(Outcome.FAILURE);
+    }
+    return breaker;
+  }
+
+  @Test
+  void staysClosedUntilTheMinimumCalls() {
+    var breaker = breaker(Duration.ofMinutes(1));
+    for (var call = 0; call < 3; call++) {
+      assertThat(breaker.tryAcquire()).isTrue();
+      breaker.record(Outcome.FAILURE);
+    }
+
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  void opensWhenTheFailureRateIsReached() {
+    var breaker = breaker(Duration.ofMinutes(1));
+    breaker.record(Outcome.SUCCESS);
+    breaker.record(Outcome.FAILURE);
+    breaker.record(Outcome.SUCCESS);
+    breaker.record(Outcome.FAILURE);
+
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+    assertThat(breaker.tryAcquire()).isFalse();
+    assertThat(breaker.rejection()).startsWith("The Dataflow Jobs API is failing");
+  }
+
+  @Test
+  void countsOnlyTheRecentCalls() {
+    var breaker = breaker(Duration.ofMinutes(1));
+    breaker.record(Outcome.FAILURE);
+    for (var call = 0; call < 4; call++) {
+      breaker.record(Outcome.SUCCESS);
+    }
+    breaker.record(Outcome.FAILURE);
+
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  void ignoresTheCancelledCalls() {
+    var breaker = breaker(Duration.ofMinutes(1));
+    for (var call = 0; call < 10; call++) {
+      breaker.record(Outcome.IGNORED);
+    }
+    breaker.record(Outcome.FAILURE);
+
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  void letsTheProbesThroughOnceTheOpenDurationElapsed() {
+    var breaker = opened(Duration.ZERO);
+
+    assertThat(breaker.tryAcquire()).isTrue();
+    assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+    assertThat(breaker.tryAcquire()).isTrue();
+    assertThat(breaker.tryAcquire()).isFalse();
+  }
+
+  @Test
+  void closesWhenAllTheProbesSucceed() {
+    var breaker = opened(Duration.ZERO);
+    breaker.tryAcquire();
+    breaker.tryAcquire();
+
+    breaker.record(Outcome.SUCCESS);
+    assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+    breaker.record(Outcome.SUCCESS);
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+
+    // the failures before opening are forgotten
+    for (var call = 0; call < 3; call++) {
+      breaker.record(Outcome.FAILURE);
+    }
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  void opensAgainOnAFailedProbe() {
+    var breaker = opened(Duration.ofMillis(50));
+    assertThat(breaker.tryAcquire()).isFalse();
+    await(Duration.ofMillis(60));
+    assertThat(breaker.tryAcquire()).isTrue();
+
+    breaker.record(Outcome.FAILURE);
+
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+    assertThat(breaker.tryAcquire()).isFalse();
+  }
+
+  @Test
+  void returnsTheProbeOfACancelledCall() {
+    var breaker = opened(Duration.ZERO);
+    breaker.tryAcquire();
+    breaker.tryAcquire();
+
+    breaker.record(Outcome.IGNORED);
+
+    assertThat(breaker.tryAcquire()).isTrue();
+    assertThat(breaker.tryAcquire()).isFalse();
+  }
+
+  static void await(Duration duration) {
+    try {
+      Thread.sleep(duration);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(ex);
+    }
+  }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.dataflow.tips.tools.config.ResilienceProperties;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ResilienceInterceptorTest {
+  static final String SERVICE = "test.Jobs";
+  static final MethodDescriptor.Marshaller<String> STRINGS =
+      new MethodDescriptor.Marshaller<>() {
+        @Override
+        public InputStream stream(String value) {
+          return new ByteArrayInputStream(value.getBytes(UTF_8));
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+          try {
+            return new String(stream.readAllBytes(), UTF_8);
+          } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+          }
+        }
+      };
+  static final MethodDescriptor<String, String> LIST_JOBS = method("ListJobs");
+  static final MethodDescriptor<String, String> GET_JOB = method("GetJob");
+  static final MethodDescriptor<String, String> CREATE_JOB = method("CreateJob");
+
+  private final Queue<BiConsumer<String, StreamObserver<String>>> responses =
+      new ConcurrentLinkedQueue<>();
+  private final AtomicInteger received = new AtomicInteger();
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+  private final ResilienceProperties settings =
+      new ResilienceProperties(
+          true,
+          new ResilienceProperties.Deadlines(
+              Duration.ofSeconds(30), Map.of(), Duration.ofSeconds(5)),
+          new ResilienceProperties.Retry(
+              3,
+              Duration.ofMillis(1),
+              Duration.ofMillis(10),
+              2,
+              List.of(Status.Code.UNAVAILABLE)),
+          new ResilienceProperties.Hedging(
+              true,
+              List.of("GetJob"),
+              0.95,
+              Duration.ofMillis(50),
+              Duration.ofMillis(10),
+              20),
+          new ResilienceProperties.CircuitBreaker(10, 4, 0.5, Duration.ofMinutes(1), 1));
+  private final CircuitBreaker breaker =
+      new CircuitBreaker("Dataflow Jobs", settings.circuitBreaker());
+  private Server server;
+  private ManagedChannel channel;
+
+  static MethodDescriptor<String, String> method(String name) {
+    return MethodDescriptor.<String, String>newBuilder()
+        .setType(MethodDescriptor.MethodType.UNARY)
+        .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE, name))
+        .setRequestMarshaller(STRINGS)
+        .setResponseMarshaller(STRINGS)
+        .build();
+  }
+
+  @BeforeEach
+  void start() throws IOException {
+    var name = InProcessServerBuilder.generateName();
+    var service = ServerServiceDefinition.builder(SERVICE);
+    for (var method : List.of(LIST_JOBS, GET_JOB, CREATE_JOB)) {
+      service.addMethod(method, ServerCalls.asyncUnaryCall(this::respond));
+    }
+    server = InProcessServerBuilder.forName(name).addService(service.build()).build().start();
+    channel =
+        InProcessChannelBuilder.forName(name)
+            .intercept(
+                new ResilienceInterceptor("Dataflow Jobs", settings, breaker, registry, scheduler))
+            .build();
+  }
+
+  @AfterEach
+  void stop() {
+    channel.shutdownNow();
+    server.shutdownNow();
+    scheduler.shutdownNow();
+  }
+
+  void respond(String request, StreamObserver<String> observer) {
+    received.incrementAndGet();
+    var response = responses.poll();
+    if (response == null) {
+      observer.onError(Status.INTERNAL.withDescription("Unexpected call.").asRuntimeException());
+      return;
+    }
+    response.accept(request, observer);
+  }
+
+  static BiConsumer<String, StreamObserver<String>> succeed(String response) {
+    return (request, observer) -> {
+      observer.onNext(response);
+      observer.onCompleted();
+    };
+  }
+
+  static BiConsumer<String, StreamObserver<String>> fail(Status status) {
+    return (request, observer) -> observer.onError(status.asRuntimeException());
+  }
+
+  /** Never responds, counting down the latch once the attempt is cancelled. */
+  static BiConsumer<String, StreamObserver<String>> hang(CountDownLatch cancelled) {
+    return (request, observer) ->
+        ((ServerCallStreamObserver<String>) observer).setOnCancelHandler(cancelled::countDown);
+  }
+
+  String call(MethodDescriptor<String, String> method) {
+    return ClientCalls.blockingUnaryCall(channel, method, CallOptions.DEFAULT, "job-1");
+  }
+
+  double counter(String name, String... tags) {
+    var counter = registry.find(name).tags(tags).counter();
+    return counter == null ? 0 : counter.count();
+  }
+
+  @Test
+  void retriesTheFailedReads() {
+    responses.add(fail(Status.UNAVAILABLE));
+    responses.add(succeed("done"));
+
+    assertThat(call(LIST_JOBS)).isEqualTo("done");
+    assertThat(received).hasValue(2);
+    assertThat(counter(ResilienceInterceptor.RETRIES, "method", "ListJobs")).isEqualTo(1);
+  }
+
+  @Test
+  void failsWithTheLastStatusOnceTheRetriesAreExhausted() {
+    for (var attempt = 0; attempt < 3; attempt++) {
+      responses.add(fail(Status.UNAVAILABLE.withDescription("attempt " + attempt)));
+    }
+
+    assertThatThrownBy(() -> call(LIST_JOBS))
+        .isInstanceOfSatisfying(
+            StatusRuntimeException.class,
+            ex -> {
+              assertThat(ex.getStatus().getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+              assertThat(ex.getStatus().getDescription()).isEqualTo("attempt 2");
+            });
+    assertThat(received).hasValue(3);
+    assertThat(counter(ResilienceInterceptor.RETRIES, "method", "ListJobs")).isEqualTo(2);
+  }
+
+  @Test
+  void doesNotRetryTheStatusesNotConfigured() {
+    responses.add(fail(Status.NOT_FOUND));
+
+    assertThatThrownBy(() -> call(LIST_JOBS))
+        .isInstanceOfSatisfying(
+            StatusRuntimeException.class,
+            ex -> assertThat(ex.getStatus().getCode()).isEqualTo(Status.Code.NOT_FOUND));
+    assertThat(received).hasValue(1);
+  }
+
+  @Test
+  void doesNotRetryTheWrites() {
+    responses.add(fail(Status.UNAVAILABLE));
+
+    assertThatThrownBy(() -> call(CREATE_JOB)).isInstanceOf(StatusRuntimeException.class);
+    assertThat(received).hasValue(1);
+  }
+
+  @Test
+  void usesTheHedgedResponseWhenTheFirstAttemptIsSlow() throws InterruptedException {
+    var cancelled = new CountDownLatch(1);
+    responses.add(hang(cancelled));
+    responses.add(succeed("hedged"));
+
+    assertThat(call(GET_JOB)).isEqualTo("hedged");
+    assertThat(received).hasValue(2);
+    assertThat(counter(ResilienceInterceptor.HEDGES, "result", "sent")).isEqualTo(1);
+    assertThat(counter(ResilienceInterceptor.HEDGES, "result", "won")).isEqualTo(1);
+    // the slow attempt is cancelled once the hedged one completed the call
+    assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  void cancelsTheAttemptsWhenTheCallerCancels() throws InterruptedException {
+    var cancelled = new CountDownLatch(1);
+    responses.add(hang(cancelled));
+
+    var response =
+        ClientCalls.futureUnaryCall(channel.newCall(LIST_JOBS, CallOptions.DEFAULT), "job-1");
+    await(() -> received.get() == 1);
+    response.cancel(true);
+
+    assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+    // the cancelled attempt is not retried
+    assertThat(received).hasValue(1);
+  }
+
+  @Test
+  void rejectsTheCallsWhileTheCircuitIsOpen() {
+    for (var call = 0; call < 4; call++) {
+      breaker.record(CircuitBreaker.Outcome.FAILURE);
+    }
+
+    assertThatThrownBy(() -> call(LIST_JOBS))
+        .isInstanceOfSatisfying(
+            StatusRuntimeException.class,
+            ex -> {
+              assertThat(ex.getStatus().getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+              assertThat(ex.getStatus().getDescription())
+                  .startsWith("The Dataflow Jobs API is failing");
+            });
+    assertThat(received).hasValue(0);
+    assertThat(counter(ResilienceInterceptor.REJECTIONS)).isEqualTo(1);
+  }
+
+  @Test
+  void deliversTheResponseOutsideOfTheLock() throws Exception {
+    responses.add(succeed("done"));
+
+    assertThat(cancelledFromAnotherThreadOnClose(LIST_JOBS).get(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  void deliversTheRejectionOutsideOfTheLock() throws Exception {
+    for (var call = 0; call < 4; call++) {
+      breaker.record(CircuitBreaker.Outcome.FAILURE);
+    }
+
+    assertThat(cancelledFromAnotherThreadOnClose(LIST_JOBS).get(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  /**
+   * Starts a call whose listener, once closed, cancels it from another thread and waits for it,
+   * completing with whether that thread could take the call's lock in time.
+   */
+  CompletableFuture<Boolean> cancelledFromAnotherThreadOnClose(
+      MethodDescriptor<String, String> method) {
+    var unlocked = new CompletableFuture<Boolean>();
+    var call = channel.newCall(method, CallOptions.DEFAULT);
+    call.start(
+        new ClientCall.Listener<>() {
+          @Override
+          public void onClose(Status status, Metadata trailers) {
+            var other = new Thread(() -> call.cancel("Too late.", null));
+            other.start();
+            try {
+              other.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException ex) {
+              Thread.currentThread().interrupt();
+            }
+            unlocked.complete(!other.isAlive());
+          }
+        },
+        new Metadata());
+    call.request(1);
+    call.sendMessage("job-1");
+    call.halfClose();
+    return unlocked;
+  }
+
+  static void await(BooleanSupplier condition) throws InterruptedException {
+    var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.example.dataflow.tips.tools.services.CpuAnalysis.WorkerSummary;
+import com.example.dataflow.tips.tools.services.PipelineMetricsService.WorkerCpuUtilization;
+import com.google.api.Metric;
+import com.google.monitoring.v3.Point;
+import com.google.monitoring.v3.TimeInterval;
+import com.google.monitoring.v3.TimeSeries;
+import com.google.monitoring.v3.TypedValue;
+import com.google.protobuf.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class CpuAnalysisTest {
+  static final Instant START = Instant.parse("2025-06-01T10:00:00Z");
+
+  static TimeSeries worker(String name, double... utilizations) {
+    var series =
+        TimeSeries.newBuilder()
+            .setMetric(Metric.newBuilder().putLabels("instance_name", name));
+    for (var index = 0; index < utilizations.length; index++) {
+      var start = Timestamp.newBuilder().setSeconds(START.getEpochSecond() + 60L * index);
+      series.addPoints(
+          Point.newBuilder()
+              .setInterval(TimeInterval.newBuilder().setStartTime(start).setEndTime(start))
+              .setValue(TypedValue.newBuilder().setDoubleValue(utilizations[index])));
+    }
+    return series.build();
+  }
+
+  @Test
+  void picksTheNearestRankPercentiles() {
+    var sorted = IntStream.rangeClosed(1, 10).asDoubleStream().toArray();
+
+    assertThat(CpuAnalysis.percentile(sorted, 50)).isEqualTo(5);
+    assertThat(CpuAnalysis.percentile(sorted, 90)).isEqualTo(9);
+    assertThat(CpuAnalysis.percentile(sorted, 99)).isEqualTo(10);
+    assertThat(CpuAnalysis.percentile(sorted, 100)).isEqualTo(10);
+    assertThat(CpuAnalysis.percentile(sorted, 0)).isEqualTo(1);
+    assertThat(CpuAnalysis.percentile(new double[] {42}, 99)).isEqualTo(42);
+    assertThat(CpuAnalysis.percentile(new double[0], 50)).isZero();
+  }
+
+  @Test
+  void summarizesTheValuesOfAllTheWorkers() {
+    var summary =
+        CpuAnalysis.of(
+                List.of(
+                    worker("busy", 0.5, 1.0),
+                    worker("steady", 0.25, 0.25),
+                    worker("quiet", 0.125, 0.375)),
+                false)
+            .summary(30, 70, 10);
+
+    assertThat(summary.workerCount()).isEqualTo(3);
+    assertThat(summary.pointCount()).isEqualTo(6);
+    // the percentages sorted are 12.5, 25, 25, 37.5, 50 and 100
+    assertThat(summary.p50()).isEqualTo(25);
+    assertThat(summary.p90()).isEqualTo(100);
+    assertThat(summary.p99()).isEqualTo(100);
+    assertThat(summary.max()).isEqualTo(100);
+    assertThat(summary.mean()).isCloseTo(250.0 / 6, within(1e-9));
+    assertThat(summary.points()).isNull();
+  }
+
+  @Test
+  void comparesTheBusiestWorkerWithTheMedianWorker() {
+    var summary =
+        CpuAnalysis.of(
+                List.of(
+                    worker("busy", 0.5, 1.0),
+                    worker("steady", 0.25, 0.25),
+                    worker("quiet", 0.125, 0.375)),
+                false)
+            .summary(30, 70, 1);
+
+    // worker means of 75, 25 and 25
+    assertThat(summary.skewRatio()).isEqualTo(3);
+    assertThat(summary.idleWorkers()).isEqualTo(2);
+    assertThat(summary.saturatedWorkers()).isEqualTo(1);
+    assertThat(summary.busiestWorkers()).containsExactly(new WorkerSummary("busy", 75, 100));
+    assertThat(summary.idlestWorkers()).containsExactly(new WorkerSummary("quiet", 25, 37.5));
+  }
+
+  @Test
+  void hasNoSkewForEvenlyLoadedWorkers() {
+    var summary =
+        CpuAnalysis.of(List.of(worker("a", 0.5), worker("b", 0.5), worker("c", 0.5)), false)
+            .summary(10, 90, 5);
+
+    assertThat(summary.skewRatio()).isEqualTo(1);
+    assertThat(summary.idleWorkers()).isZero();
+    assertThat(summary.saturatedWorkers()).isZero();
+    assertThat(summary.busiestWorkers()).hasSize(3);
+  }
+
+  @Test
+  void hasNoSkewWhenTheMedianWorkerIsIdle() {
+    var summary =
+        CpuAnalysis.of(List.of(worker("a", 0), worker("b", 0), worker("c", 0.5)), false)
+            .summary(10, 90, 5);
+
+    assertThat(summary.skewRatio()).isZero();
+    assertThat(summary.idleWorkers()).isEqualTo(2);
+  }
+
+  @Test
+  void leavesTheWorkersWithoutPointsOutOfTheRankings() {
+    var summary =
+        CpuAnalysis.of(List.of(worker("started"), worker("running", 0.5)), false)
+            .summary(10, 90, 5);
+
+    assertThat(summary.workerCount()).isEqualTo(2);
+    assertThat(summary.pointCount()).isEqualTo(1);
+    assertThat(summary.idleWorkers()).isZero();
+    assertThat(summary.busiestWorkers()).containsExactly(new WorkerSummary("running", 50, 50));
+  }
+
+  @Test
+  void summarizesNoValuesAsZeros() {
+    var summary = CpuAnalysis.of(List.of(), true).summary(10, 90, 5);
+
+    assertThat(summary.workerCount()).isZero();
+    assertThat(summary.pointCount()).isZero();
+    assertThat(summary.p50()).isZero();
+    assertThat(summary.max()).isZero();
+    assertThat(summary.mean()).isZero();
+    assertThat(summary.skewRatio()).isZero();
+    assertThat(summary.busiestWorkers()).isEmpty();
+    assertThat(summary.points()).isEmpty();
+  }
+
+  @Test
+  void keepsTheRawPointsWhenRequested() {
+    var summary = CpuAnalysis.of(List.of(worker("w-1", 0.25, 0.5)), true).summary(10, 90, 5);
+
+    assertThat(summary.points())
+        .containsExactly(
+            new WorkerCpuUtilization("w-1", 25.0, START),
+            new WorkerCpuUtilization("w-1", 50.0, START.plusSeconds(60)));
+  }
+
+  @Test
+  void growsPastTheInitialCapacity() {
+    var series =
+        IntStream.range(0, 40)
+            .mapToObj(
+                index ->
+                    worker(
+                        "w-" + index,
+                        IntStream.range(0, 20).mapToDouble(point -> index / 64.0).toArray()))
+            .toList();
+
+    var summary = CpuAnalysis.of(series, false).summary(1, 99, 1);
+
+    assertThat(summary.workerCount()).isEqualTo(40);
+    assertThat(summary.pointCount()).isEqualTo(800);
+    assertThat(summary.max()).isEqualTo(39 * 100 / 64.0);
+    assertThat(summary.busiestWorkers())
+        .containsExactly(new WorkerSummary("w-39", 39 * 100 / 64.0, 39 * 100 / 64.0));
+    assertThat(summary.idlestWorkers()).containsExactly(new WorkerSummary("w-0", 0, 0));
+  }
+}
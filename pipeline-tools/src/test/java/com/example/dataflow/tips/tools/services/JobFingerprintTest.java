@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.dataflow.tips.tools.services.MetricsQuery.StageMetric;
+import com.example.dataflow.tips.tools.services.PipelineMetricsService.JobFingerprint;
+import com.google.dataflow.v1beta3.Job;
+import com.google.dataflow.v1beta3.JobState;
+import com.google.dataflow.v1beta3.PipelineDescription;
+import com.google.dataflow.v1beta3.TransformSummary;
+import com.google.monitoring.v3.Point;
+import com.google.monitoring.v3.TimeSeries;
+import com.google.monitoring.v3.TypedValue;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class JobFingerprintTest {
+  static final String SYSTEM = "dataflow/v1b3";
+
+  static StageMetric elementCount(
+      String origin, String collection, boolean tentative, double value) {
+    return new StageMetric(origin, null, "ElementCount", collection, tentative, value, null);
+  }
+
+  static TimeSeries lag(long... seconds) {
+    var series = TimeSeries.newBuilder();
+    for (var value : seconds) {
+      series.addPoints(Point.newBuilder().setValue(TypedValue.newBuilder().setInt64Value(value)));
+    }
+    return series.build();
+  }
+
+  @Test
+  void bucketsByOrderOfMagnitude() {
+    assertThat(JobFingerprint.bucket(Double.NaN)).isEqualTo(-1);
+    assertThat(JobFingerprint.bucket(0)).isZero();
+    assertThat(JobFingerprint.bucket(0.5)).isZero();
+    assertThat(JobFingerprint.bucket(1)).isEqualTo(1);
+    assertThat(JobFingerprint.bucket(9.9)).isEqualTo(1);
+    assertThat(JobFingerprint.bucket(10)).isEqualTo(2);
+    assertThat(JobFingerprint.bucket(12_345)).isEqualTo(5);
+  }
+
+  @Test
+  void combinesTheStateAndBuckets() {
+    var fingerprint = JobFingerprint.of("job-1", "JOB_STATE_RUNNING", false, 42, Double.NaN);
+
+    assertThat(fingerprint.lagBucket()).isEqualTo(2);
+    assertThat(fingerprint.throughputBucket()).isEqualTo(-1);
+    assertThat(fingerprint.fingerprint()).isEqualTo("job-1|JOB_STATE_RUNNING|2|-1");
+  }
+
+  @Test
+  void countsTheElementsOfTheSourceOutputsOnly() {
+    var metrics =
+        List.of(
+            elementCount(SYSTEM, "ReadEvents.out0", false, 1_000),
+            elementCount(SYSTEM, "ReadEvents.out0", true, 1_200),
+            elementCount(SYSTEM, "ReadUsers.out0", false, 50),
+            elementCount(SYSTEM, "ParseEvents.out0", false, 1_000),
+            elementCount(PipelineMetricsService.USER_ORIGIN, "ReadEvents.out0", false, 7));
+
+    assertThat(
+            PipelineMetricsService.sourceElements(
+                List.of("ReadEvents.out0", "ReadUsers.out0"), metrics))
+        .isEqualTo(1_050);
+    assertThat(PipelineMetricsService.sourceElements(List.of("Missing.out0"), metrics)).isNaN();
+  }
+
+  @Test
+  void listsTheOutputsOfTheSources() {
+    var job =
+        Job.newBuilder()
+            .setCurrentState(JobState.JOB_STATE_RUNNING)
+            .setPipelineDescription(
+                PipelineDescription.newBuilder()
+                    .addOriginalPipelineTransform(
+                        TransformSummary.newBuilder()
+                            .setName("ReadEvents")
+                            .addOutputCollectionName("ReadEvents.out0"))
+                    .addOriginalPipelineTransform(
+                        TransformSummary.newBuilder()
+                            .setName("ParseEvents")
+                            .addInputCollectionName("ReadEvents.out0")
+                            .addOutputCollectionName("ParseEvents.out0")))
+            .build();
+
+    assertThat(JobTopology.of(job).sourceOutputs()).containsExactly("ReadEvents.out0");
+  }
+
+  @Test
+  void keepsTheLargestSystemLag() {
+    assertThat(PipelineMetricsService.systemLag(List.of(lag(12, 30), lag(5)))).isEqualTo(30);
+    assertThat(PipelineMetricsService.systemLag(List.of())).isZero();
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.dataflow.tips.tools.services.JobPager.Cursor;
+import com.example.dataflow.tips.tools.services.JobPager.JobPage;
+import com.example.dataflow.tips.tools.services.PipelineTopologyService.Pipeline;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.dataflow.v1beta3.Job;
+import com.google.dataflow.v1beta3.JobsV1Beta3Client;
+import com.google.dataflow.v1beta3.JobsV1Beta3Settings;
+import com.google.dataflow.v1beta3.ListJobsRequest;
+import com.google.dataflow.v1beta3.ListJobsResponse;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class JobPagerTest {
+  static final String SERVICE = "google.dataflow.v1beta3.JobsV1Beta3";
+  static final MethodDescriptor<ListJobsRequest, ListJobsResponse> LIST_JOBS =
+      MethodDescriptor.<ListJobsRequest, ListJobsResponse>newBuilder()
+          .setType(MethodDescriptor.MethodType.UNARY)
+          .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE, "ListJobs"))
+          .setRequestMarshaller(ProtoUtils.marshaller(ListJobsRequest.getDefaultInstance()))
+          .setResponseMarshaller(ProtoUtils.marshaller(ListJobsResponse.getDefaultInstance()))
+          .build();
+  static final ListJobsRequest REQUEST =
+      ListJobsRequest.newBuilder().setProjectId("project").setLocation("region").build();
+
+  private final Queue<String> requestedTokens = new ConcurrentLinkedQueue<>();
+  private volatile int totalJobs = 12;
+  private volatile int apiPageSize = 5;
+  private Server server;
+  private ManagedChannel channel;
+  private JobsV1Beta3Client client;
+  private JobPager pager;
+
+  /** Serves the jobs in API pages addressed by the index of their first job. */
+  void listJobs(ListJobsRequest request, StreamObserver<ListJobsResponse> observer) {
+    requestedTokens.add(request.getPageToken());
+    var start = request.getPageToken().isEmpty() ? 0 : Integer.parseInt(request.getPageToken());
+    var end = Math.min(totalJobs, start + Math.min(apiPageSize, request.getPageSize()));
+    var response = ListJobsResponse.newBuilder();
+    IntStream.range(start, end)
+        .forEach(index -> response.addJobs(Job.newBuilder().setId("job-" + index)));
+    if (end < totalJobs) {
+      response.setNextPageToken(String.valueOf(end));
+    }
+    observer.onNext(response.build());
+    observer.onCompleted();
+  }
+
+  @BeforeEach
+  void start() throws IOException {
+    var name = InProcessServerBuilder.generateName();
+    var service =
+        ServerServiceDefinition.builder(SERVICE)
+            .addMethod(LIST_JOBS, ServerCalls.asyncUnaryCall(this::listJobs))
+            .build();
+    server = InProcessServerBuilder.forName(name).addService(service).build().start();
+    channel = InProcessChannelBuilder.forName(name).build();
+    client =
+        JobsV1Beta3Client.create(
+            JobsV1Beta3Settings.newBuilder()
+                .setTransportChannelProvider(
+                    FixedTransportChannelProvider.create(GrpcTransportChannel.create(channel)))
+                .setCredentialsProvider(NoCredentialsProvider.create())
+                .build());
+    pager = new JobPager(client);
+  }
+
+  @AfterEach
+  void stop() {
+    client.close();
+    channel.shutdownNow();
+    server.shutdownNow();
+  }
+
+  static List<String> ids(JobPage page) {
+    return page.jobs().stream().map(Pipeline::id).toList();
+  }
+
+  @Test
+  void encodesTheApiTokenAndOffsetInAnUrlSafeToken() {
+    var cursor = new Cursor("api/token+with\nnew lines", 42);
+
+    var token = cursor.encode();
+
+    assertThat(token).matches("[A-Za-z0-9_-]+");
+    assertThat(Cursor.decode(token)).isEqualTo(cursor);
+    assertThat(Cursor.decode(" " + token + "\n")).isEqualTo(cursor);
+  }
+
+  @Test
+  void startsFromTheFirstApiPageWithoutToken() {
+    assertThat(Cursor.decode(null)).isEqualTo(new Cursor("", 0));
+    assertThat(Cursor.decode("  ")).isEqualTo(new Cursor("", 0));
+  }
+
+  @Test
+  void rejectsTheInvalidTokens() {
+    var withoutOffset =
+        Base64.getUrlEncoder().encodeToString("token".getBytes(StandardCharsets.UTF_8));
+
+    assertThatThrownBy(() -> Cursor.decode(withoutOffset))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Invalid page token");
+    assertThatThrownBy(() -> Cursor.decode("not*base64"))
+        .isInstanceOf(IllegalArgumentException.class);
+    var withoutNumber =
+        Base64.getUrlEncoder().encodeToString("token\nfirst".getBytes(StandardCharsets.UTF_8));
+    assertThatThrownBy(() -> Cursor.decode(withoutNumber))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void endsThePagesInTheMiddleOfTheApiPages() {
+    var first = pager.page(REQUEST, job -> true, 3, null);
+
+    assertThat(ids(first)).containsExactly("job-0", "job-1", "job-2");
+    assertThat(first.scannedJobs()).isEqualTo(3);
+    assertThat(Cursor.decode(first.nextPageToken())).isEqualTo(new Cursor("", 3));
+
+    var second = pager.page(REQUEST, job -> true, 3, first.nextPageToken());
+
+    assertThat(ids(second)).containsExactly("job-3", "job-4", "job-5");
+    assertThat(Cursor.decode(second.nextPageToken())).isEqualTo(new Cursor("5", 1));
+  }
+
+  @Test
+  void walksAllTheJobsRequestingEveryApiPageOnce() {
+    var jobs = new ArrayList<String>();
+    var pages = 0;
+    String token = null;
+    do {
+      var page = pager.page(REQUEST, job -> true, 3, token);
+      jobs.addAll(ids(page));
+      token = page.nextPageToken();
+      pages++;
+    } while (token != null);
+
+    assertThat(pages).isEqualTo(4);
+    assertThat(jobs)
+        .containsExactlyElementsOf(IntStream.range(0, 12).mapToObj(i -> "job-" + i).toList());
+    // the partially returned API pages are kept and the following ones prefetched
+    assertThat(requestedTokens).containsExactly("", "5", "10");
+  }
+
+  @Test
+  void continuesOnTheNextApiPageWhenEndingOnItsBoundary() {
+    var page = pager.page(REQUEST, job -> true, 5, null);
+
+    assertThat(ids(page)).hasSize(5);
+    assertThat(Cursor.decode(page.nextPageToken())).isEqualTo(new Cursor("5", 0));
+  }
+
+  @Test
+  void filtersTheJobsOnTheServer() {
+    Predicate<Job> even = job -> Integer.parseInt(job.getId().substring(4)) % 2 == 0;
+
+    var first = pager.page(REQUEST, even, 4, null);
+
+    assertThat(ids(first)).containsExactly("job-0", "job-2", "job-4", "job-6");
+    assertThat(first.scannedJobs()).isEqualTo(7);
+    assertThat(Cursor.decode(first.nextPageToken())).isEqualTo(new Cursor("5", 2));
+
+    var second = pager.page(REQUEST, even, 4, first.nextPageToken());
+
+    assertThat(ids(second)).containsExactly("job-8", "job-10");
+    assertThat(second.scannedJobs()).isEqualTo(5);
+    assertThat(second.nextPageToken()).isNull();
+  }
+
+  @Test
+  void capsThePageSize() {
+    assertThat(ids(pager.page(REQUEST, job -> true, 0, null))).containsExactly("job-0");
+    assertThat(ids(pager.page(REQUEST, job -> true, 1_000, null))).hasSize(12);
+  }
+
+  @Test
+  void stopsAfterScanningTheMaximumAmountOfJobs() {
+    totalJobs = 3_000;
+    apiPageSize = JobPager.API_PAGE_SIZE;
+
+    var page = pager.page(REQUEST, job -> false, 10, null);
+
+    assertThat(page.jobs()).isEmpty();
+    assertThat(page.scannedJobs()).isEqualTo(JobPager.MAX_SCANNED_JOBS);
+    assertThat(Cursor.decode(page.nextPageToken())).isEqualTo(new Cursor("2000", 0));
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import com.example.dataflow.tips.tools.services.LogTemplates.Template;
+import com.google.dataflow.v1beta3.JobMessage;
+import com.google.dataflow.v1beta3.JobMessageImportance;
+import com.google.protobuf.Timestamp;
+import java.time.Instant;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class LogTemplatesTest {
+  static final Instant START = Instant.parse("2025-06-01T10:00:00Z");
+
+  static JobMessage message(String text) {
+    return message(JobMessageImportance.JOB_MESSAGE_BASIC, 0, text);
+  }
+
+  static JobMessage message(JobMessageImportance importance, long second, String text) {
+    return JobMessage.newBuilder()
+        .setMessageText(text)
+        .setMessageImportance(importance)
+        .setTime(Timestamp.newBuilder().setSeconds(START.getEpochSecond() + second))
+        .build();
+  }
+
+  @Test
+  void tokenizesTheFirstLineMaskingTheNumbers() {
+    var text = "  Autoscaling to 12 workers  \n\tat some.Stack(Frame.java:42)";
+
+    assertThat(LogTemplates.tokenize(text)).containsExactly("Autoscaling", "to", "<*>", "workers");
+    assertThat(LogTemplates.tokenize("Worker harness-0a1b started"))
+        .containsExactly("Worker", "<*>", "started");
+  }
+
+  @Test
+  void keepsABoundedAmountOfTokens() {
+    var text = String.join(" ", IntStream.range(0, 100).mapToObj(index -> "word").toList());
+
+    assertThat(LogTemplates.tokenize(text)).hasSize(LogTemplates.MAX_TOKENS);
+  }
+
+  @Test
+  void measuresTheSimilarityOfMessagesWithTheSameLength() {
+    String[] template = {"Executing", "operation", "ReadEvents"};
+
+    assertThat(LogTemplates.similarity(template, new String[] {"Executing", "operation", "Write"}))
+        .isEqualTo(2.0 / 3);
+    assertThat(LogTemplates.similarity(template, new String[] {"Executing", "operation"})).isZero();
+    assertThat(LogTemplates.similarity(new String[0], new String[0])).isEqualTo(1);
+  }
+
+  @Test
+  void collapsesTheMessagesOfTheSameTemplate() {
+    var templates = LogTemplates.create(10);
+    templates.add(message("Executing operation ReadEvents on workers"));
+    templates.add(message("Executing operation ParseEvents on workers"));
+    templates.add(message("Executing operation WriteResults on workers"));
+
+    assertThat(templates.messageCount()).isEqualTo(3);
+    assertThat(templates.templateCount()).isEqualTo(1);
+    assertThat(templates.templates(10))
+        .singleElement()
+        .satisfies(
+            template -> {
+              assertThat(template.template()).isEqualTo("Executing operation <*> on workers");
+              assertThat(template.count()).isEqualTo(3);
+              assertThat(template.sample())
+                  .isEqualTo("Executing operation ReadEvents on workers");
+            });
+  }
+
+  @Test
+  void keepsTheDissimilarMessagesApart() {
+    var templates = LogTemplates.create(10);
+    templates.add(message("Executing operation ReadEvents on all workers"));
+    templates.add(message("Executing operation for the next stage"));
+    templates.add(message("Executing operation ReadEvents"));
+    templates.add(message("Stopping operation ReadEvents on all workers"));
+
+    // below the similarity threshold, a different length and a different prefix
+    assertThat(templates.templateCount()).isEqualTo(4);
+    assertThat(templates.templates(10)).extracting(Template::count).containsOnly(1L);
+  }
+
+  @Test
+  void routesTheOverflowingPrefixesToAWildcardNode() {
+    var templates = new LogTemplates(2, 1, 0.5, 10);
+    templates.add(message("alpha stage done"));
+    templates.add(message("beta stage done"));
+    templates.add(message("gamma stage done"));
+
+    assertThat(templates.templates(10))
+        .extracting(Template::template, Template::count)
+        .containsExactlyInAnyOrder(
+            tuple("<*> stage done", 2L), tuple("alpha stage done", 1L));
+  }
+
+  @Test
+  void tracksTheTimeRangeAndHighestImportance() {
+    var templates = LogTemplates.create(10);
+    templates.add(message(JobMessageImportance.JOB_MESSAGE_DETAILED, 60, "Worker lost lease 7"));
+    templates.add(message(JobMessageImportance.JOB_MESSAGE_ERROR, 120, "Worker lost lease 8"));
+    templates.add(message(JobMessageImportance.JOB_MESSAGE_BASIC, 0, "Worker lost lease 9"));
+
+    assertThat(templates.templates(10))
+        .containsExactly(
+            new Template(
+                "Worker lost lease <*>",
+                3,
+                START,
+                START.plusSeconds(120),
+                "JOB_MESSAGE_ERROR",
+                "Worker lost lease 7"));
+  }
+
+  @Test
+  void sortsTheTemplatesByImportanceThenCount() {
+    var templates = LogTemplates.create(10);
+    for (var index = 0; index < 5; index++) {
+      templates.add(message("Autoscaling is running smoothly"));
+    }
+    templates.add(message("Autoscaling was not possible"));
+    templates.add(message(JobMessageImportance.JOB_MESSAGE_ERROR, 0, "Pipeline failed badly"));
+    templates.add(message("Autoscaling was not possible"));
+
+    assertThat(templates.templates(10))
+        .extracting(Template::template)
+        .containsExactly(
+            "Pipeline failed badly",
+            "Autoscaling is running smoothly",
+            "Autoscaling was not possible");
+    assertThat(templates.templates(1)).hasSize(1);
+  }
+
+  @Test
+  void evictsTheLeastRecentlyMatchedTemplates() {
+    var templates = LogTemplates.create(2);
+    templates.add(message("first kind of message"));
+    templates.add(message("second kind of message here"));
+    templates.add(message("first kind of message"));
+    templates.add(message("third kind"));
+
+    assertThat(templates.templateCount()).isEqualTo(2);
+    assertThat(templates.evictedCount()).isEqualTo(1);
+    assertThat(templates.templates(10))
+        .extracting(Template::template)
+        .containsExactlyInAnyOrder("first kind of message", "third kind");
+
+    // the evicted template starts over
+    templates.add(message("second kind of message here"));
+    assertThat(templates.templates(10))
+        .filteredOn(template -> template.template().startsWith("second"))
+        .extracting(Template::count)
+        .containsExactly(1L);
+  }
+}
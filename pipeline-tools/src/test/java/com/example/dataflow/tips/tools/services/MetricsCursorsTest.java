@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.dataflow.tips.tools.config.MetricsCursorProperties;
+import com.example.dataflow.tips.tools.services.MetricsQuery.StageMetric;
+import com.google.dataflow.v1beta3.MetricStructuredName;
+import com.google.dataflow.v1beta3.MetricUpdate;
+import com.google.protobuf.Value;
+import com.google.protobuf.util.Timestamps;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class MetricsCursorsTest {
+  static final Instant START = Instant.parse("2025-06-01T10:00:00Z");
+
+  private final MetricsCursors cursors =
+      new MetricsCursors(
+          new MetricsCursorProperties(10, Duration.ofMinutes(5)), new SimpleMeterRegistry());
+  private final List<Instant> requested = new ArrayList<>();
+
+  static MetricUpdate elementCount(String collection, double value, Instant updateTime) {
+    return MetricUpdate.newBuilder()
+        .setName(
+            MetricStructuredName.newBuilder()
+                .setOrigin("dataflow/v1b3")
+                .setName("ElementCount")
+                .putContext("original_name", collection)
+                .putContext("output_user_name", collection)
+                .putContext("tentative", "false"))
+        .setKind("Sum")
+        .setScalar(Value.newBuilder().setNumberValue(value))
+        .setUpdateTime(Timestamps.fromMillis(updateTime.toEpochMilli()))
+        .build();
+  }
+
+  MetricsCursors.Delta poll(Instant cursor, List<MetricUpdate> updates) {
+    return cursors.poll(
+        "project",
+        "region",
+        "job",
+        cursor,
+        START,
+        since -> {
+          requested.add(since);
+          return updates;
+        });
+  }
+
+  static Map<String, Double> values(List<StageMetric> metrics) {
+    return metrics.stream().collect(Collectors.toMap(StageMetric::step, StageMetric::value));
+  }
+
+  @Test
+  void keepsTheCollectionsApartAcrossPolls() {
+    var first =
+        poll(
+            null,
+            List.of(
+                elementCount("ReadEvents.out0", 100, START.plusSeconds(10)),
+                elementCount("ParseEvents.out0", 90, START.plusSeconds(10))));
+
+    assertThat(first.initial()).isTrue();
+    assertThat(first.cursor()).isEqualTo(START.plusSeconds(10));
+    assertThat(values(first.changed()))
+        .containsExactlyInAnyOrderEntriesOf(
+            Map.of("ReadEvents.out0", 100.0, "ParseEvents.out0", 90.0));
+
+    var second =
+        poll(
+            first.cursor(),
+            List.of(
+                elementCount("ReadEvents.out0", 150, START.plusSeconds(20)),
+                elementCount("ParseEvents.out0", 140, START.plusSeconds(20))));
+
+    assertThat(requested).containsExactly(START, START.plusSeconds(10));
+    assertThat(second.initial()).isFalse();
+    assertThat(second.cursor()).isEqualTo(START.plusSeconds(20));
+    assertThat(values(second.changed()))
+        .containsExactlyInAnyOrderEntriesOf(
+            Map.of("ReadEvents.out0", 150.0, "ParseEvents.out0", 140.0));
+    assertThat(values(second.current()))
+        .containsExactlyInAnyOrderEntriesOf(
+            Map.of("ReadEvents.out0", 150.0, "ParseEvents.out0", 140.0));
+  }
+
+  @Test
+  void keepsTheKnownValuesOfTheUnchangedMetrics() {
+    var first =
+        poll(
+            null,
+            List.of(
+                elementCount("ReadEvents.out0", 100, START.plusSeconds(10)),
+                elementCount("ParseEvents.out0", 90, START.plusSeconds(10))));
+    var second =
+        poll(first.cursor(), List.of(elementCount("ParseEvents.out0", 95, START.plusSeconds(20))));
+
+    assertThat(values(second.changed())).containsExactlyEntriesOf(Map.of("ParseEvents.out0", 95.0));
+    assertThat(values(second.current()))
+        .containsExactlyInAnyOrderEntriesOf(
+            Map.of("ReadEvents.out0", 100.0, "ParseEvents.out0", 95.0));
+  }
+
+  @Test
+  void keepsTheNewestOfTheUpdatesOfAMetric() {
+    var delta =
+        poll(
+            null,
+            List.of(
+                elementCount("ReadEvents.out0", 120, START.plusSeconds(20)),
+                elementCount("ReadEvents.out0", 100, START.plusSeconds(10))));
+
+    assertThat(values(delta.changed())).containsExactlyEntriesOf(Map.of("ReadEvents.out0", 120.0));
+    assertThat(delta.cursor()).isEqualTo(START.plusSeconds(20));
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.dataflow.tips.tools.services.MetricsQuery.Aggregation;
+import com.example.dataflow.tips.tools.services.MetricsQuery.Filter;
+import com.example.dataflow.tips.tools.services.MetricsQuery.MetricAggregate;
+import com.google.dataflow.v1beta3.MetricStructuredName;
+import com.google.dataflow.v1beta3.MetricUpdate;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import com.google.protobuf.util.Timestamps;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class MetricsQueryTest {
+  static final String SYSTEM = "dataflow/v1b3";
+  static final Instant UPDATE_TIME = Instant.parse("2025-06-01T10:00:00Z");
+
+  /** A system metric of a PCollection, as reported for ElementCount and MeanByteCount. */
+  static MetricUpdate collectionMetric(
+      String name, String originalName, String outputUserName, boolean tentative, double value) {
+    var structuredName =
+        MetricStructuredName.newBuilder()
+            .setOrigin(SYSTEM)
+            .setName(name)
+            .putContext("original_name", originalName)
+            .putContext("tentative", String.valueOf(tentative));
+    if (outputUserName != null) {
+      structuredName.putContext("output_user_name", outputUserName);
+    }
+    return MetricUpdate.newBuilder()
+        .setName(structuredName)
+        .setKind("Sum")
+        .setScalar(number(value))
+        .setUpdateTime(Timestamps.fromMillis(UPDATE_TIME.toEpochMilli()))
+        .build();
+  }
+
+  /** A user counter of a step. */
+  static MetricUpdate userMetric(String name, String namespace, String step, double value) {
+    return MetricUpdate.newBuilder()
+        .setName(
+            MetricStructuredName.newBuilder()
+                .setOrigin("user")
+                .setName(name)
+                .putContext("namespace", namespace)
+                .putContext("step", step)
+                .putContext("original_step_name", "s2"))
+        .setKind("Sum")
+        .setScalar(number(value))
+        .build();
+  }
+
+  static Value number(double value) {
+    return Value.newBuilder().setNumberValue(value).build();
+  }
+
+  static MetricUpdate.Builder named(String name) {
+    return MetricUpdate.newBuilder()
+        .setName(
+            MetricStructuredName.newBuilder()
+                .setOrigin(SYSTEM)
+                .setName(name)
+                .putContext("step", "s1"));
+  }
+
+  @Test
+  void parsesTheCollectionOfTheSystemMetrics() {
+    var metric =
+        MetricsQuery.parse(
+                collectionMetric("ElementCount", "s2.out0", "ParseEvents.out0", false, 42))
+            .orElseThrow();
+
+    assertThat(metric.origin()).isEqualTo(SYSTEM);
+    assertThat(metric.namespace()).isNull();
+    assertThat(metric.name()).isEqualTo("ElementCount");
+    assertThat(metric.step()).isEqualTo("ParseEvents.out0");
+    assertThat(metric.tentative()).isFalse();
+    assertThat(metric.value()).isEqualTo(42);
+    assertThat(metric.updateTime()).isEqualTo(UPDATE_TIME);
+  }
+
+  @Test
+  void fallsBackToTheOriginalNameOfTheCollection() {
+    var metric =
+        MetricsQuery.parse(collectionMetric("MeanByteCount", "s2.out0", null, true, 10))
+            .orElseThrow();
+
+    assertThat(metric.step()).isEqualTo("s2.out0");
+    assertThat(metric.tentative()).isTrue();
+  }
+
+  @Test
+  void parsesTheStepAndNamespaceOfTheUserMetrics() {
+    var metric =
+        MetricsQuery.parse(userMetric("ElementCount", "com.example.Parser", "ParseEvents", 7))
+            .orElseThrow();
+
+    assertThat(metric.origin()).isEqualTo("user");
+    assertThat(metric.namespace()).isEqualTo("com.example.Parser");
+    assertThat(metric.step()).isEqualTo("ParseEvents");
+  }
+
+  @Test
+  void parsesTheValueKinds() {
+    var mean = named("MeanByteCount").setMeanSum(number(300)).setMeanCount(number(4)).build();
+    var distribution =
+        named("Latency")
+            .setDistribution(
+                Value.newBuilder()
+                    .setStructValue(
+                        Struct.newBuilder()
+                            .putAllFields(Map.of("count", number(2), "sum", number(30)))))
+            .build();
+    var largeCounter =
+        named("ElementCount")
+            .setScalar(
+                Value.newBuilder()
+                    .setStructValue(
+                        Struct.newBuilder()
+                            .putAllFields(Map.of("highBits", number(1), "lowBits", number(5)))))
+            .build();
+    var gauge = named("Backlog").setGauge(number(3)).build();
+    var empty = named("Unknown").build();
+
+    assertThat(MetricsQuery.parse(mean).orElseThrow().value()).isEqualTo(75);
+    assertThat(MetricsQuery.parse(distribution).orElseThrow().value()).isEqualTo(15);
+    assertThat(MetricsQuery.parse(largeCounter).orElseThrow().value())
+        .isEqualTo((double) ((1L << 32) | 5));
+    assertThat(MetricsQuery.parse(gauge).orElseThrow().value()).isEqualTo(3);
+    assertThat(MetricsQuery.parse(empty)).isEmpty();
+  }
+
+  @Test
+  void filtersTheSystemMetricsByCollection() {
+    var updates =
+        List.of(
+            collectionMetric("ElementCount", "s1.out0", "ReadEvents.out0", false, 100),
+            collectionMetric("ElementCount", "s2.out0", "ParseEvents.out0", false, 90),
+            collectionMetric("ElementCount", "s2.out0", "ParseEvents.out0", true, 95),
+            collectionMetric("MeanByteCount", "s2.out0", "ParseEvents.out0", false, 12));
+
+    var metrics =
+        MetricsQuery.parse(updates, Filter.of(List.of("elementcount"), List.of("parse"), false));
+
+    assertThat(metrics)
+        .singleElement()
+        .satisfies(
+            metric -> {
+              assertThat(metric.step()).isEqualTo("ParseEvents.out0");
+              assertThat(metric.value()).isEqualTo(90);
+            });
+    assertThat(MetricsQuery.parse(updates, Filter.of(null, List.of("parse"), null))).hasSize(3);
+  }
+
+  @Test
+  void aggregatesTheUserAndSystemMetricsApart() {
+    var metrics =
+        MetricsQuery.parse(
+            List.of(
+                collectionMetric("ElementCount", "s1.out0", "ReadEvents.out0", false, 100),
+                collectionMetric("ElementCount", "s2.out0", "ParseEvents.out0", false, 90),
+                userMetric("ElementCount", "com.example.Parser", "ParseEvents", 7)),
+            Filter.of(null, null, null));
+
+    assertThat(MetricsQuery.aggregate(metrics, Aggregation.SUM, 0))
+        .containsExactly(
+            new MetricAggregate(SYSTEM, null, "ElementCount", null, 190, 2),
+            new MetricAggregate("user", "com.example.Parser", "ElementCount", null, 7, 1));
+  }
+
+  @Test
+  void keepsTheCollectionsWithTheLargestValues() {
+    var metrics =
+        MetricsQuery.parse(
+            List.of(
+                collectionMetric("ElementCount", "s1.out0", "ReadEvents.out0", false, 100),
+                collectionMetric("ElementCount", "s2.out0", "ParseEvents.out0", false, 90),
+                collectionMetric("ElementCount", "s3.out0", "WriteEvents.out0", false, 80),
+                collectionMetric("MeanByteCount", "s3.out0", "WriteEvents.out0", false, 12)),
+            Filter.of(null, null, false));
+
+    assertThat(MetricsQuery.aggregate(metrics, Aggregation.MAX, 0))
+        .containsExactly(
+            new MetricAggregate(SYSTEM, null, "ElementCount", "ReadEvents.out0", 100, null),
+            new MetricAggregate(SYSTEM, null, "MeanByteCount", "WriteEvents.out0", 12, null));
+    assertThat(MetricsQuery.aggregate(metrics, Aggregation.TOP_K, 2))
+        .extracting(MetricAggregate::step)
+        .containsExactly("ReadEvents.out0", "ParseEvents.out0", "WriteEvents.out0");
+    assertThat(MetricsQuery.aggregate(metrics, Aggregation.NONE, 2)).isEmpty();
+  }
+
+  @Test
+  void parsesTheAggregationNames() {
+    assertThat(Aggregation.parse(" top_k ")).isEqualTo(Aggregation.TOP_K);
+    assertThat(Aggregation.parse(null)).isEqualTo(Aggregation.NONE);
+    assertThat(Aggregation.parse("")).isEqualTo(Aggregation.NONE);
+  }
+}
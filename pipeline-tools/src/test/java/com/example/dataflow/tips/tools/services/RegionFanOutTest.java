@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.Test;
+
+class RegionFanOutTest {
+
+  @Test
+  void reportsTheFailureMessage() {
+    assertThat(RegionFanOut.failure(new IllegalStateException("Permission denied.")))
+        .isEqualTo("Permission denied.");
+  }
+
+  @Test
+  void reportsTheTypeAndStatusOfTheFailuresWithoutMessage() {
+    var failure = new RuntimeException(null, new StatusRuntimeException(Status.UNAVAILABLE));
+
+    assertThat(RegionFanOut.failure(failure))
+        .isEqualTo("RuntimeException with status UNAVAILABLE");
+  }
+
+  @Test
+  void reportsTheTypeOfTheFailuresWithoutMessageNorStatus() {
+    assertThat(RegionFanOut.failure(new IllegalStateException()))
+        .isEqualTo("IllegalStateException");
+  }
+}
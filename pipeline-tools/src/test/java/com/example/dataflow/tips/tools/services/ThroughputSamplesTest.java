@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2025 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.example.dataflow.tips.tools.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.dataflow.tips.tools.config.MetricsCursorProperties;
+import com.example.dataflow.tips.tools.services.JobCache.JobKey;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class ThroughputSamplesTest {
+  static final Instant START = Instant.parse("2025-06-01T10:00:00Z");
+  static final JobKey JOB = new JobKey("project", "region", "job");
+
+  private final ThroughputSamples samples =
+      new ThroughputSamples(new MetricsCursorProperties(10, Duration.ofMinutes(30)));
+
+  @Test
+  void isUnknownUntilTwoSamplesWereTaken() {
+    assertThat(samples.rate(JOB, START, 1_000)).isNaN();
+  }
+
+  @Test
+  void computesTheRateBetweenTwoSamples() {
+    samples.rate(JOB, START, 1_000);
+
+    assertThat(samples.rate(JOB, START.plusSeconds(100), 51_000)).isEqualTo(500);
+    assertThat(samples.rate(JOB, START.plusSeconds(200), 61_000)).isEqualTo(100);
+  }
+
+  @Test
+  void keepsTheLastRateForCloserSamples() {
+    samples.rate(JOB, START, 1_000);
+    assertThat(samples.rate(JOB, START.plusSeconds(30), 4_000)).isNaN();
+
+    // measured from the first sample, the closer one was not kept
+    assertThat(samples.rate(JOB, START.plusSeconds(60), 7_000)).isEqualTo(100);
+    assertThat(samples.rate(JOB, START.plusSeconds(90), 100_000)).isEqualTo(100);
+  }
+
+  @Test
+  void startsAgainWhenTheCountersAreReset() {
+    samples.rate(JOB, START, 1_000);
+    samples.rate(JOB, START.plusSeconds(60), 7_000);
+
+    assertThat(samples.rate(JOB, START.plusSeconds(120), 10)).isNaN();
+    assertThat(samples.rate(JOB, START.plusSeconds(180), 610)).isEqualTo(10);
+  }
+
+  @Test
+  void keepsTheJobsApart() {
+    var other = new JobKey("project", "region", "other");
+    samples.rate(JOB, START, 1_000);
+    samples.rate(other, START, 0);
+
+    assertThat(samples.rate(JOB, START.plusSeconds(100), 2_000)).isEqualTo(10);
+    assertThat(samples.rate(other, START.plusSeconds(100), 100_000)).isEqualTo(1_000);
+  }
+}
@@ -0,0 +1,74 @@
+#!/bin/bash
+# Measures the time to ready and the resident memory of the agent and the tools server when
+# started on the JVM, on the JVM with the AOT processed application context, and as native
+# executables. Build first with `mvn clean package`, and `mvn -Pnative clean package` for the
+# native executables, the modes without their artifact are skipped.
+#
+# The services start as in production: the tools server warms up its GCP channels with the
+# application default credentials before being ready. To measure without reaching GCP use:
+#   TOOLS_ARGS="--tools.gcp.endpoint=localhost:9 --tools.gcp.plaintext=true \
+#     --tools.gcp.transport.warm-up.enabled=false" ./startup_benchmark.sh
+
+RUNS=${RUNS:-5}
+TIMEOUT_SECONDS=${TIMEOUT_SECONDS:-120}
+
+source ./local_stop.sh
+
+# prints the milliseconds until the readiness probe answers and the RSS in KB once ready
+measure() {
+  local port=$1
+  shift
+  local start=$(date +%s%N)
+  "$@" > /dev/null 2>&1 &
+  local pid=$!
+  local deadline=$((start + TIMEOUT_SECONDS * 1000000000))
+  until curl -sf "http://localhost:${port}/actuator/health/readiness" > /dev/null; do
+    if ! kill -0 $pid 2> /dev/null || [ "$(date +%s%N)" -gt $deadline ]; then
+      kill $pid > /dev/null 2>&1
+      echo "failed"
+      return
+    fi
+    sleep 0.01
+  done
+  local ready=$((($(date +%s%N) - start) / 1000000))
+  local rss=$(ps -o rss= -p $pid | tr -d ' ')
+  kill $pid
+  wait $pid 2> /dev/null
+  echo "$ready $rss"
+}
+
+median() {
+  sort -n | awk '{ values[NR] = $1 } END { print values[int((NR + 1) / 2)] }'
+}
+
+benchmark() {
+  local module=$1 port=$2 mode=$3
+  shift 3
+  local times=() rss=()
+  for run in $(seq "$RUNS"); do
+    read -r time memory <<< "$(measure "$port" "$@")"
+    if [ "$time" = "failed" ]; then
+      printf "%-16s %-8s did not become ready\n" "$module" "$mode"
+      return
+    fi
+    times+=("$time")
+    rss+=("$memory")
+  done
+  printf "%-16s %-8s %14s %10s\n" "$module" "$mode" \
+    "$(printf '%s\n' "${times[@]}" | median)" \
+    "$(($(printf '%s\n' "${rss[@]}" | median) / 1024))"
+}
+
+printf "%-16s %-8s %14s %10s\n" "service" "mode" "ready (ms)" "RSS (MB)"
+for service in "pipeline-tools 8081 TOOLS_ARGS" "agent 8080 AGENT_ARGS"; do
+  read -r module port args <<< "$service"
+  jar="${module}/target/${module}-1.0-SNAPSHOT-exec.jar"
+  executable="${module}/target/${module}"
+  if [ -f "$jar" ]; then
+    benchmark "$module" "$port" jvm java -jar "$jar" ${!args}
+    benchmark "$module" "$port" aot java -Dspring.aot.enabled=true -jar "$jar" ${!args}
+  fi
+  if [ -x "$executable" ]; then
+    benchmark "$module" "$port" native "$executable" ${!args}
+  fi
+done